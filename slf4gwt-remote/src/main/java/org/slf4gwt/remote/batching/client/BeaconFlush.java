@@ -0,0 +1,128 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * sends the queued records with beacons when the page is hidden.
+ *
+ * The records are split into beacons that the browser accepts. The size of a batch is estimated by the queue, so a
+ * beacon that is too large after it is written, e.g. because of characters with several UTF-8 bytes, gives back its
+ * later half. When the browser refuses a beacon, because its quota is used up, the records of the beacon and the rest
+ * of the queue are kept, they are saved and sent later.
+ */
+final class BeaconFlush {
+
+  /**
+   * the records that wait to be sent.
+   */
+  interface Batches {
+
+    /**
+     * @return the next batch, at least one record unless there are none
+     */
+    ArrayList<RemoteLogRecord> take(int maxRecords, int maxBytes);
+
+    /**
+     * puts records back before the remaining ones.
+     */
+    void giveBack(List<RemoteLogRecord> records);
+  }
+
+  /**
+   * sends the data of a beacon.
+   */
+  interface Beacon {
+
+    /**
+     * @return true if the browser accepted the beacon
+     */
+    boolean send(String data);
+  }
+
+  /** browsers accept about 64 KB of beacon data at a time */
+  static final int MAX_BEACON_BYTES = 60000;
+
+  private BeaconFlush() {
+  }
+
+  /**
+   * Sends all records in the compact format. The response of a beacon can't be read, so the records are sent without
+   * dictionary ids.
+   *
+   * @return true if all records were sent, false if the browser refused a beacon
+   */
+  static boolean send(Batches batches, int maxRecords, int maxBytes, Beacon beacon) {
+    while (true) {
+      ArrayList<RemoteLogRecord> records = batches.take(maxRecords, maxBytes);
+      if (records.isEmpty()) {
+        return true;
+      }
+
+      String data = write(records);
+      while (records.size() > 1 && utf8Length(data) > maxBytes) {
+        List<RemoteLogRecord> laterHalf = records.subList(records.size() / 2, records.size());
+        batches.giveBack(new ArrayList<RemoteLogRecord>(laterHalf));
+        laterHalf.clear();
+        data = write(records);
+      }
+
+      if (!beacon.send(data)) {
+        batches.giveBack(records);
+        return false;
+      }
+    }
+  }
+
+  private static String write(ArrayList<RemoteLogRecord> records) {
+    return CompactLogWriter.write(new RemoteLogBatch("", 0, records));
+  }
+
+  /**
+   * @return the number of bytes of the data in UTF-8, as the browser sends it
+   */
+  private static int utf8Length(String data) {
+    int length = 0;
+    for (int i = 0; i < data.length(); i++) {
+      char c = data.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c)) {
+        // a surrogate pair is one character of four bytes
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import com.google.gwt.core.shared.SerializableThrowable;
+import org.slf4gwt.remote.batching.shared.CompactLogFormat;
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.logging.Level;
+
+/**
+ * writes remote log batches in the {@link CompactLogFormat}.
+ */
+final class CompactLogWriter {
+
+  private final StringBuilder out = new StringBuilder();
+
+  private CompactLogWriter() {
+  }
+
+  static String write(RemoteLogBatch batch) {
+    CompactLogWriter writer = new CompactLogWriter();
+    writer.writeNumber(CompactLogFormat.VERSION);
+    writer.writeString(batch.getDictionaryKey());
+    writer.writeNumber(batch.getDictionarySize());
+    writer.writeNumber(batch.getSequence());
+
+    long millis = 0;
+    for (RemoteLogRecord record : batch.getRecords()) {
+      writer.writeRecord(record, millis);
+      millis = record.getMillis();
+    }
+    return writer.out.toString();
+  }
+
+  private void writeRecord(RemoteLogRecord record, long previousMillis) {
+    writeNumber(Level.parse(record.getLevel()).intValue());
+    writeNumber(record.getLoggerNameId());
+    if (record.getLoggerNameId() == -1) {
+      writeString(record.getLoggerName());
+    }
+    writeLong(record.getMillis() - previousMillis);
+    writeNumber(record.getRepeatCount());
+    if (record.getRepeatCount() > 1) {
+      writeLong(record.getLastMillis() - record.getMillis());
+    }
+    writeNumber(record.getMessageId());
+    if (record.getMessageId() == -1) {
+      writeString(record.getMessage());
+    }
+
+    String[] arguments = record.getArguments();
+    if (arguments == null) {
+      writeNumber(-1);
+    } else {
+      writeNumber(arguments.length);
+      for (String argument : arguments) {
+        writeString(argument);
+      }
+    }
+
+    writeThrowable(record.getThrown(), 0);
+  }
+
+  private void writeThrowable(SerializableThrowable thrown, int depth) {
+    // the reader rejects longer cause chains
+    if (thrown == null || depth > CompactLogFormat.MAX_CAUSES) {
+      writeNumber(0);
+      return;
+    }
+
+    writeNumber(1);
+    writeString(thrown.getDesignatedType());
+    writeNumber(thrown.isExactDesignatedTypeKnown() ? 1 : 0);
+    writeString(thrown.getMessage());
+
+    StackTraceElement[] stackTrace = thrown.getStackTrace();
+    int frameCount = Math.min(stackTrace.length, CompactLogFormat.MAX_ELEMENTS);
+    writeNumber(frameCount);
+    for (int i = 0; i < frameCount; i++) {
+      StackTraceElement element = stackTrace[i];
+      writeString(element.getClassName());
+      writeString(element.getMethodName());
+      writeString(element.getFileName());
+      writeNumber(element.getLineNumber());
+    }
+
+    writeThrowable(SerializableThrowable.fromThrowable(thrown.getCause()), depth + 1);
+  }
+
+  private void writeNumber(int number) {
+    out.append(Integer.toString(number, 36)).append(CompactLogFormat.NUMBER_END);
+  }
+
+  private void writeLong(long number) {
+    out.append(Long.toString(number, 36)).append(CompactLogFormat.NUMBER_END);
+  }
+
+  private void writeString(String value) {
+    if (value == null) {
+      out.append("-1").append(CompactLogFormat.STRING_START);
+    } else {
+      out.append(Integer.toString(value.length(), 36)).append(CompactLogFormat.STRING_START).append(value);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.gwt.user.client.rpc.RpcRequestBuilder;
+import com.google.gwt.user.client.rpc.StatusCodeException;
+import org.slf4gwt.remote.batching.shared.CompactLogFormat;
+
+/**
+ * sends a compact batch gzip compressed with the CompressionStream of the browser.
+ */
+final class CompressedRequest {
+
+  private CompressedRequest() {
+  }
+
+  /**
+   * @return true if the browser can compress requests
+   */
+  static native boolean isSupported() /*-{
+    return typeof $wnd.CompressionStream === 'function' && typeof $wnd.fetch === 'function'
+        && typeof $wnd.Blob === 'function' && typeof $wnd.Blob.prototype.stream === 'function';
+  }-*/;
+
+  /**
+   * Compresses and posts a batch. The compression runs asynchronously, off the call stack of the logging.
+   *
+   * @param url the url of the compact servlet
+   * @param strongName the strong name of the permutation
+   * @param batch the batch in the compact format
+   * @param callback called with the result of the servlet
+   */
+  static void send(String url, String strongName, String batch, AsyncCallback<String> callback) {
+    send(url, CompactLogFormat.CONTENT_TYPE, RpcRequestBuilder.STRONG_NAME_HEADER, strongName, batch, callback);
+  }
+
+  private static native void send(String url, String contentType, String strongNameHeader, String strongName,
+                                  String batch, AsyncCallback<String> callback) /*-{
+    var headers = {'Content-Type': contentType, 'Content-Encoding': 'gzip'};
+    headers[strongNameHeader] = strongName;
+
+    var compressed = new $wnd.Blob([batch]).stream().pipeThrough(new $wnd.CompressionStream('gzip'));
+    new $wnd.Response(compressed).blob().then(function(body) {
+      return $wnd.fetch(url, {method: 'POST', credentials: 'same-origin', headers: headers, body: body});
+    }).then(function(response) {
+      return response.text().then($entry(function(text) {
+        @org.slf4gwt.remote.batching.client.CompressedRequest::onResponse(*)(callback, response.status, text);
+      }));
+    }).then(null, $entry(function(e) {
+      @org.slf4gwt.remote.batching.client.CompressedRequest::onError(*)(callback, String(e));
+    }));
+  }-*/;
+
+  private static void onResponse(AsyncCallback<String> callback, int statusCode, String text) {
+    if (statusCode == Response.SC_OK) {
+      callback.onSuccess(text == null || text.isEmpty() ? null : text);
+    } else {
+      callback.onFailure(new StatusCodeException(statusCode, text));
+    }
+  }
+
+  private static void onError(AsyncCallback<String> callback, String message) {
+    callback.onFailure(new RequestException("Remote logging failed: " + message));
+  }
+}
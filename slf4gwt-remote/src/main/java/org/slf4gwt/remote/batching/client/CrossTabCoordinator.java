@@ -0,0 +1,232 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.user.client.Timer;
+import org.slf4gwt.remote.batching.shared.CompactLogReader;
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * lets the tabs of an application send their records through one tab, the leader.
+ *
+ * The leader holds a lease in the local storage and renews it while its page is visible. Hidden pages don't send by
+ * timers, so only a visible tab takes the lease and the leader releases it when its page is hidden. When the lease
+ * expires, e.g. because the leader crashed, the next visible tab that checks it takes over. The other tabs hand their
+ * batches to the leader with a BroadcastChannel instead of sending them to the server.
+ *
+ * The leader acknowledges the batches it received. A tab keeps the records of its batches until they are
+ * acknowledged, so they are saved with its own records. If a batch isn't acknowledged within the lease, because there
+ * was no leader or it closed, the records are given back to the tab and sent again.
+ */
+final class CrossTabCoordinator {
+
+  /**
+   * exchanges the records with the handler of the tab.
+   */
+  interface Receiver {
+
+    /**
+     * receives the records of another tab while this tab is the leader.
+     */
+    void receive(List<RemoteLogRecord> records);
+
+    /**
+     * gets back the records of a batch that no leader acknowledged, they are sent again.
+     */
+    void resend(List<RemoteLogRecord> records);
+
+    /**
+     * the leader acknowledged a batch, its records don't have to be kept anymore.
+     */
+    void acknowledged();
+  }
+
+  private static final String KEY_PREFIX = "slf4gwt.remoteLog.leader.";
+
+  private static final int HEARTBEAT_MILLIS = 2000;
+
+  private static final int LEASE_MILLIS = 3 * HEARTBEAT_MILLIS;
+
+  /** the first character of a message with records, followed by the tab id, the post id and the batch */
+  private static final char RECORDS = 'r';
+
+  /** the first character of an acknowledgement, followed by the tab id and the post id */
+  private static final char ACK = 'a';
+
+  private final String tabId;
+  private final Receiver receiver;
+  private final JavaScriptObject channel;
+  private final CrossTabLease lease;
+
+  private boolean visible = true;
+
+  /** the batches waiting for the acknowledgement of the leader */
+  private final CrossTabPosts posts = new CrossTabPosts(LEASE_MILLIS);
+
+  private final Timer heartbeatTimer = new Timer() {
+    @Override
+    public void run() {
+      heartbeat();
+    }
+  };
+
+  private CrossTabCoordinator(LogStorage storage, String name, String tabId, Receiver receiver) {
+    this.lease = new CrossTabLease(storage, KEY_PREFIX + name, tabId, LEASE_MILLIS);
+    this.tabId = tabId;
+    this.receiver = receiver;
+    this.channel = openChannel(KEY_PREFIX + name, this);
+
+    heartbeat();
+    heartbeatTimer.scheduleRepeating(HEARTBEAT_MILLIS);
+  }
+
+  /**
+   * @param storage the local storage of the browser
+   * @param name the name of the application, tabs with the same name share a leader
+   * @param tabId the unique id of this tab
+   * @param receiver receives the records of the other tabs while this tab is the leader
+   * @return the coordinator, or null if the browser doesn't support BroadcastChannel
+   */
+  static CrossTabCoordinator create(LogStorage storage, String name, String tabId, Receiver receiver) {
+    return isSupported() ? new CrossTabCoordinator(storage, name, tabId, receiver) : null;
+  }
+
+  boolean isLeader() {
+    return lease.isLeader();
+  }
+
+  /**
+   * Hands records to the leader. They are kept until the leader acknowledges them.
+   */
+  void post(List<RemoteLogRecord> records) {
+    ArrayList<RemoteLogRecord> postedRecords = new ArrayList<RemoteLogRecord>(records);
+    int postId = posts.add(postedRecords, Duration.currentTimeMillis());
+    postMessage(channel, RECORDS + tabId + ',' + Integer.toString(postId, 36) + ','
+            + CompactLogWriter.write(new RemoteLogBatch("", 0, postedRecords)));
+  }
+
+  /**
+   * @return the records that haven't been acknowledged yet, the oldest first
+   */
+  ArrayList<RemoteLogRecord> getUnacknowledged() {
+    return posts.getUnacknowledged();
+  }
+
+  /**
+   * A hidden page doesn't send by timers, so a hidden leader releases its lease and a visible tab can take over.
+   */
+  void setVisible(boolean visible) {
+    this.visible = visible;
+    if (visible) {
+      heartbeat();
+    } else {
+      release();
+    }
+  }
+
+  /**
+   * Gives up the leadership, e.g. because the page is closed.
+   */
+  void release() {
+    lease.release();
+  }
+
+  private void heartbeat() {
+    double now = Duration.currentTimeMillis();
+    boolean leader = lease.renew(now, visible);
+
+    // the batches that no leader acknowledged within the lease are sent again, all of them if this tab leads now
+    ArrayList<RemoteLogRecord> records = posts.takeExpired(now, leader);
+    if (!records.isEmpty()) {
+      receiver.resend(records);
+    }
+  }
+
+  private void onMessage(String message) {
+    int tabEnd = message.indexOf(',');
+    if (tabEnd < 1) {
+      return;
+    }
+    String senderTabId = message.substring(1, tabEnd);
+
+    if (message.charAt(0) == ACK) {
+      if (senderTabId.equals(tabId) && posts.acknowledge(parseId(message.substring(tabEnd + 1)))) {
+        receiver.acknowledged();
+      }
+      return;
+    }
+
+    int postEnd = message.indexOf(',', tabEnd + 1);
+    if (message.charAt(0) != RECORDS || postEnd < 0 || !lease.isLeader()) {
+      // without an acknowledgement the sender sends the records again
+      return;
+    }
+
+    ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    try {
+      CompactLogReader reader = new CompactLogReader(new CompactLogReader.StringInput(message.substring(postEnd + 1)));
+      RemoteLogRecord record;
+      while ((record = reader.next()) != null) {
+        records.add(record);
+      }
+    } catch (IOException e) {
+      // keep the records that could be read
+    }
+    receiver.receive(records);
+    postMessage(channel, ACK + senderTabId + ',' + message.substring(tabEnd + 1, postEnd));
+  }
+
+  private static Integer parseId(String value) {
+    try {
+      return Integer.valueOf(Integer.parseInt(value, 36));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static native boolean isSupported() /*-{
+    return typeof $wnd.BroadcastChannel === 'function';
+  }-*/;
+
+  private static native JavaScriptObject openChannel(String name, CrossTabCoordinator coordinator) /*-{
+    var channel = new $wnd.BroadcastChannel(name);
+    channel.onmessage = $entry(function(event) {
+      if (typeof event.data === 'string') {
+        coordinator.@org.slf4gwt.remote.batching.client.CrossTabCoordinator::onMessage(*)(event.data);
+      }
+    });
+    return channel;
+  }-*/;
+
+  private static native void postMessage(JavaScriptObject channel, String message) /*-{
+    channel.postMessage(message);
+  }-*/;
+}
@@ -0,0 +1,109 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+/**
+ * the lease of the leader of the tabs in the local storage.
+ *
+ * The lease holds the id of the leader and the time it expires. The leader renews it while its page is visible. A
+ * visible tab takes an expired lease, a hidden tab doesn't, because hidden pages don't send by timers.
+ *
+ * The storage can't compare and set, so tabs that take an expired lease at the same time all write it. Each tab reads
+ * the lease back and only leads if it holds its id, the last writer wins. A tab that read its id back before another
+ * tab wrote the lease leads until its next renewal finds the other owner.
+ */
+final class CrossTabLease {
+
+  private final LogStorage storage;
+  private final String key;
+  private final String tabId;
+  private final int leaseMillis;
+
+  private boolean leader;
+
+  /**
+   * @param key the key of the lease in the storage
+   * @param tabId the unique id of this tab
+   * @param leaseMillis the time the lease is valid after it was renewed
+   */
+  CrossTabLease(LogStorage storage, String key, String tabId, int leaseMillis) {
+    this.storage = storage;
+    this.key = key;
+    this.tabId = tabId;
+    this.leaseMillis = leaseMillis;
+  }
+
+  boolean isLeader() {
+    return leader;
+  }
+
+  /**
+   * Renews the lease if this tab leads, or takes it if it expired and the page is visible.
+   *
+   * @return true if this tab leads
+   */
+  boolean renew(double now, boolean visible) {
+    String lease = storage.getItem(key);
+    String owner = owner(lease);
+    boolean expired = owner == null || parseMillis(lease.substring(lease.lastIndexOf(',') + 1)) < now;
+
+    leader = tabId.equals(owner) && !expired;
+    if (visible && (expired || leader)) {
+      try {
+        storage.setItem(key, tabId + ',' + Long.toString((long) now + leaseMillis, 36));
+        // another tab may have written the lease after this tab read it
+        leader = tabId.equals(owner(storage.getItem(key)));
+      } catch (RuntimeException e) {
+        // the storage is full, stay in the current role
+      }
+    }
+    return leader;
+  }
+
+  /**
+   * @return the id of the tab that holds the lease, or null if there is no lease
+   */
+  private static String owner(String lease) {
+    int separator = lease != null ? lease.lastIndexOf(',') : -1;
+    return separator > 0 ? lease.substring(0, separator) : null;
+  }
+
+  /**
+   * Gives up the leadership, e.g. because the page is hidden or closed.
+   */
+  void release() {
+    if (leader) {
+      leader = false;
+      storage.removeItem(key);
+    }
+  }
+
+  private static double parseMillis(String value) {
+    try {
+      return Long.parseLong(value, 36);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * the batches a tab handed to the leader, they are kept until the leader acknowledges them.
+ *
+ * A batch that isn't acknowledged within the lease, because there was no leader or it closed, is given back to be
+ * sent again. If the tab leads itself, all batches are given back, it sends them to the server.
+ */
+final class CrossTabPosts {
+
+  /**
+   * a batch that waits for the acknowledgement.
+   */
+  private static final class Post {
+
+    final ArrayList<RemoteLogRecord> records;
+    final double postedMillis;
+
+    Post(ArrayList<RemoteLogRecord> records, double postedMillis) {
+      this.records = records;
+      this.postedMillis = postedMillis;
+    }
+  }
+
+  private final int leaseMillis;
+
+  /** the batches by their id, the oldest first */
+  private final LinkedHashMap<Integer, Post> posts = new LinkedHashMap<Integer, Post>();
+  private int nextPostId;
+
+  /**
+   * @param leaseMillis the time within which the leader acknowledges a batch
+   */
+  CrossTabPosts(int leaseMillis) {
+    this.leaseMillis = leaseMillis;
+  }
+
+  /**
+   * @return the id of the batch
+   */
+  int add(ArrayList<RemoteLogRecord> records, double now) {
+    int postId = nextPostId++;
+    posts.put(postId, new Post(records, now));
+    return postId;
+  }
+
+  /**
+   * @return true if the batch was waiting for the acknowledgement
+   */
+  boolean acknowledge(Integer postId) {
+    return posts.remove(postId) != null;
+  }
+
+  /**
+   * @return the records that haven't been acknowledged yet, the oldest first
+   */
+  ArrayList<RemoteLogRecord> getUnacknowledged() {
+    ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    for (Post post : posts.values()) {
+      records.addAll(post.records);
+    }
+    return records;
+  }
+
+  /**
+   * Takes the records of the batches that weren't acknowledged within the lease, or of all batches if this tab leads.
+   *
+   * @return the records, the oldest first
+   */
+  ArrayList<RemoteLogRecord> takeExpired(double now, boolean leader) {
+    ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    for (Iterator<Post> it = posts.values().iterator(); it.hasNext(); ) {
+      Post post = it.next();
+      if (leader || now - post.postedMillis > leaseMillis) {
+        records.addAll(post.records);
+        it.remove();
+      }
+    }
+    return records;
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+
+/**
+ * runs commands when the browser is idle, so they don't compete with user interaction.
+ */
+final class IdleCallback {
+
+  private IdleCallback() {
+  }
+
+  /**
+   * Runs a command when the browser is idle, but at the latest after the timeout.
+   *
+   * @return false if the browser doesn't support idle callbacks, the command isn't run then
+   */
+  static native boolean request(ScheduledCommand command, int timeoutMillis) /*-{
+    if (typeof $wnd.requestIdleCallback !== 'function') {
+      return false;
+    }
+    $wnd.requestIdleCallback($entry(function() {
+      command.@com.google.gwt.core.client.Scheduler.ScheduledCommand::execute()();
+    }), {timeout: timeoutMillis});
+    return true;
+  }-*/;
+}
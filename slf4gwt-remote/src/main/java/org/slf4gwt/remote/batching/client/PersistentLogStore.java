@@ -0,0 +1,336 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.slf4gwt.remote.batching.shared.CompactLogReader;
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * keeps the records of the remote batch log handler in the browser storage, so they are sent after a reload.
+ *
+ * The records of a page are saved in segments, each under its own key and in the
+ * {@link org.slf4gwt.remote.batching.shared.CompactLogFormat}. A save only writes a segment with the records added
+ * since the last save and rewrites or removes the segments whose records have been sent, so a long queue isn't
+ * written again every time. The page key lists the segments together with the time of the save. If the records
+ * don't fit into the budget of bytes, the oldest segments are removed from the storage.
+ *
+ * A page adopts the records of pages that have been closed, or that haven't saved for a while because they crashed.
+ * A live page refreshes the time of its last save with {@link #refresh(long)}, even if its queue doesn't change.
+ * It first claims the page with a marker and only reads the records if the marker is still its own, so two tabs that
+ * start at the same time don't both adopt the same records.
+ */
+final class PersistentLogStore {
+
+  private static final String KEY_PREFIX = "slf4gwt.remoteLog.page.";
+
+  private static final String SEGMENT_PREFIX = "slf4gwt.remoteLog.segment.";
+
+  private static final String CLAIM_PREFIX = "slf4gwt.remoteLog.claim.";
+
+  /** the time after which the records of a page that wasn't closed, or the claim of a page, are abandoned */
+  private static final long ABANDONED_AFTER_MILLIS = 5 * 60 * 1000;
+
+  /** the interval in which a page that doesn't save refreshes the time of its last save */
+  static final int REFRESH_MILLIS = 60 * 1000;
+
+  /** the save time of a closed page */
+  private static final long CLOSED = 0;
+
+  /**
+   * records that have been saved together.
+   */
+  private static final class Segment {
+
+    final int number;
+    final ArrayList<RemoteLogRecord> records;
+    /** the repeat counts of the records when they were saved */
+    final int[] repeatCounts;
+    final String value;
+    /** false if the segment didn't fit into the storage, its records are only kept in memory */
+    boolean stored;
+
+    Segment(int number, ArrayList<RemoteLogRecord> records) {
+      this.number = number;
+      this.records = records;
+      this.repeatCounts = new int[records.size()];
+      for (int i = 0; i < repeatCounts.length; i++) {
+        repeatCounts[i] = records.get(i).getRepeatCount();
+      }
+      this.value = CompactLogWriter.write(new RemoteLogBatch("", 0, records));
+    }
+  }
+
+  private final LogStorage storage;
+  private final String pageKey;
+  private final String key;
+  private final int maxChars;
+
+  /** the segments of this page, the oldest first */
+  private final ArrayList<Segment> segments = new ArrayList<Segment>();
+  private int nextSegmentNumber;
+  private int storedChars;
+  /** the time of the last save, {@link #CLOSED} if the page was closed */
+  private long savedMillis = CLOSED;
+
+  /**
+   * @param storage the storage of the browser
+   * @param pageKey the unique key of the page
+   * @param maxBytes the budget of the records in bytes
+   */
+  PersistentLogStore(LogStorage storage, String pageKey, int maxBytes) {
+    this.storage = storage;
+    this.pageKey = pageKey;
+    this.key = KEY_PREFIX + pageKey;
+    this.maxChars = maxBytes / 2;
+  }
+
+  /**
+   * Removes the records of abandoned pages from the storage.
+   *
+   * @return the records, the oldest first
+   */
+  ArrayList<RemoteLogRecord> adoptAbandoned() {
+    return adoptAbandoned(System.currentTimeMillis());
+  }
+
+  ArrayList<RemoteLogRecord> adoptAbandoned(long now) {
+    ArrayList<String> abandonedPages = new ArrayList<String>();
+    for (int i = 0; i < storage.getLength(); i++) {
+      String storedKey = storage.key(i);
+      if (storedKey != null && storedKey.startsWith(KEY_PREFIX) && !storedKey.equals(key)) {
+        String value = storage.getItem(storedKey);
+        if (value != null && isAbandoned(value, now)) {
+          abandonedPages.add(storedKey.substring(KEY_PREFIX.length()));
+        }
+      }
+    }
+
+    ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    for (String abandonedPage : abandonedPages) {
+      if (claim(abandonedPage, now)) {
+        // null if another tab adopted the page before this tab claimed it
+        String value = storage.getItem(KEY_PREFIX + abandonedPage);
+        if (value != null) {
+          String[] fields = value.split(",");
+          for (int i = 1; i < fields.length; i++) {
+            String segmentKey = SEGMENT_PREFIX + abandonedPage + '.' + fields[i];
+            String segment = storage.getItem(segmentKey);
+            storage.removeItem(segmentKey);
+            if (segment != null) {
+              read(segment, records);
+            }
+          }
+          storage.removeItem(KEY_PREFIX + abandonedPage);
+        }
+        storage.removeItem(CLAIM_PREFIX + abandonedPage);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Claims an abandoned page for this page. The storage can't compare and set atomically, so the marker is set and
+   * read back: if another tab claimed the page at the same time, the marker of the later tab wins.
+   *
+   * @return true if this page may adopt the records
+   */
+  private boolean claim(String abandonedPage, long now) {
+    String claimKey = CLAIM_PREFIX + abandonedPage;
+    String claim = storage.getItem(claimKey);
+    // the claim of a tab that crashed while adopting expires
+    if (claim != null && !isAbandoned(claim, now)) {
+      return false;
+    }
+
+    String marker = Long.toString(now, 36) + ',' + pageKey;
+    try {
+      storage.setItem(claimKey, marker);
+    } catch (RuntimeException e) {
+      return false;
+    }
+    return marker.equals(storage.getItem(claimKey));
+  }
+
+  /**
+   * Saves the records of this page. Only the segments that changed since the last save are written.
+   *
+   * @param records the records, the oldest first
+   * @param closing true if the page is closed and its records can be adopted right away
+   */
+  void save(List<RemoteLogRecord> records, boolean closing) {
+    IdentityHashMap<RemoteLogRecord, Boolean> current = new IdentityHashMap<RemoteLogRecord, Boolean>();
+    for (RemoteLogRecord record : records) {
+      current.put(record, Boolean.TRUE);
+    }
+
+    IdentityHashMap<RemoteLogRecord, Boolean> saved = new IdentityHashMap<RemoteLogRecord, Boolean>();
+    for (int i = 0; i < segments.size(); i++) {
+      Segment segment = segments.get(i);
+      ArrayList<RemoteLogRecord> kept = new ArrayList<RemoteLogRecord>();
+      boolean repeated = false;
+      for (int j = 0; j < segment.records.size(); j++) {
+        RemoteLogRecord record = segment.records.get(j);
+        if (current.containsKey(record)) {
+          kept.add(record);
+          saved.put(record, Boolean.TRUE);
+          repeated |= record.getRepeatCount() != segment.repeatCounts[j];
+        }
+      }
+
+      if (kept.size() < segment.records.size() || repeated) {
+        unstore(segment);
+        if (kept.isEmpty()) {
+          segments.remove(i--);
+        } else {
+          Segment rewritten = new Segment(segment.number, kept);
+          segments.set(i, rewritten);
+          store(rewritten);
+        }
+      }
+    }
+
+    ArrayList<RemoteLogRecord> added = new ArrayList<RemoteLogRecord>();
+    for (RemoteLogRecord record : records) {
+      if (!saved.containsKey(record)) {
+        added.add(record);
+      }
+    }
+    if (!added.isEmpty()) {
+      Segment segment = new Segment(nextSegmentNumber++, added);
+      segments.add(segment);
+      store(segment);
+    }
+
+    saveSegmentList(closing ? CLOSED : System.currentTimeMillis());
+  }
+
+  /**
+   * Refreshes the time of the last save, so the records of a live page aren't adopted by other pages while its queue
+   * doesn't change, e.g. because it is offline. Call it every {@link #REFRESH_MILLIS}.
+   */
+  void refresh(long now) {
+    if (savedMillis != CLOSED && storedChars > 0 && now - savedMillis >= REFRESH_MILLIS) {
+      saveSegmentList(now);
+    }
+  }
+
+  /**
+   * Writes a segment, removes the oldest segments from the storage if it doesn't fit.
+   */
+  private void store(Segment segment) {
+    int oldest = 0;
+    while (true) {
+      if (storedChars + segment.value.length() <= maxChars) {
+        try {
+          storage.setItem(segmentKey(segment), segment.value);
+          segment.stored = true;
+          storedChars += segment.value.length();
+          return;
+        } catch (RuntimeException e) {
+          // the storage is full, make room
+        }
+      }
+
+      while (oldest < segments.size() && (!segments.get(oldest).stored || segments.get(oldest) == segment)) {
+        oldest++;
+      }
+      if (oldest == segments.size()) {
+        return;
+      }
+      unstore(segments.get(oldest));
+    }
+  }
+
+  private void unstore(Segment segment) {
+    if (segment.stored) {
+      segment.stored = false;
+      storedChars -= segment.value.length();
+      storage.removeItem(segmentKey(segment));
+    }
+  }
+
+  private String segmentKey(Segment segment) {
+    return SEGMENT_PREFIX + pageKey + '.' + Integer.toString(segment.number, 36);
+  }
+
+  /**
+   * Writes the time of the save and the stored segments under the key of the page.
+   *
+   * @param now the time of the save, or {@link #CLOSED} if the page is closed
+   */
+  private void saveSegmentList(long now) {
+    savedMillis = now;
+    StringBuilder value = new StringBuilder(Long.toString(now, 36));
+    for (Segment segment : segments) {
+      if (segment.stored) {
+        value.append(',').append(Integer.toString(segment.number, 36));
+      }
+    }
+
+    if (storedChars == 0) {
+      storage.removeItem(key);
+      return;
+    }
+    try {
+      storage.setItem(key, value.toString());
+    } catch (RuntimeException e) {
+      // the segments can't be found without the list, don't leave them behind
+      for (Segment segment : segments) {
+        unstore(segment);
+      }
+    }
+  }
+
+  private static boolean isAbandoned(String value, long now) {
+    long saved = savedMillis(value);
+    return saved == CLOSED || now - saved > ABANDONED_AFTER_MILLIS;
+  }
+
+  private static long savedMillis(String value) {
+    int end = value.indexOf(',');
+    try {
+      return Long.parseLong(end >= 0 ? value.substring(0, end) : value, 36);
+    } catch (NumberFormatException e) {
+      return CLOSED;
+    }
+  }
+
+  private static void read(String value, List<RemoteLogRecord> records) {
+    try {
+      CompactLogReader reader = new CompactLogReader(new CompactLogReader.StringInput(value));
+      RemoteLogRecord record;
+      while ((record = reader.next()) != null) {
+        records.add(record);
+      }
+    } catch (IOException e) {
+      // keep the records that could be read, the rest is lost
+    }
+  }
+}
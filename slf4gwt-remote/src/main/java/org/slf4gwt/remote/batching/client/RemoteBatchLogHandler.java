@@ -23,14 +23,40 @@
  */
 package org.slf4gwt.remote.batching.client;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.event.logical.shared.CloseEvent;
+import com.google.gwt.event.logical.shared.CloseHandler;
+import com.google.gwt.core.shared.SerializableThrowable;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.http.client.URL;
 import com.google.gwt.logging.client.RemoteLogHandlerBase;
+import com.google.gwt.user.client.Random;
 import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.gwt.user.client.rpc.RpcRequestBuilder;
+import com.google.gwt.user.client.rpc.StatusCodeException;
+import org.slf4gwt.logging.gwt.DeferredLogRecord;
+import org.slf4gwt.remote.batching.shared.CompactLogFormat;
 import org.slf4gwt.remote.batching.shared.RemoteBatchLoggingService;
 import org.slf4gwt.remote.batching.shared.RemoteBatchLoggingServiceAsync;
+import org.slf4gwt.remote.batching.shared.RemoteStructuredLoggingService;
+import org.slf4gwt.remote.batching.shared.RemoteStructuredLoggingServiceAsync;
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+import org.slf4j.helpers.MessageFormatter;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
@@ -43,74 +69,808 @@ import java.util.logging.LogRecord;
  * If a request is pending, the messages are collected, too. So the amount of log-requests to the server is optimized.
  * And the Handler has filter that removed log messages with a lower log level. So you can log on INFO on the client and
  * send only WARN and higher levels to the server.
+ *
+ * With the configuration property {@code slf4gwt.log.remote.batch.structured} set to true, the handler sends the
+ * message patterns and the arguments as strings instead of formatted messages, so the client doesn't build the
+ * messages and the server can group records by their pattern. Logger names and patterns are sent only once per
+ * session, later records refer to them by an id (see {@link RemoteLogBatch}).
+ *
+ * With the configuration property {@code slf4gwt.log.remote.batch.transport} set to {@code compact}, the batches are
+ * sent in the {@link CompactLogFormat} to the {@code CompactRemoteLoggingServlet} instead of GWT RPC. Setting
+ * {@code slf4gwt.log.remote.batch.compress} to true additionally gzip compresses larger compact batches in browsers
+ * that support the CompressionStream API.
+ *
+ * The queue of the handler is bounded by {@code slf4gwt.log.remote.batch.maxQueueRecords} and
+ * {@code slf4gwt.log.remote.batch.maxQueueBytes}, values below 1 are raised to 1. If it is full, {@code slf4gwt.log.remote.batch.dropPolicy} decides
+ * whether the {@code oldest} records, the {@code newest} record or the records with the {@code lowestLevel} are
+ * dropped. The number of dropped records is sent with the next batch. With
+ * {@code slf4gwt.log.remote.batch.collapseRepeats} set to true, a record that equals a queued record is sent as a
+ * repeat count and the time of the last repeat of the queued record.
+ *
+ * The records of noisy loggers can be limited with {@code slf4gwt.log.remote.batch.loggerRateLimits} and
+ * {@code slf4gwt.log.remote.batch.levelRateLimits}, and the records of a level can be sampled with
+ * {@code slf4gwt.log.remote.batch.sampleRates} (see {@link RemoteLogRateLimiter}). SEVERE records are always sent. The
+ * limits can be changed at runtime, and the number of rejected records is sent by level with the next batch.
+ *
+ * A batch holds at most {@code slf4gwt.log.remote.batch.maxBatchRecords} records and
+ * {@code slf4gwt.log.remote.batch.maxBatchBytes} estimated bytes, larger queues are sent with several requests. A full
+ * batch is sent right away, otherwise the handler waits between 100 milliseconds and
+ * {@code slf4gwt.log.remote.batch.maxDelayMillis}, longer when there is little traffic. With
+ * {@code slf4gwt.log.remote.batch.flushWhenIdle} set to true, batches are sent when the browser is idle.
+ *
+ * A failed batch is put back into the queue and sent again after a jittered, exponentially growing delay. After
+ * {@code slf4gwt.log.remote.batch.maxRetries} failures in a row the handler only probes the server with a small batch
+ * every {@code slf4gwt.log.remote.batch.circuitOpenMillis}, until a batch succeeds. When the browser reports that it
+ * is online again, a waiting retry is sent right away.
+ *
+ * With {@code slf4gwt.log.remote.batch.persistent} set to true, the queued records are also kept in the local storage
+ * of the browser, within {@code slf4gwt.log.remote.batch.storageBytes}. The next page sends the records of a page that
+ * was closed or reloaded before they were sent (see {@link PersistentLogStore}).
+ *
+ * While the page is hidden, no batches are sent by timers. With {@code slf4gwt.log.remote.batch.flushOnHide} set to
+ * true, the queue is sent with {@code navigator.sendBeacon} to the {@code CompactRemoteLoggingServlet} when the page
+ * is hidden, so the last records before a navigation or a closed tab aren't lost.
+ *
+ * With {@code slf4gwt.log.remote.batch.crossTab} set to true, the tabs of the application elect a leader that sends
+ * the records of all tabs to the server (see {@link CrossTabCoordinator}).
+ *
+ * Up to {@code slf4gwt.log.remote.batch.maxInFlight} batches wait for the server at the same time. The batches carry
+ * a sequence number, so the server logs them in order (see {@link RemoteLogBatch}). Lists of LogRecords have no
+ * sequence numbers and are sent one at a time.
  */
 public class RemoteBatchLogHandler extends RemoteLogHandlerBase {
+  /** the minimum delay to allow a few log messages to accumulate before a batch is sent */
   private static final int MESSAGE_QUEUEING_DELAY_MILLIS = 100;
 
-  private boolean callInProgressOrScheduled = false;
+  /** send message patterns and arguments instead of formatted messages, configured in your gwt.xml file */
+  private static final boolean STRUCTURED =
+          "true".equals(System.getProperty("slf4gwt.log.remote.batch.structured", "false"));
+
+  /** send batches in the compact format instead of GWT RPC, configured in your gwt.xml file */
+  private static final boolean COMPACT =
+          "compact".equals(System.getProperty("slf4gwt.log.remote.batch.transport", "rpc"));
+
+  /** send {@link RemoteLogBatch}es instead of lists of LogRecords */
+  private static final boolean REMOTE_LOG_BATCHES = STRUCTURED || COMPACT;
+
+  /** compress compact batches if the browser supports it, configured in your gwt.xml file */
+  private static final boolean COMPRESS =
+          COMPACT && "true".equals(System.getProperty("slf4gwt.log.remote.batch.compress", "false"));
+
+  /** the minimum length of a compact batch to compress it, smaller batches don't gain from it */
+  private static final int COMPRESSION_THRESHOLD = 1024;
+
+  private static final String COMPACT_SERVLET_PATH = "remote_logging_compact";
+
+  /** the maximum number of queued records, configured in your gwt.xml file */
+  private static final int MAX_QUEUE_RECORDS =
+          Math.max(1, Integer.parseInt(System.getProperty("slf4gwt.log.remote.batch.maxQueueRecords", "1000")));
+
+  /** the maximum estimated size of the queued records in bytes, configured in your gwt.xml file */
+  private static final int MAX_QUEUE_BYTES =
+          Math.max(1, Integer.parseInt(System.getProperty("slf4gwt.log.remote.batch.maxQueueBytes", "1048576")));
+
+  /** which records are dropped if the queue is full, configured in your gwt.xml file */
+  private static final RemoteLogQueue.DropPolicy DROP_POLICY =
+          RemoteLogQueue.DropPolicy.parse(System.getProperty("slf4gwt.log.remote.batch.dropPolicy", "oldest"));
+
+  /** count equal records as repeats of a queued record, configured in your gwt.xml file */
+  private static final boolean COLLAPSE_REPEATS =
+          "true".equals(System.getProperty("slf4gwt.log.remote.batch.collapseRepeats", "false"));
+
+  /** the rate limits by logger prefix, configured in your gwt.xml file */
+  private static final String LOGGER_RATE_LIMITS =
+          System.getProperty("slf4gwt.log.remote.batch.loggerRateLimits", "");
+
+  /** the rate limits by level, configured in your gwt.xml file */
+  private static final String LEVEL_RATE_LIMITS = System.getProperty("slf4gwt.log.remote.batch.levelRateLimits", "");
+
+  /** the sample rates by level, configured in your gwt.xml file */
+  private static final String SAMPLE_RATES = System.getProperty("slf4gwt.log.remote.batch.sampleRates", "");
+
+  /** the maximum number of records of a batch, configured in your gwt.xml file */
+  private static final int MAX_BATCH_RECORDS =
+          Integer.parseInt(System.getProperty("slf4gwt.log.remote.batch.maxBatchRecords", "200"));
+
+  /** the maximum estimated size of a batch in bytes, configured in your gwt.xml file */
+  private static final int MAX_BATCH_BYTES =
+          Integer.parseInt(System.getProperty("slf4gwt.log.remote.batch.maxBatchBytes", "131072"));
+
+  /** the maximum delay of a batch with light traffic, configured in your gwt.xml file */
+  private static final int MAX_DELAY_MILLIS =
+          Integer.parseInt(System.getProperty("slf4gwt.log.remote.batch.maxDelayMillis", "2000"));
+
+  /** wait until the browser is idle before a batch is sent, configured in your gwt.xml file */
+  private static final boolean FLUSH_WHEN_IDLE =
+          "true".equals(System.getProperty("slf4gwt.log.remote.batch.flushWhenIdle", "false"));
+
+  /** the number of retries of a failed batch before the handler stops sending, configured in your gwt.xml file */
+  private static final int MAX_RETRIES =
+          Integer.parseInt(System.getProperty("slf4gwt.log.remote.batch.maxRetries", "5"));
+
+  /** the time between probes of the server after too many failures, configured in your gwt.xml file */
+  private static final int CIRCUIT_OPEN_MILLIS =
+          Integer.parseInt(System.getProperty("slf4gwt.log.remote.batch.circuitOpenMillis", "60000"));
+
+  /** the delay of the first retry, doubled for each further retry */
+  private static final int RETRY_BASE_DELAY_MILLIS = 1000;
+
+  private static final int MAX_RETRY_DELAY_MILLIS = 30000;
 
-  private Throwable failure;
+  /** the maximum number of records of a batch that probes the server */
+  private static final int PROBE_BATCH_RECORDS = 10;
+
+  /** keep the queued records in the browser storage, configured in your gwt.xml file */
+  private static final boolean PERSISTENT =
+          "true".equals(System.getProperty("slf4gwt.log.remote.batch.persistent", "false"));
+
+  /** the budget of the records in the browser storage in bytes, configured in your gwt.xml file */
+  private static final int STORAGE_BYTES =
+          Integer.parseInt(System.getProperty("slf4gwt.log.remote.batch.storageBytes", "1048576"));
+
+  /** the delay to collect changes of the queue before they are saved in the browser storage */
+  private static final int PERSIST_DELAY_MILLIS = 1000;
+
+  /** send the queued records with a beacon when the page is hidden, configured in your gwt.xml file */
+  private static final boolean FLUSH_ON_HIDE =
+          "true".equals(System.getProperty("slf4gwt.log.remote.batch.flushOnHide", "false"));
+
+  /** send the records of all tabs through one tab, configured in your gwt.xml file */
+  private static final boolean CROSS_TAB =
+          "true".equals(System.getProperty("slf4gwt.log.remote.batch.crossTab", "false"));
+
+  /** the maximum number of batches that wait for the server, configured in your gwt.xml file */
+  private static final int MAX_IN_FLIGHT = REMOTE_LOG_BATCHES
+          ? Integer.parseInt(System.getProperty("slf4gwt.log.remote.batch.maxInFlight", "2"))
+          // lists of LogRecords have no sequence numbers, so the server can't restore their order
+          : 1;
+
+  /** the batch delivery timer fired and waits for the browser to be idle */
+  private boolean idleFlushPending = false;
+
+  /** a failed batch waits for its retry */
+  private boolean retryScheduled = false;
+
+  /** batches aren't sent by timers while the page is hidden */
+  private boolean pageHidden = false;
 
   private final Timer batchDeliveryTimer = new Timer() {
     @Override
     public void run() {
-      service.logOnServer(logRecordList, callback);
-      logRecordList.clear();
+      if (FLUSH_WHEN_IDLE && IdleCallback.request(flushCommand, MAX_DELAY_MILLIS)) {
+        idleFlushPending = true;
+      } else {
+        sendNextBatch();
+      }
+    }
+  };
+
+  private final Timer retryTimer = new Timer() {
+    @Override
+    public void run() {
+      retryScheduled = false;
+      if (!pageHidden && inFlightCalls.size() < maxInFlight()) {
+        // don't wait for more records, the failed ones have waited long enough
+        batchDeliveryTimer.cancel();
+        sendNextBatch();
+      }
+    }
+  };
+
+  private final Timer persistTimer = new Timer() {
+    @Override
+    public void run() {
+      persist(false);
     }
   };
 
-  private final ArrayList<LogRecord> logRecordList = new ArrayList<LogRecord>();
+  /** keeps the saved records of this page from being adopted by other pages while the queue doesn't change */
+  private final Timer refreshTimer = new Timer() {
+    @Override
+    public void run() {
+      store.refresh(System.currentTimeMillis());
+    }
+  };
+
+  private final ScheduledCommand flushCommand = new ScheduledCommand() {
+    @Override
+    public void execute() {
+      idleFlushPending = false;
+      sendNextBatch();
+    }
+  };
 
+  private final RemoteLogQueue queue = new RemoteLogQueue(MAX_QUEUE_RECORDS, MAX_QUEUE_BYTES, DROP_POLICY,
+          COLLAPSE_REPEATS);
+
+  /** the current delay of a batch, adapted to the traffic */
+  private final RemoteFlushDelay flushDelay =
+          new RemoteFlushDelay(MESSAGE_QUEUEING_DELAY_MILLIS, MAX_DELAY_MILLIS, MAX_BATCH_RECORDS);
+
+  private final RemoteRetryPolicy retryPolicy = new RemoteRetryPolicy(MAX_RETRIES, CIRCUIT_OPEN_MILLIS,
+          RETRY_BASE_DELAY_MILLIS, MAX_RETRY_DELAY_MILLIS);
+
+  private final RemoteLogRateLimiter rateLimiter =
+          new RemoteLogRateLimiter(LOGGER_RATE_LIMITS, LEVEL_RATE_LIMITS, SAMPLE_RATES, wireLogger);
+
+  /** the batches that wait for the server */
+  private final ArrayList<DefaultCallback> inFlightCalls = new ArrayList<DefaultCallback>();
+
+  /** logger names and message patterns that have been sent to the server, mapped to their id */
+  private final HashMap<String, Integer> dictionary = new HashMap<String, Integer>();
+
+  /** the unique key of the page */
+  private final String pageKey = Long.toString((long) Duration.currentTimeMillis(), 36) + '-'
+          + Integer.toString(Random.nextInt(Integer.MAX_VALUE), 36);
+
+  /** the key of the current dictionary, the server keeps the dictionary and the order of the batches by this key */
+  private String dictionaryKey = pageKey;
+
+  private int dictionaryGeneration = 0;
+
+  /** the sequence number of the next batch of the current dictionary */
+  private int nextSequence = 0;
+
+  /** the order in which the next batch is sent, across dictionaries */
+  private int nextSendOrder = 0;
+
+  /** the send order of the batches of requeued records, so they are sent again in their original order */
+  private IdentityHashMap<RemoteLogRecord, Integer> requeuedSendOrders =
+          new IdentityHashMap<RemoteLogRecord, Integer>();
+
+  /**
+   * the callback of a batch, keeps its records to send them again if it fails or the server lost the dictionary.
+   */
   class DefaultCallback implements AsyncCallback<String> {
 
+    private final ArrayList<RemoteLogRecord> records;
+    private final String batchDictionaryKey;
+    private final int sendOrder;
+    /** the batch as it was sent, null if the records were sent as list of LogRecords */
+    private RemoteLogBatch batch;
+    /** whether the batch added strings to the dictionary, the next batch of the dictionary would refer to them */
+    private boolean addedStrings;
+
+    DefaultCallback(ArrayList<RemoteLogRecord> records) {
+      this.records = records;
+      this.batchDictionaryKey = dictionaryKey;
+      this.sendOrder = nextSendOrder++;
+    }
+
     @Override
     public void onFailure(Throwable caught) {
-      wireLogger.log(Level.SEVERE, "Remote logging failed: ", caught);
-      failure = caught;
-      callInProgressOrScheduled = false;
+      inFlightCalls.remove(this);
+      // the server may not have seen the strings of the batch
+      startNewDictionary(batchDictionaryKey);
+      if (caught instanceof StatusCodeException
+              && ((StatusCodeException) caught).getStatusCode() == Response.SC_REQUEST_ENTITY_TOO_LARGE) {
+        // the server would reject the batch again
+        wireLogger.severe("Remote logging failed, the server rejected a batch of " + records.size()
+                + " records as too large");
+        queueChanged();
+        maybeTriggerRPC();
+        return;
+      }
+      requeue(this);
+
+      boolean circuitWasOpen = retryPolicy.isCircuitOpen();
+      int delayMillis = retryPolicy.failed();
+      if (!retryPolicy.isCircuitOpen()) {
+        wireLogger.log(Level.WARNING, "Remote logging failed, retry in " + delayMillis + " ms: ", caught);
+      } else if (!circuitWasOpen) {
+        wireLogger.log(Level.SEVERE, "Remote logging failed, suspended for " + delayMillis + " ms: ", caught);
+      }
+
+      if (!retryScheduled) {
+        retryScheduled = true;
+        batchDeliveryTimer.cancel();
+        retryTimer.schedule(RemoteRetryPolicy.jitter(delayMillis, Random.nextDouble()));
+      }
     }
 
     @Override
     public void onSuccess(String result) {
+      inFlightCalls.remove(this);
+      if (REMOTE_LOG_BATCHES && RemoteLogBatch.DICTIONARY_RESET.equals(result)) {
+        // the server doesn't know our dictionary, e.g. because the session expired or a batch before failed
+        wireLogger.finest("Remote logging dictionary reset");
+        startNewDictionary(batchDictionaryKey);
+        requeue(this);
+        maybeTriggerRPC();
+        return;
+      }
+
+      queueChanged();
+      if (retryPolicy.succeeded()) {
+        wireLogger.info("Remote logging resumed");
+      }
       if (result != null) {
         wireLogger.severe("Remote logging failed: " + result);
       } else {
         wireLogger.finest("Remote logging message acknowledged");
       }
 
-      callInProgressOrScheduled = false;
       maybeTriggerRPC();
     }
   }
 
-  private AsyncCallback<String> callback;
+  /** the RPC proxy for lists of LogRecords, null if batches are sent */
   private RemoteBatchLoggingServiceAsync service;
 
+  /** the RPC proxy for structured batches, null unless they are sent with GWT RPC */
+  private RemoteStructuredLoggingServiceAsync structuredService;
+
+  /** the browser storage of the queued records, null if the records are only kept in memory */
+  private PersistentLogStore store;
+
+  /** the coordinator of the tabs, null if every tab sends its own records */
+  private CrossTabCoordinator coordinator;
+
   public RemoteBatchLogHandler() {
-    service = (RemoteBatchLoggingServiceAsync) GWT.create(RemoteBatchLoggingService.class);
-    this.callback = new DefaultCallback();
+    // each mode only creates its own RPC proxy, so the other serializers aren't compiled in
+    if (!REMOTE_LOG_BATCHES) {
+      service = (RemoteBatchLoggingServiceAsync) GWT.create(RemoteBatchLoggingService.class);
+    } else if (!COMPACT) {
+      structuredService = (RemoteStructuredLoggingServiceAsync) GWT.create(RemoteStructuredLoggingService.class);
+    }
+
+    if (PERSISTENT) {
+      LogStorage storage = createLogStorage();
+      if (storage != null) {
+        store = new PersistentLogStore(storage, pageKey, STORAGE_BYTES);
+        queue.requeue(store.adoptAbandoned());
+        refreshTimer.scheduleRepeating(PersistentLogStore.REFRESH_MILLIS);
+        Window.addCloseHandler(new CloseHandler<Window>() {
+          @Override
+          public void onClose(CloseEvent<Window> event) {
+            persist(true);
+          }
+        });
+        maybeTriggerRPC();
+      }
+    }
+    if (CROSS_TAB) {
+      LogStorage storage = createLogStorage();
+      if (storage != null) {
+        coordinator = CrossTabCoordinator.create(storage, GWT.getModuleName(), pageKey,
+                new CrossTabCoordinator.Receiver() {
+                  @Override
+                  public void receive(List<RemoteLogRecord> records) {
+                    for (RemoteLogRecord record : records) {
+                      queue.add(record);
+                    }
+                    // the sender forgets the records with the acknowledgement
+                    persist(false);
+                    maybeTriggerRPC();
+                  }
+
+                  @Override
+                  public void resend(List<RemoteLogRecord> records) {
+                    queue.requeue(records);
+                    queueChanged();
+                    maybeTriggerRPC();
+                  }
+
+                  @Override
+                  public void acknowledged() {
+                    queueChanged();
+                  }
+                });
+      }
+    }
+    addBrowserListeners();
+  }
+
+  /**
+   * the storage of the queued records if {@code slf4gwt.log.remote.batch.persistent} is true, and of the leader of
+   * the tabs if {@code slf4gwt.log.remote.batch.crossTab} is true. Tests can override this method to replace the local
+   * storage of the browser.
+   *
+   * @return the storage, or null if the browser has no storage
+   */
+  protected LogStorage createLogStorage() {
+    return WebLogStorage.create();
+  }
+
+  /**
+   * Saves the queued records in the browser storage soon, together with later changes.
+   */
+  private void queueChanged() {
+    if (store != null && !persistTimer.isRunning()) {
+      persistTimer.schedule(PERSIST_DELAY_MILLIS);
+    }
+  }
+
+  private void persist(boolean closing) {
+    persistTimer.cancel();
+    if (store != null) {
+      ArrayList<RemoteLogRecord> records = queue.snapshot();
+      for (int i = inFlightCalls.size() - 1; i >= 0; i--) {
+        records.addAll(0, inFlightCalls.get(i).records);
+      }
+      if (coordinator != null) {
+        records.addAll(0, coordinator.getUnacknowledged());
+      }
+      store.save(records, closing);
+    }
+  }
+
+  private native void addBrowserListeners() /*-{
+    var handler = this;
+    if (typeof $wnd.addEventListener !== 'function') {
+      return;
+    }
+    $wnd.addEventListener('online', $entry(function() {
+      handler.@org.slf4gwt.remote.batching.client.RemoteBatchLogHandler::onOnline()();
+    }));
+    $wnd.addEventListener('pagehide', $entry(function() {
+      handler.@org.slf4gwt.remote.batching.client.RemoteBatchLogHandler::onPageHide()();
+    }));
+    $doc.addEventListener('visibilitychange', $entry(function() {
+      if ($doc.visibilityState === 'hidden') {
+        handler.@org.slf4gwt.remote.batching.client.RemoteBatchLogHandler::onHide()();
+      } else {
+        handler.@org.slf4gwt.remote.batching.client.RemoteBatchLogHandler::onShow()();
+      }
+    }));
+  }-*/;
+
+  /**
+   * the page is hidden and may be closed without further events, timers don't fire reliably anymore.
+   */
+  private void onHide() {
+    pageHidden = true;
+    if (coordinator != null) {
+      coordinator.setVisible(false);
+    }
+    batchDeliveryTimer.cancel();
+    if (FLUSH_ON_HIDE) {
+      sendBeacons();
+    }
+    persist(false);
+  }
+
+  /**
+   * the page is hidden because it is closed or put into the back/forward cache.
+   */
+  private void onPageHide() {
+    if (coordinator != null) {
+      // let another tab take over right away
+      coordinator.release();
+    }
+    onHide();
+  }
+
+  private void onShow() {
+    pageHidden = false;
+    if (coordinator != null) {
+      coordinator.setVisible(true);
+    }
+    maybeTriggerRPC();
+  }
+
+  /**
+   * Sends the queued records with beacons, the rest is kept if the browser refuses a beacon.
+   */
+  private void sendBeacons() {
+    final String url = GWT.getModuleBaseURL() + COMPACT_SERVLET_PATH + '?' + CompactLogFormat.STRONG_NAME_PARAMETER
+            + '=' + URL.encodeQueryString(GWT.getPermutationStrongName());
+    BeaconFlush.send(new BeaconFlush.Batches() {
+      @Override
+      public ArrayList<RemoteLogRecord> take(int maxRecords, int maxBytes) {
+        return queue.isEmpty() ? new ArrayList<RemoteLogRecord>() : takeBatch(maxRecords, maxBytes);
+      }
+
+      @Override
+      public void giveBack(List<RemoteLogRecord> records) {
+        queue.requeue(records);
+      }
+    }, MAX_BATCH_RECORDS, BeaconFlush.MAX_BEACON_BYTES, new BeaconFlush.Beacon() {
+      @Override
+      public boolean send(String data) {
+        return BeaconRequest.send(url, data, CompactLogFormat.CONTENT_TYPE);
+      }
+    });
+  }
+
+  /**
+   * the browser is connected again, retry a failed batch right away.
+   */
+  private void onOnline() {
+    if (retryScheduled) {
+      retryTimer.cancel();
+      retryTimer.run();
+    }
   }
 
   @Override
   public void publish(LogRecord record) {
-    if (failure != null) {
-      // remote logger has been disabled
+    if (isLoggable(record) && rateLimiter.tryAcquire(record.getLevel(), record.getLoggerName())) {
+      queue.add(toRemoteLogRecord(record));
+      queueChanged();
+      maybeTriggerRPC();
+    }
+  }
+
+  /**
+   * records may format their message lazily from arguments that can change until the batch is sent, so the queue
+   * holds a copy with the formatted message, or in the structured mode with the pattern and the arguments as strings.
+   */
+  private static RemoteLogRecord toRemoteLogRecord(LogRecord record) {
+    String message;
+    String[] arguments = null;
+    if (STRUCTURED && record instanceof DeferredLogRecord) {
+      DeferredLogRecord deferredRecord = (DeferredLogRecord) record;
+      message = deferredRecord.getPattern();
+
+      Object[] argArray = deferredRecord.getArgArray();
+      arguments = new String[argArray.length];
+      for (int i = 0; i < argArray.length; i++) {
+        // format each argument like it is formatted in the message
+        arguments[i] = MessageFormatter.arrayFormat("{}", new Object[] { argArray[i] }, null).getMessage();
+      }
+    } else {
+      message = record.getMessage();
+    }
+
+    return new RemoteLogRecord(record.getLevel().getName(), record.getLoggerName(), record.getMillis(), message,
+            arguments, SerializableThrowable.fromThrowable(record.getThrown()));
+  }
+
+  /**
+   * Sends the next batch of the queue.
+   */
+  private void sendNextBatch() {
+    if (queue.isEmpty()) {
       return;
     }
-    if (isLoggable(record)) {
-      logRecordList.add(record);
-      maybeTriggerRPC();
+
+    ArrayList<RemoteLogRecord> records = takeBatch(retryPolicy.isCircuitOpen() ? PROBE_BATCH_RECORDS : MAX_BATCH_RECORDS,
+            MAX_BATCH_BYTES);
+    flushDelay.adapt(records.size());
+
+    if (coordinator != null && !coordinator.isLeader()) {
+      // the leader sends the records with its own
+      coordinator.post(records);
+      queueChanged();
+    } else {
+      DefaultCallback call = new DefaultCallback(records);
+      inFlightCalls.add(call);
+      if (REMOTE_LOG_BATCHES) {
+        sendBatch(call);
+      } else {
+        service.logOnServer(toLogRecords(records), call);
+      }
+    }
+
+    // send the rest of the queue while this batch is in flight
+    maybeTriggerRPC();
+  }
+
+  /**
+   * Puts the records of a batch back into the queue, behind the requeued records of the batches that were sent before
+   * it. The batches in flight fail or are reset in any order, but are sent again in the order they were sent first.
+   */
+  private void requeue(DefaultCallback call) {
+    ArrayList<RemoteLogRecord> queuedRecords = queue.snapshot();
+    int position = 0;
+    while (position < queuedRecords.size()) {
+      Integer sendOrder = requeuedSendOrders.get(queuedRecords.get(position));
+      if (sendOrder == null || sendOrder > call.sendOrder) {
+        break;
+      }
+      position++;
+    }
+
+    // forget the records the queue dropped
+    IdentityHashMap<RemoteLogRecord, Integer> sendOrders = new IdentityHashMap<RemoteLogRecord, Integer>();
+    for (RemoteLogRecord record : queuedRecords) {
+      Integer sendOrder = requeuedSendOrders.get(record);
+      if (sendOrder != null) {
+        sendOrders.put(record, sendOrder);
+      }
     }
+    for (RemoteLogRecord record : call.records) {
+      sendOrders.put(record, call.sendOrder);
+    }
+    requeuedSendOrders = sendOrders;
+    queue.requeue(call.records, position);
+  }
+
+  /**
+   * Starts a new dictionary, unless that has been done since the batch with the given dictionary key was sent.
+   */
+  private void startNewDictionary(String batchDictionaryKey) {
+    if (batchDictionaryKey.equals(dictionaryKey)) {
+      dictionary.clear();
+      dictionaryKey = pageKey + '.' + (++dictionaryGeneration);
+      nextSequence = 0;
+    }
+  }
+
+  /**
+   * @return the maximum number of batches that may wait for the server
+   */
+  private int maxInFlight() {
+    if (retryPolicy.isCircuitOpen()) {
+      return 1;
+    }
+    // the server holds a batch that arrives early, so it must not depend on a batch that may get lost
+    for (DefaultCallback call : inFlightCalls) {
+      if (call.addedStrings && call.batchDictionaryKey.equals(dictionaryKey)) {
+        return 1;
+      }
+    }
+    return MAX_IN_FLIGHT;
+  }
+
+  /**
+   * Takes the next batch from the queue and adds the number of dropped and rejected records.
+   */
+  private ArrayList<RemoteLogRecord> takeBatch(int maxBatchRecords, int maxBatchBytes) {
+    ArrayList<RemoteLogRecord> records = queue.drain(maxBatchRecords, maxBatchBytes);
+    for (RemoteLogRecord record : records) {
+      requeuedSendOrders.remove(record);
+    }
+    int droppedRecords = queue.takeDroppedRecords();
+    if (droppedRecords > 0) {
+      records.add(reportRecord("{} log records have been dropped, the remote log queue was full",
+              String.valueOf(droppedRecords)));
+    }
+    for (Map.Entry<String, Integer> rejected : rateLimiter.takeRejectedRecords().entrySet()) {
+      records.add(reportRecord("{} log records of level {} have been sampled out or rate limited",
+              String.valueOf(rejected.getValue()), rejected.getKey()));
+    }
+    return records;
+  }
+
+  private void sendBatch(DefaultCallback call) {
+    int dictionarySize = dictionary.size();
+    ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>(call.records.size());
+    for (RemoteLogRecord record : call.records) {
+      int loggerNameId = toDictionaryId(record.getLoggerName());
+      // formatted messages are rarely repeated, only patterns go into the dictionary
+      int messageId = record.getArguments() != null ? toDictionaryId(record.getMessage()) : -1;
+
+      RemoteLogRecord batchRecord = new RemoteLogRecord(record.getLevel(),
+              loggerNameId != -1 ? null : record.getLoggerName(), loggerNameId, record.getMillis(),
+              messageId != -1 ? null : record.getMessage(), messageId, record.getArguments(), record.getThrown());
+      batchRecord.setRepeats(record.getRepeatCount(), record.getLastMillis());
+      records.add(batchRecord);
+    }
+    call.batch = new RemoteLogBatch(dictionaryKey, dictionarySize, nextSequence++, records);
+    call.addedStrings = dictionary.size() > dictionarySize;
+    if (COMPACT) {
+      sendCompact(call.batch, call);
+    } else {
+      structuredService.logStructuredOnServer(call.batch, call);
+    }
+  }
+
+  private void sendCompact(RemoteLogBatch batch, final AsyncCallback<String> callback) {
+    String url = GWT.getModuleBaseURL() + COMPACT_SERVLET_PATH;
+    String data = CompactLogWriter.write(batch);
+    if (COMPRESS && data.length() >= COMPRESSION_THRESHOLD && CompressedRequest.isSupported()) {
+      CompressedRequest.send(url, GWT.getPermutationStrongName(), data, callback);
+      return;
+    }
+
+    RequestBuilder builder = new RequestBuilder(RequestBuilder.POST, url);
+    builder.setHeader("Content-Type", CompactLogFormat.CONTENT_TYPE);
+    builder.setHeader(RpcRequestBuilder.STRONG_NAME_HEADER, GWT.getPermutationStrongName());
+    try {
+      builder.sendRequest(data, new RequestCallback() {
+        @Override
+        public void onResponseReceived(Request request, Response response) {
+          if (response.getStatusCode() == Response.SC_OK) {
+            String result = response.getText();
+            callback.onSuccess(result == null || result.isEmpty() ? null : result);
+          } else {
+            callback.onFailure(new StatusCodeException(response.getStatusCode(), response.getText()));
+          }
+        }
+
+        @Override
+        public void onError(Request request, Throwable exception) {
+          callback.onFailure(exception);
+        }
+      });
+    } catch (RequestException e) {
+      callback.onFailure(e);
+    }
+  }
+
+  /**
+   * @return the id of a string that has been sent before, or -1 if it has to be sent. The string is added to the
+   * dictionary if there is room, the server does the same when it reads it.
+   */
+  private int toDictionaryId(String value) {
+    if (value == null) {
+      return -1;
+    }
+
+    Integer id = dictionary.get(value);
+    if (id != null) {
+      return id;
+    }
+    if (dictionary.size() < RemoteLogBatch.MAX_DICTIONARY_SIZE) {
+      dictionary.put(value, dictionary.size());
+    }
+    return -1;
+  }
+
+  /**
+   * @return a record that tells the server how many records haven't been sent, the server can parse the arguments
+   * in the structured mode
+   */
+  private static RemoteLogRecord reportRecord(String pattern, String... arguments) {
+    String message = pattern;
+    if (!STRUCTURED) {
+      message = MessageFormatter.arrayFormat(message, arguments, null).getMessage();
+      arguments = null;
+    }
+    return new RemoteLogRecord(Level.WARNING.getName(), RemoteBatchLogHandler.class.getName(),
+            (long) Duration.currentTimeMillis(), message, arguments, null);
+  }
+
+  private static ArrayList<LogRecord> toLogRecords(List<RemoteLogRecord> records) {
+    ArrayList<LogRecord> logRecords = new ArrayList<LogRecord>(records.size());
+    for (RemoteLogRecord record : records) {
+      LogRecord logRecord = new LogRecord(Level.parse(record.getLevel()), record.appendRepeats(record.getMessage()));
+      logRecord.setLoggerName(record.getLoggerName());
+      logRecord.setMillis(record.getMillis());
+      logRecord.setThrown(record.getThrown());
+      logRecords.add(logRecord);
+    }
+    return logRecords;
   }
 
   private void maybeTriggerRPC() {
-    if (failure == null && !callInProgressOrScheduled && !logRecordList.isEmpty()) {
+    if (inFlightCalls.size() >= maxInFlight() || idleFlushPending || retryScheduled || pageHidden
+            || queue.isEmpty()) {
+      return;
+    }
+
+    if (!retryPolicy.isCircuitOpen() && queue.hasFullBatch(MAX_BATCH_RECORDS, MAX_BATCH_BYTES)) {
+      // no need to wait for more records
+      batchDeliveryTimer.cancel();
+      sendNextBatch();
+    } else if (!batchDeliveryTimer.isRunning()) {
       // allow a few log messages to accumulate before firing RPC
-      batchDeliveryTimer.schedule(MESSAGE_QUEUEING_DELAY_MILLIS);
-      callInProgressOrScheduled = true;
+      batchDeliveryTimer.schedule(flushDelay.getMillis());
     }
   }
 
+  /**
+   * Limits the records of the loggers whose names start with a prefix, the longest matching prefix applies.
+   *
+   * @param loggerPrefix the prefix of the logger names, an empty prefix matches all loggers
+   * @param recordsPerSecond the records per second, a negative value removes the limit
+   * @param burst the number of records that may be sent at once
+   */
+  public void setLoggerRateLimit(String loggerPrefix, double recordsPerSecond, int burst) {
+    rateLimiter.setLoggerLimit(loggerPrefix, recordsPerSecond, burst);
+  }
+
+  /**
+   * Limits the records of a level, SEVERE records are always sent.
+   *
+   * @param recordsPerSecond the records per second, a negative value removes the limit
+   * @param burst the number of records that may be sent at once
+   */
+  public void setLevelRateLimit(Level level, double recordsPerSecond, int burst) {
+    rateLimiter.setLevelLimit(level, recordsPerSecond, burst);
+  }
+
+  /**
+   * Samples the records of a level, SEVERE records are always sent.
+   *
+   * @param rate the probability that a record is sent, 1 sends all records
+   */
+  public void setSampleRate(Level level, double rate) {
+    rateLimiter.setSampleRate(level, rate);
+  }
+
   @Override
   public boolean isLoggable(LogRecord record) {
     return super.isLoggable(record) && getLowestLogLevel().intValue() <= record.getLevel().intValue();
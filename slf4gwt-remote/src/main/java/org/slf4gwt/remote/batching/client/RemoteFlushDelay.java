@@ -0,0 +1,71 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+/**
+ * the delay of a batch, adapted to the traffic.
+ *
+ * With light traffic the delay grows, so more records are sent with one request. With heavy traffic it shrinks, so the
+ * batches stay small. A batch that fills less than a quarter of the maximum batch counts as light traffic.
+ */
+final class RemoteFlushDelay {
+
+  private final int minMillis;
+  private final int maxMillis;
+  private final int maxBatchRecords;
+
+  private int millis;
+
+  /**
+   * @param minMillis the delay with heavy traffic, and of the first batch
+   * @param maxMillis the delay with light traffic, at least the minimum delay
+   * @param maxBatchRecords the maximum number of records of a batch
+   */
+  RemoteFlushDelay(int minMillis, int maxMillis, int maxBatchRecords) {
+    this.minMillis = minMillis;
+    this.maxMillis = Math.max(minMillis, maxMillis);
+    this.maxBatchRecords = maxBatchRecords;
+    this.millis = minMillis;
+  }
+
+  /**
+   * @return the delay of the next batch
+   */
+  int getMillis() {
+    return millis;
+  }
+
+  /**
+   * Doubles the delay after a light batch and halves it after a heavy one.
+   *
+   * @param batchRecords the number of records of the batch that is sent
+   */
+  void adapt(int batchRecords) {
+    if (batchRecords * 4 < maxBatchRecords) {
+      millis = Math.min(millis * 2, maxMillis);
+    } else {
+      millis = Math.max(millis / 2, minMillis);
+    }
+  }
+}
@@ -0,0 +1,328 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import com.google.gwt.core.shared.SerializableThrowable;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Level;
+
+/**
+ * the queue of the records that wait to be sent to the server.
+ *
+ * The queue is bounded by the number of records and by their estimated size in bytes. If a record doesn't fit, the
+ * {@link DropPolicy} decides which records are dropped. The dropped records are counted, so the server can be told
+ * about the loss.
+ *
+ * If repeats are collapsed, a record that equals a queued record in its level, logger, message, arguments and
+ * throwable isn't queued again, the queued record counts it as repeat instead. The records are found by a hash of
+ * these fields, so a loop that logs the same error thousands of times fills a single record.
+ */
+final class RemoteLogQueue {
+
+  enum DropPolicy {
+    /** drop the oldest records to make room for the new one */
+    OLDEST,
+    /** drop the new record */
+    NEWEST,
+    /** drop the records with the lowest level, the oldest first, or the new record if its level is lower */
+    LOWEST_LEVEL;
+
+    static DropPolicy parse(String policy) {
+      if ("newest".equals(policy)) {
+        return NEWEST;
+      } else if ("lowestLevel".equals(policy)) {
+        return LOWEST_LEVEL;
+      }
+      return OLDEST;
+    }
+  }
+
+  /** the estimated size of a record without its strings */
+  private static final int RECORD_OVERHEAD_BYTES = 64;
+
+  /** the estimated size of a stack frame without its strings */
+  private static final int FRAME_OVERHEAD_BYTES = 32;
+
+  private final int maxRecords;
+  private final int maxBytes;
+  private final DropPolicy dropPolicy;
+  private final boolean collapseRepeats;
+
+  private final ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+
+  /** the queued records by their repeat hash, the latest record if several have the same hash */
+  private final HashMap<Integer, RemoteLogRecord> recordsByHash = new HashMap<Integer, RemoteLogRecord>();
+  private int bytes;
+  private int droppedRecords;
+
+  /**
+   * @param maxRecords the maximum number of records, at least 1 is queued
+   * @param maxBytes the maximum estimated size of the records, at least 1 byte
+   */
+  RemoteLogQueue(int maxRecords, int maxBytes, DropPolicy dropPolicy, boolean collapseRepeats) {
+    // an empty queue has nothing to drop to make room
+    this.maxRecords = Math.max(1, maxRecords);
+    this.maxBytes = Math.max(1, maxBytes);
+    this.dropPolicy = dropPolicy;
+    this.collapseRepeats = collapseRepeats;
+  }
+
+  /**
+   * Adds a record, or counts it as repeat of a queued record, and drops records if the queue is full.
+   */
+  void add(RemoteLogRecord record) {
+    int hash = 0;
+    if (collapseRepeats) {
+      hash = repeatHash(record);
+      RemoteLogRecord queued = recordsByHash.get(hash);
+      if (queued != null && isRepeat(queued, record)) {
+        queued.setRepeats(queued.getRepeatCount() + record.getRepeatCount(),
+                Math.max(queued.getLastMillis(), record.getLastMillis()));
+        return;
+      }
+    }
+
+    int size = estimateSize(record);
+    if (size > maxBytes) {
+      droppedRecords++;
+      return;
+    }
+
+    while (records.size() >= maxRecords || bytes + size > maxBytes) {
+      int index;
+      if (dropPolicy == DropPolicy.NEWEST) {
+        index = -1;
+      } else if (dropPolicy == DropPolicy.LOWEST_LEVEL) {
+        index = lowestLevelIndex();
+        if (levelValue(record) < levelValue(records.get(index))) {
+          index = -1;
+        }
+      } else {
+        index = 0;
+      }
+
+      droppedRecords++;
+      if (index == -1) {
+        return;
+      }
+      RemoteLogRecord dropped = records.remove(index);
+      bytes -= estimateSize(dropped);
+      forget(dropped);
+    }
+
+    records.add(record);
+    bytes += size;
+    if (collapseRepeats) {
+      recordsByHash.put(hash, record);
+    }
+  }
+
+  /**
+   * Puts records back in front of the queue, e.g. the records of a failed batch. The queue stays bounded, the
+   * records are dropped like new records.
+   */
+  void requeue(List<RemoteLogRecord> failedRecords) {
+    requeue(failedRecords, 0);
+  }
+
+  /**
+   * Puts records back into the queue, behind the first queued records.
+   *
+   * @param position the number of queued records that stay in front of the requeued ones
+   */
+  void requeue(List<RemoteLogRecord> failedRecords, int position) {
+    ArrayList<RemoteLogRecord> queuedRecords = new ArrayList<RemoteLogRecord>(records);
+    records.clear();
+    recordsByHash.clear();
+    bytes = 0;
+    for (int i = 0; i < position && i < queuedRecords.size(); i++) {
+      add(queuedRecords.get(i));
+    }
+    for (RemoteLogRecord record : failedRecords) {
+      add(record);
+    }
+    for (int i = position; i < queuedRecords.size(); i++) {
+      add(queuedRecords.get(i));
+    }
+  }
+
+  /**
+   * @return a copy of the queued records, the oldest first
+   */
+  ArrayList<RemoteLogRecord> snapshot() {
+    return new ArrayList<RemoteLogRecord>(records);
+  }
+
+  boolean isEmpty() {
+    return records.isEmpty();
+  }
+
+  /**
+   * @return true if the queue holds at least a full batch
+   */
+  boolean hasFullBatch(int maxBatchRecords, int maxBatchBytes) {
+    return records.size() >= maxBatchRecords || bytes >= maxBatchBytes;
+  }
+
+  /**
+   * Removes the oldest records up to the size of a batch, but at least one record.
+   *
+   * @return the records, the oldest first
+   */
+  ArrayList<RemoteLogRecord> drain(int maxBatchRecords, int maxBatchBytes) {
+    int count = 0;
+    int batchBytes = 0;
+    while (count < records.size() && count < maxBatchRecords) {
+      int size = estimateSize(records.get(count));
+      if (count > 0 && batchBytes + size > maxBatchBytes) {
+        break;
+      }
+      batchBytes += size;
+      count++;
+    }
+
+    List<RemoteLogRecord> batch = records.subList(0, count);
+    ArrayList<RemoteLogRecord> drained = new ArrayList<RemoteLogRecord>(batch);
+    batch.clear();
+    bytes -= batchBytes;
+    for (RemoteLogRecord record : drained) {
+      // later repeats go into the next batch
+      forget(record);
+    }
+    return drained;
+  }
+
+  /**
+   * @return the number of records dropped since the last call
+   */
+  int takeDroppedRecords() {
+    int dropped = droppedRecords;
+    droppedRecords = 0;
+    return dropped;
+  }
+
+  private void forget(RemoteLogRecord record) {
+    if (collapseRepeats) {
+      int hash = repeatHash(record);
+      if (recordsByHash.get(hash) == record) {
+        recordsByHash.remove(hash);
+      }
+    }
+  }
+
+  private static int repeatHash(RemoteLogRecord record) {
+    int hash = Objects.hashCode(record.getLevel());
+    hash = 31 * hash + Objects.hashCode(record.getLoggerName());
+    hash = 31 * hash + Objects.hashCode(record.getMessage());
+    hash = 31 * hash + Arrays.hashCode(record.getArguments());
+    SerializableThrowable thrown = record.getThrown();
+    if (thrown != null) {
+      hash = 31 * hash + Objects.hashCode(thrown.getDesignatedType());
+      hash = 31 * hash + Objects.hashCode(thrown.getMessage());
+    }
+    return hash;
+  }
+
+  /**
+   * @return true if the records are equal apart from their time, throwables are compared by type and message
+   */
+  private static boolean isRepeat(RemoteLogRecord queued, RemoteLogRecord record) {
+    if (!Objects.equals(queued.getLevel(), record.getLevel())
+            || !Objects.equals(queued.getLoggerName(), record.getLoggerName())
+            || !Objects.equals(queued.getMessage(), record.getMessage())
+            || !Arrays.equals(queued.getArguments(), record.getArguments())) {
+      return false;
+    }
+
+    SerializableThrowable queuedThrown = queued.getThrown();
+    SerializableThrowable thrown = record.getThrown();
+    if (queuedThrown == null || thrown == null) {
+      return queuedThrown == thrown;
+    }
+    return Objects.equals(queuedThrown.getDesignatedType(), thrown.getDesignatedType())
+            && Objects.equals(queuedThrown.getMessage(), thrown.getMessage());
+  }
+
+  private int lowestLevelIndex() {
+    int index = 0;
+    int lowest = levelValue(records.get(0));
+    for (int i = 1; i < records.size(); i++) {
+      int level = levelValue(records.get(i));
+      if (level < lowest) {
+        index = i;
+        lowest = level;
+      }
+    }
+    return index;
+  }
+
+  private static int levelValue(RemoteLogRecord record) {
+    String level = record.getLevel();
+    // avoid Level.parse for the levels slf4gwt logs with
+    if ("SEVERE".equals(level)) {
+      return Level.SEVERE.intValue();
+    } else if ("WARNING".equals(level)) {
+      return Level.WARNING.intValue();
+    } else if ("INFO".equals(level)) {
+      return Level.INFO.intValue();
+    } else if ("FINE".equals(level)) {
+      return Level.FINE.intValue();
+    } else if ("FINEST".equals(level)) {
+      return Level.FINEST.intValue();
+    }
+    return Level.parse(level).intValue();
+  }
+
+  /**
+   * @return the estimated size of a record in bytes, strings count two bytes per character
+   */
+  static int estimateSize(RemoteLogRecord record) {
+    int size = RECORD_OVERHEAD_BYTES + 2 * (length(record.getLoggerName()) + length(record.getMessage()));
+    String[] arguments = record.getArguments();
+    if (arguments != null) {
+      for (String argument : arguments) {
+        size += 2 * length(argument);
+      }
+    }
+
+    for (Throwable thrown = record.getThrown(); thrown != null; thrown = thrown.getCause()) {
+      size += RECORD_OVERHEAD_BYTES + 2 * length(thrown.getMessage());
+      for (StackTraceElement element : thrown.getStackTrace()) {
+        size += FRAME_OVERHEAD_BYTES
+                + 2 * (length(element.getClassName()) + length(element.getMethodName()) + length(element.getFileName()));
+      }
+    }
+    return size;
+  }
+
+  private static int length(String value) {
+    return value != null ? value.length() : 0;
+  }
+}
@@ -0,0 +1,258 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.slf4gwt.logging.gwt.CompiledLevel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * limits the records a client sends to the server by sampling and token buckets.
+ *
+ * A record of a level with a sample rate below 1 is kept with that probability. Then it needs a token of the bucket of
+ * its level and of the bucket of the longest logger prefix that matches its logger, if there are such buckets. The
+ * tokens are only taken if both buckets have one, so a throttled logger doesn't use up the budget of its level. A
+ * prefix matches the logger with its name and the loggers below it, like the prefixes of {@link CompiledLevel}. A
+ * bucket is refilled with a number of tokens per second up to its burst size. SEVERE records are always sent.
+ *
+ * The limits are written as comma separated lists, {@code prefix=recordsPerSecond/burst} for loggers,
+ * {@code LEVEL=recordsPerSecond/burst} for levels and {@code LEVEL=rate} for sample rates. Malformed entries are
+ * logged and ignored. The rejected records are counted by level, so the server can be told about them.
+ */
+final class RemoteLogRateLimiter {
+
+  private static final class TokenBucket {
+    private final double tokensPerMillis;
+    private final int burst;
+    private double tokens;
+    private double lastRefillMillis;
+
+    TokenBucket(double recordsPerSecond, int burst, double now) {
+      this.tokensPerMillis = recordsPerSecond / 1000;
+      this.burst = burst;
+      this.tokens = burst;
+      this.lastRefillMillis = now;
+    }
+
+    boolean hasToken(double now) {
+      tokens = Math.min(burst, tokens + (now - lastRefillMillis) * tokensPerMillis);
+      lastRefillMillis = now;
+      return tokens >= 1;
+    }
+
+    void take() {
+      tokens--;
+    }
+  }
+
+  /** the buckets by logger prefix, the longest prefix first */
+  private final ArrayList<String> loggerPrefixes = new ArrayList<String>();
+  private final HashMap<String, TokenBucket> loggerBuckets = new HashMap<String, TokenBucket>();
+
+  /** the bucket of a logger name, null if no prefix matches */
+  private final HashMap<String, TokenBucket> bucketsByLogger = new HashMap<String, TokenBucket>();
+
+  private final HashMap<Integer, TokenBucket> levelBuckets = new HashMap<Integer, TokenBucket>();
+  private final HashMap<Integer, Double> sampleRates = new HashMap<Integer, Double>();
+
+  /** the number of rejected records by level name since the last call of {@link #takeRejectedRecords()} */
+  private final LinkedHashMap<String, Integer> rejectedRecords = new LinkedHashMap<String, Integer>();
+
+  /** the logger of the malformed entries, the handler doesn't send its records to the server */
+  private final Logger logger;
+
+  /**
+   * @param loggerLimits the limits by logger prefix
+   * @param levelLimits the limits by level
+   * @param sampleRates the sample rates by level
+   * @param logger the logger of the malformed entries
+   */
+  RemoteLogRateLimiter(String loggerLimits, String levelLimits, String sampleRates, Logger logger) {
+    this.logger = logger;
+    for (String[] limit : split("logger rate limit", loggerLimits)) {
+      try {
+        String[] rate = parseRate(limit[1]);
+        setLoggerLimit(limit[0], Double.parseDouble(rate[0]), Integer.parseInt(rate[1]));
+      } catch (IllegalArgumentException e) {
+        ignore("logger rate limit", limit[0] + '=' + limit[1]);
+      }
+    }
+    for (String[] limit : split("level rate limit", levelLimits)) {
+      try {
+        String[] rate = parseRate(limit[1]);
+        setLevelLimit(Level.parse(limit[0]), Double.parseDouble(rate[0]), Integer.parseInt(rate[1]));
+      } catch (IllegalArgumentException e) {
+        ignore("level rate limit", limit[0] + '=' + limit[1]);
+      }
+    }
+    for (String[] sampleRate : split("sample rate", sampleRates)) {
+      try {
+        setSampleRate(Level.parse(sampleRate[0]), Double.parseDouble(sampleRate[1]));
+      } catch (IllegalArgumentException e) {
+        ignore("sample rate", sampleRate[0] + '=' + sampleRate[1]);
+      }
+    }
+  }
+
+  /**
+   * @return the records per second and the burst of {@code recordsPerSecond/burst}
+   * @throws IllegalArgumentException if the rate is malformed
+   */
+  private static String[] parseRate(String value) {
+    String[] rate = value.split("/");
+    if (rate.length != 2) {
+      throw new IllegalArgumentException(value);
+    }
+    return rate;
+  }
+
+  private void ignore(String kind, String entry) {
+    logger.warning("Ignoring the malformed remote log " + kind + " " + entry);
+  }
+
+  /**
+   * @param recordsPerSecond the records per second of the loggers with the prefix, a negative value removes the limit
+   * @param burst the number of records that may be sent at once
+   */
+  void setLoggerLimit(String prefix, double recordsPerSecond, int burst) {
+    loggerPrefixes.remove(prefix);
+    loggerBuckets.remove(prefix);
+    if (recordsPerSecond >= 0) {
+      int index = 0;
+      while (index < loggerPrefixes.size() && loggerPrefixes.get(index).length() >= prefix.length()) {
+        index++;
+      }
+      loggerPrefixes.add(index, prefix);
+      loggerBuckets.put(prefix, new TokenBucket(recordsPerSecond, burst, System.currentTimeMillis()));
+    }
+    bucketsByLogger.clear();
+  }
+
+  /**
+   * @param recordsPerSecond the records per second of the level, a negative value removes the limit
+   * @param burst the number of records that may be sent at once
+   */
+  void setLevelLimit(Level level, double recordsPerSecond, int burst) {
+    if (recordsPerSecond >= 0) {
+      levelBuckets.put(level.intValue(), new TokenBucket(recordsPerSecond, burst, System.currentTimeMillis()));
+    } else {
+      levelBuckets.remove(level.intValue());
+    }
+  }
+
+  /**
+   * @param rate the probability that a record of the level is sent, 1 removes the sampling
+   */
+  void setSampleRate(Level level, double rate) {
+    if (rate < 1) {
+      sampleRates.put(level.intValue(), rate);
+    } else {
+      sampleRates.remove(level.intValue());
+    }
+  }
+
+  /**
+   * @return true if the record may be sent, false if it is counted as rejected
+   */
+  boolean tryAcquire(Level level, String loggerName) {
+    if (level.intValue() >= Level.SEVERE.intValue()
+            || (loggerPrefixes.isEmpty() && levelBuckets.isEmpty() && sampleRates.isEmpty())) {
+      return true;
+    }
+
+    Double sampleRate = sampleRates.get(level.intValue());
+    boolean accepted = sampleRate == null || Math.random() < sampleRate;
+    if (accepted) {
+      double now = System.currentTimeMillis();
+      TokenBucket levelBucket = levelBuckets.get(level.intValue());
+      TokenBucket loggerBucket = loggerBucket(loggerName);
+      accepted = (levelBucket == null || levelBucket.hasToken(now))
+              && (loggerBucket == null || loggerBucket.hasToken(now));
+      if (accepted) {
+        if (levelBucket != null) {
+          levelBucket.take();
+        }
+        if (loggerBucket != null) {
+          loggerBucket.take();
+        }
+      }
+    }
+
+    if (!accepted) {
+      Integer count = rejectedRecords.get(level.getName());
+      rejectedRecords.put(level.getName(), count != null ? count + 1 : 1);
+    }
+    return accepted;
+  }
+
+  /**
+   * @return the number of rejected records by level name since the last call
+   */
+  Map<String, Integer> takeRejectedRecords() {
+    LinkedHashMap<String, Integer> rejected = new LinkedHashMap<String, Integer>(rejectedRecords);
+    rejectedRecords.clear();
+    return rejected;
+  }
+
+  private TokenBucket loggerBucket(String loggerName) {
+    if (loggerPrefixes.isEmpty()) {
+      return null;
+    }
+    String name = loggerName != null ? loggerName : "";
+    if (bucketsByLogger.containsKey(name)) {
+      return bucketsByLogger.get(name);
+    }
+
+    TokenBucket bucket = null;
+    for (String prefix : loggerPrefixes) {
+      if (prefix.isEmpty() || CompiledLevel.matches(name, prefix)) {
+        bucket = loggerBuckets.get(prefix);
+        break;
+      }
+    }
+    bucketsByLogger.put(name, bucket);
+    return bucket;
+  }
+
+  /**
+   * @return the keys and values of the entries, empty entries are skipped and entries without value are ignored
+   */
+  private ArrayList<String[]> split(String kind, String limits) {
+    ArrayList<String[]> entries = new ArrayList<String[]>();
+    for (String entry : limits.split(",")) {
+      int separator = entry.lastIndexOf('=');
+      if (separator != -1) {
+        entries.add(new String[] { entry.substring(0, separator).trim(), entry.substring(separator + 1).trim() });
+      } else if (!entry.trim().isEmpty()) {
+        ignore(kind, entry.trim());
+      }
+    }
+    return entries;
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+/**
+ * the delays of the retries of failed batches, and the circuit breaker that stops them if the server fails too often.
+ *
+ * The delay of the first retry is doubled with each further failure up to a maximum. After the maximum number of
+ * retries the circuit opens, the handler then only probes the server with small batches once per open time. A
+ * successful batch resets the failures and closes the circuit. The handler spreads the delays with
+ * {@link #jitter(int, double)}, so the clients of a failed server don't retry at the same time.
+ */
+final class RemoteRetryPolicy {
+
+  private final int maxRetries;
+  private final int circuitOpenMillis;
+  private final int baseDelayMillis;
+  private final int maxDelayMillis;
+
+  private int consecutiveFailures;
+  private boolean circuitOpen;
+
+  /**
+   * @param maxRetries the number of retries before the circuit opens
+   * @param circuitOpenMillis the time between the probes while the circuit is open
+   * @param baseDelayMillis the delay of the first retry
+   * @param maxDelayMillis the maximum delay of a retry
+   */
+  RemoteRetryPolicy(int maxRetries, int circuitOpenMillis, int baseDelayMillis, int maxDelayMillis) {
+    this.maxRetries = maxRetries;
+    this.circuitOpenMillis = circuitOpenMillis;
+    this.baseDelayMillis = baseDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+  }
+
+  /**
+   * Counts a failed batch and opens the circuit after the maximum number of retries.
+   *
+   * @return the delay before the next batch is sent, without jitter
+   */
+  int failed() {
+    consecutiveFailures++;
+    if (consecutiveFailures > maxRetries) {
+      circuitOpen = true;
+      return circuitOpenMillis;
+    }
+    int delayMillis = baseDelayMillis;
+    for (int retry = 1; retry < consecutiveFailures && delayMillis < maxDelayMillis; retry++) {
+      delayMillis *= 2;
+    }
+    return Math.min(delayMillis, maxDelayMillis);
+  }
+
+  /**
+   * Resets the failures after a successful batch and closes the circuit.
+   *
+   * @return true if the circuit was open
+   */
+  boolean succeeded() {
+    consecutiveFailures = 0;
+    boolean wasOpen = circuitOpen;
+    circuitOpen = false;
+    return wasOpen;
+  }
+
+  /**
+   * @return true if the server failed too often and only small batches are sent to probe it
+   */
+  boolean isCircuitOpen() {
+    return circuitOpen;
+  }
+
+  /**
+   * @param random a random number from 0 to 1
+   * @return a delay between half the given delay and the given delay
+   */
+  static int jitter(int delayMillis, double random) {
+    return (int) (delayMillis * (0.5 + random / 2));
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import com.google.gwt.storage.client.Storage;
+
+/**
+ * log storage backed by the local storage of the browser.
+ */
+final class WebLogStorage implements LogStorage {
+
+  private final Storage storage;
+
+  private WebLogStorage(Storage storage) {
+    this.storage = storage;
+  }
+
+  /**
+   * @return the local storage of the browser, or null if the browser doesn't support it
+   */
+  static LogStorage create() {
+    Storage storage = Storage.getLocalStorageIfSupported();
+    return storage != null ? new WebLogStorage(storage) : null;
+  }
+
+  @Override
+  public int getLength() {
+    return storage.getLength();
+  }
+
+  @Override
+  public String key(int index) {
+    return storage.key(index);
+  }
+
+  @Override
+  public String getItem(String key) {
+    return storage.getItem(key);
+  }
+
+  @Override
+  public void setItem(String key, String value) {
+    storage.setItem(key, value);
+  }
+
+  @Override
+  public void removeItem(String key) {
+    storage.removeItem(key);
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.linker;
+
+import com.google.gwt.core.ext.LinkerContext;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.linker.AbstractLinker;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.core.ext.linker.CompilationResult;
+import com.google.gwt.core.ext.linker.EmittedArtifact;
+import com.google.gwt.core.ext.linker.LinkerOrder;
+import com.google.gwt.core.ext.linker.Shardable;
+import com.google.gwt.core.ext.linker.SymbolData;
+import org.slf4gwt.remote.batching.server.SymbolIndexFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * writes a {@link SymbolIndexFormat binary symbol index} for each permutation.
+ *
+ * The index holds the methods of the symbol map of the permutation, already parsed and sorted by their obfuscated
+ * name. The {@link org.slf4gwt.remote.batching.server.SymbolIndexDeobfuscator} maps it into memory instead of
+ * parsing the symbol map. The files are deployed next to the symbol maps, in the {@code slf4gwtSymbolIndex} directory.
+ * Inherit {@code org.slf4gwt.remote.batching.SymbolIndex} to add the linker.
+ */
+@LinkerOrder(LinkerOrder.Order.POST)
+@Shardable
+public class SymbolIndexLinker extends AbstractLinker {
+
+  /** the same pattern the StackTraceDeobfuscator parses the JSNI identifiers with */
+  private static final Pattern JSNI_REF_PATTERN = Pattern.compile("@?([^:]+)::([^(]+)(\\((.*)\\))?");
+
+  private static final class Entry {
+    String className;
+    String methodName;
+    String fileName;
+    int sourceLine;
+    int fragmentNumber;
+  }
+
+  @Override
+  public String getDescription() {
+    return "slf4gwt symbol index";
+  }
+
+  @Override
+  public ArtifactSet link(TreeLogger logger, LinkerContext context, ArtifactSet artifacts, boolean onePermutation)
+          throws UnableToCompleteException {
+    if (!onePermutation) {
+      return artifacts;
+    }
+
+    ArtifactSet result = new ArtifactSet(artifacts);
+    for (CompilationResult compilationResult : artifacts.find(CompilationResult.class)) {
+      EmittedArtifact index = emitBytes(logger, writeIndex(logger, compilationResult),
+              compilationResult.getStrongName() + SymbolIndexFormat.FILE_SUFFIX);
+      index.setVisibility(EmittedArtifact.Visibility.Deploy);
+      result.add(index);
+    }
+    return result;
+  }
+
+  private static byte[] writeIndex(TreeLogger logger, CompilationResult compilationResult)
+          throws UnableToCompleteException {
+    TreeMap<byte[], Entry> entries = new TreeMap<>(SymbolIndexFormat::compare);
+    for (SymbolData symbol : compilationResult.getSymbolMap()) {
+      String jsniIdent = symbol.getJsniIdent();
+      // like the StackTraceDeobfuscator, only methods are resymbolized
+      if (jsniIdent == null || !jsniIdent.contains(")")) {
+        continue;
+      }
+
+      Entry entry = new Entry();
+      Matcher matcher = JSNI_REF_PATTERN.matcher(jsniIdent.substring(0, jsniIdent.lastIndexOf(')') + 1));
+      if (matcher.matches()) {
+        entry.className = matcher.group(1);
+        entry.methodName = matcher.group(2);
+      }
+      String sourceUri = symbol.getSourceUri();
+      if (sourceUri != null && !"Unknown".equals(sourceUri)) {
+        entry.fileName = sourceUri.substring(sourceUri.lastIndexOf('/') + 1);
+      }
+      entry.sourceLine = symbol.getSourceLine();
+      entry.fragmentNumber = symbol.getFragmentNumber();
+      entries.put(symbol.getSymbolName().getBytes(StandardCharsets.UTF_8), entry);
+    }
+
+    try {
+      ByteArrayOutputStream pool = new ByteArrayOutputStream();
+      DataOutputStream poolOut = new DataOutputStream(pool);
+      Map<String, Integer> offsets = new HashMap<>();
+
+      ByteArrayOutputStream index = new ByteArrayOutputStream(
+              SymbolIndexFormat.HEADER_SIZE + entries.size() * SymbolIndexFormat.ENTRY_SIZE);
+      DataOutputStream out = new DataOutputStream(index);
+      out.writeInt(SymbolIndexFormat.MAGIC);
+      out.writeInt(SymbolIndexFormat.VERSION);
+      out.writeInt(entries.size());
+      for (Map.Entry<byte[], Entry> symbolEntry : entries.entrySet()) {
+        Entry entry = symbolEntry.getValue();
+        out.writeInt(writeString(poolOut, offsets, new String(symbolEntry.getKey(), StandardCharsets.UTF_8)));
+        out.writeInt(writeString(poolOut, offsets, entry.className));
+        out.writeInt(writeString(poolOut, offsets, entry.methodName));
+        out.writeInt(writeString(poolOut, offsets, entry.fileName));
+        out.writeInt(entry.sourceLine);
+        out.writeInt(entry.fragmentNumber);
+      }
+      poolOut.flush();
+      pool.writeTo(out);
+      out.flush();
+      return index.toByteArray();
+    } catch (IOException e) {
+      logger.log(TreeLogger.ERROR, "Unable to write the symbol index of " + compilationResult.getStrongName(), e);
+      throw new UnableToCompleteException();
+    }
+  }
+
+  /**
+   * @return the offset of the string in the pool, strings are written once
+   */
+  private static int writeString(DataOutputStream pool, Map<String, Integer> offsets, String value)
+          throws IOException {
+    if (value == null) {
+      return -1;
+    }
+
+    Integer offset = offsets.get(value);
+    if (offset == null) {
+      offset = pool.size();
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      pool.writeInt(bytes.length);
+      pool.write(bytes);
+      offsets.put(value, offset);
+    }
+    return offset;
+  }
+}
@@ -0,0 +1,274 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import com.google.gwt.user.client.rpc.RpcRequestBuilder;
+import org.slf4gwt.remote.batching.shared.CompactLogFormat;
+import org.slf4gwt.remote.batching.shared.CompactLogReader;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Server-side code for the compact transport of the remote batch log handler.
+ *
+ * The servlet reads the batch record by record from the request and hands the records to the workers of the
+ * {@link RemoteLogPublisher} in small chunks while it reads, so a batch in its turn is never held in memory as a
+ * whole. Only a batch that arrived before its predecessors is read into memory and held until they are logged (see
+ * {@link OrderedBatchLogger}). The workers log the batches of a session in their order. If the workers are
+ * overloaded, the batch is rejected with the status 503 and the client sends it again later. Batches sent with {@code Content-Encoding: gzip} are inflated while
+ * they are read. Reading stops with the status 413 at the limits of the characters and records of a batch (see
+ * {@link #setMaxBatchChars(long)} and {@link #setMaxBatchRecords(int)}), so a small compressed request can't keep a
+ * thread busy with an endless batch. The records before the limit may have been logged, the client drops the rest. The
+ * servlet also accepts the beacons the handler sends when the page is hidden. Map it to
+ * {@code remote_logging_compact} relative to the module base URL.
+ *
+ * @see CompactLogFormat
+ */
+public class CompactRemoteLoggingServlet extends HttpServlet {
+
+  private static final Logger logger = Logger.getLogger(CompactRemoteLoggingServlet.class.getName());
+
+  private static final long DEFAULT_MAX_BATCH_CHARS = 4 * 1024 * 1024;
+
+  private static final int DEFAULT_MAX_BATCH_RECORDS = 10000;
+
+  private final RemoteLogPublisher publisher = new RemoteLogPublisher();
+
+  private final OrderedBatchLogger batchLogger = new OrderedBatchLogger(publisher);
+
+  private volatile long maxBatchChars = DEFAULT_MAX_BATCH_CHARS;
+  private volatile int maxBatchRecords = DEFAULT_MAX_BATCH_RECORDS;
+
+  /**
+   * thrown if a batch exceeds the limits of the servlet.
+   */
+  private static class BatchTooLargeException extends IOException {
+
+    BatchTooLargeException(String message) {
+      super(message);
+    }
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (request.getCharacterEncoding() == null) {
+      request.setCharacterEncoding("UTF-8");
+    }
+
+    String result;
+    try {
+      Reader reader = openReader(request);
+      long maxChars = maxBatchChars;
+      result = logOnServer(new CompactLogReader(new CompactLogReader.Input() {
+        private long chars;
+
+        @Override
+        public int read() throws IOException {
+          int c = reader.read();
+          count(c == -1 ? 0 : 1);
+          return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+          int read = reader.read(buffer, offset, length);
+          count(Math.max(read, 0));
+          return read;
+        }
+
+        private void count(int read) throws BatchTooLargeException {
+          chars += read;
+          if (chars > maxChars) {
+            throw new BatchTooLargeException("The batch has more than " + maxChars + " characters");
+          }
+        }
+      }), request);
+    } catch (BatchTooLargeException e) {
+      logger.warning("Remote logging rejected: " + e.getMessage());
+      response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+      return;
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Remote logging failed", e);
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid compact log batch");
+      return;
+    } catch (RejectedExecutionException e) {
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+      return;
+    }
+
+    response.setContentType(CompactLogFormat.CONTENT_TYPE);
+    if (result != null) {
+      response.getWriter().write(result);
+    }
+  }
+
+  /**
+   * @return the reader of the batch, inflating it while reading if the client compressed it
+   */
+  private static Reader openReader(HttpServletRequest request) throws IOException {
+    if ("gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+      return new BufferedReader(new InputStreamReader(new GZIPInputStream(request.getInputStream()),
+              request.getCharacterEncoding()));
+    }
+    return new BufferedReader(request.getReader());
+  }
+
+  /**
+   * Logs the records of a batch.
+   * @return either an error message, or null if logging is successful.
+   */
+  private String logOnServer(CompactLogReader reader, HttpServletRequest request) throws IOException {
+    String strongName = request.getHeader(RpcRequestBuilder.STRONG_NAME_HEADER);
+    if (strongName == null) {
+      // beacons can't set headers
+      strongName = request.getParameter(CompactLogFormat.STRONG_NAME_PARAMETER);
+    }
+
+    // beacons don't use a dictionary, because they can't read a reset, and may come without a session, their batches
+    // are logged in parallel
+    if (reader.getDictionaryKey().isEmpty()) {
+      HttpSession session = request.getSession(false);
+      return OrderedBatchLogger.publish(null, records(reader),
+              publisher.open(strongName, session != null ? session.getId() : null));
+    }
+
+    HttpSession session = request.getSession();
+    LogDictionary dictionary = LogDictionary.forKey(session, reader.getDictionaryKey());
+    return batchLogger.log(dictionary, reader.getSequence(), reader.getDictionarySize(), strongName, session.getId(),
+            records(reader));
+  }
+
+  /**
+   * @return the records of the reader, up to the maximum number of records of a batch
+   */
+  private OrderedBatchLogger.RecordSource records(CompactLogReader reader) {
+    int maxRecords = maxBatchRecords;
+    int[] records = { 0 };
+    return () -> {
+      RemoteLogRecord record = reader.next();
+      if (record != null && ++records[0] > maxRecords) {
+        throw new BatchTooLargeException("The batch has more than " + maxRecords + " records");
+      }
+      return record;
+    };
+  }
+
+  /**
+   * Sets the maximum number of characters of a batch after it is inflated, 4 MiB characters by default. Larger batches
+   * are rejected with the status 413.
+   */
+  public void setMaxBatchChars(long maxBatchChars) {
+    this.maxBatchChars = maxBatchChars;
+  }
+
+  /**
+   * Sets the maximum number of records of a batch, 10000 by default. Batches with more records are rejected with the
+   * status 413. Raise it if the clients send larger batches ({@code slf4gwt.log.remote.batch.maxBatchRecords}).
+   */
+  public void setMaxBatchRecords(int maxBatchRecords) {
+    this.maxBatchRecords = maxBatchRecords;
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setLoggerNameOverride(String)
+   */
+  public void setLoggerNameOverride(String override) {
+    publisher.setLoggerNameOverride(override);
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setSymbolMapsDirectory(String)
+   */
+  public void setSymbolMapsDirectory(String symbolMapsDir) {
+    publisher.setSymbolMapsDirectory(symbolMapsDir);
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setSymbolIndexDirectory(String)
+   */
+  public void setSymbolIndexDirectory(String symbolIndexDir) {
+    publisher.setSymbolIndexDirectory(symbolIndexDir);
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setAggregationWindowMillis(long)
+   */
+  public void setAggregationWindowMillis(long windowMillis) {
+    publisher.setAggregationWindowMillis(windowMillis);
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setFrameCacheBytes(long)
+   */
+  public void setFrameCacheBytes(long frameCacheBytes) {
+    publisher.setFrameCacheBytes(frameCacheBytes);
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#getFrameCache()
+   */
+  public DeobfuscatedFrameCache getFrameCache() {
+    return publisher.getFrameCache();
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setWorkerThreads(int)
+   */
+  public void setWorkerThreads(int workerThreads) {
+    publisher.setWorkerThreads(workerThreads);
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setQueueCapacity(int)
+   */
+  public void setQueueCapacity(int queueCapacity) {
+    publisher.setQueueCapacity(queueCapacity);
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setOverloadPolicy(RemoteLogPublisher.OverloadPolicy)
+   */
+  public void setOverloadPolicy(RemoteLogPublisher.OverloadPolicy overloadPolicy) {
+    publisher.setOverloadPolicy(overloadPolicy);
+  }
+
+  @Override
+  public void destroy() {
+    batchLogger.shutdown();
+    publisher.shutdown();
+    super.destroy();
+  }
+}
@@ -0,0 +1,249 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * caches the deobfuscated stack frames of the clients by permutation and obfuscated frame.
+ *
+ * When many clients send the same error, their stack traces are resymbolized once and then taken from the cache. The
+ * cache is split into segments with their own lock, each segment drops its least recently used frames when it exceeds
+ * its share of the memory budget. The frames of a permutation can be dropped as a whole, e.g. when a release is
+ * retired. The hits, misses and evictions are counted for monitoring.
+ */
+public class DeobfuscatedFrameCache {
+
+  private static final int SEGMENTS = 16;
+
+  /** the estimated size of an entry without its strings, the key, the frames and the map entry */
+  private static final int ENTRY_OVERHEAD_BYTES = 200;
+
+  private static final class FrameKey {
+    private final String strongName;
+    private final StackTraceElement frame;
+    private final int hash;
+
+    FrameKey(String strongName, StackTraceElement frame) {
+      this.strongName = strongName;
+      this.frame = frame;
+      this.hash = 31 * strongName.hashCode() + frame.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof FrameKey)) {
+        return false;
+      }
+      FrameKey other = (FrameKey) o;
+      return hash == other.hash && strongName.equals(other.strongName) && frame.equals(other.frame);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private final class Segment extends LinkedHashMap<FrameKey, StackTraceElement> {
+    private final long maxBytes;
+    private long bytes;
+
+    Segment(long maxBytes) {
+      super(16, 0.75f, true);
+      this.maxBytes = maxBytes;
+    }
+
+    synchronized StackTraceElement getFrame(FrameKey key) {
+      return get(key);
+    }
+
+    synchronized void putFrame(FrameKey key, StackTraceElement resolved) {
+      StackTraceElement previous = put(key, resolved);
+      if (previous != null) {
+        bytes -= estimateSize(key, previous);
+      }
+      bytes += estimateSize(key, resolved);
+
+      Iterator<Map.Entry<FrameKey, StackTraceElement>> eldest = entrySet().iterator();
+      while (bytes > maxBytes && eldest.hasNext()) {
+        Map.Entry<FrameKey, StackTraceElement> entry = eldest.next();
+        bytes -= estimateSize(entry.getKey(), entry.getValue());
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+
+    synchronized void removePermutation(String strongName) {
+      Iterator<Map.Entry<FrameKey, StackTraceElement>> entries = entrySet().iterator();
+      while (entries.hasNext()) {
+        Map.Entry<FrameKey, StackTraceElement> entry = entries.next();
+        if (entry.getKey().strongName.equals(strongName)) {
+          bytes -= estimateSize(entry.getKey(), entry.getValue());
+          entries.remove();
+        }
+      }
+    }
+
+    synchronized void removeAll() {
+      clear();
+      bytes = 0;
+    }
+
+    synchronized long getBytes() {
+      return bytes;
+    }
+  }
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param maxBytes the memory budget of the cache in estimated bytes
+   */
+  public DeobfuscatedFrameCache(long maxBytes) {
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(maxBytes / SEGMENTS);
+    }
+  }
+
+  /**
+   * Replaces the stack traces of a throwable and its causes with the deobfuscated ones, like
+   * {@link StackTraceResymbolizer#deobfuscateStackTrace(Throwable, String)}.
+   */
+  public void deobfuscateStackTrace(StackTraceResymbolizer deobfuscator, Throwable throwable, String strongName) {
+    for (Throwable t = throwable; t != null; t = t.getCause()) {
+      t.setStackTrace(resymbolize(deobfuscator, t.getStackTrace(), strongName));
+    }
+  }
+
+  /**
+   * @return the deobfuscated frames, from the cache if possible. The missing frames are resymbolized together.
+   */
+  public StackTraceElement[] resymbolize(StackTraceResymbolizer deobfuscator, StackTraceElement[] frames,
+                                         String strongName) {
+    StackTraceElement[] resolved = new StackTraceElement[frames.length];
+    FrameKey[] keys = new FrameKey[frames.length];
+    ArrayList<StackTraceElement> missingFrames = new ArrayList<>();
+    for (int i = 0; i < frames.length; i++) {
+      keys[i] = new FrameKey(strongName, frames[i]);
+      resolved[i] = segment(keys[i]).getFrame(keys[i]);
+      if (resolved[i] == null) {
+        missingFrames.add(frames[i]);
+      }
+    }
+
+    hits.add(frames.length - missingFrames.size());
+    if (missingFrames.isEmpty()) {
+      return resolved;
+    }
+    misses.add(missingFrames.size());
+
+    StackTraceElement[] missingResolved =
+            deobfuscator.resymbolize(missingFrames.toArray(new StackTraceElement[0]), strongName);
+    for (int i = 0, missing = 0; i < frames.length; i++) {
+      if (resolved[i] == null) {
+        resolved[i] = missingResolved[missing++];
+        segment(keys[i]).putFrame(keys[i], resolved[i]);
+      }
+    }
+    return resolved;
+  }
+
+  /**
+   * Drops the frames of a permutation, e.g. after its release has been retired.
+   */
+  public void evictPermutation(String strongName) {
+    for (Segment segment : segments) {
+      segment.removePermutation(strongName);
+    }
+  }
+
+  /**
+   * Drops all frames, e.g. after the symbol maps have changed.
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.removeAll();
+    }
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return the share of the frames found in the cache, 0 if no frame has been requested
+   */
+  public double getHitRate() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return total > 0 ? (double) hitCount / total : 0;
+  }
+
+  /**
+   * @return the estimated size of the cached frames in bytes
+   */
+  public long getBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.getBytes();
+    }
+    return bytes;
+  }
+
+  private Segment segment(FrameKey key) {
+    // spread the hash, so segments don't depend on the low bits only
+    int hash = key.hash ^ (key.hash >>> 16);
+    return segments[(hash & 0x7fffffff) % SEGMENTS];
+  }
+
+  private static long estimateSize(FrameKey key, StackTraceElement resolved) {
+    return ENTRY_OVERHEAD_BYTES + 2L * (key.strongName.length() + length(key.frame) + length(resolved));
+  }
+
+  private static int length(StackTraceElement frame) {
+    return Objects.toString(frame.getClassName(), "").length() + Objects.toString(frame.getMethodName(), "").length()
+            + Objects.toString(frame.getFileName(), "").length();
+  }
+}
@@ -0,0 +1,267 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import com.google.gwt.core.shared.SerializableThrowable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * aggregates the records of the same error of many clients.
+ *
+ * A record is identified by a 64 bit fingerprint of its logger name, its message pattern, the type of its throwable
+ * and the top frames of its deobfuscated stack trace. Digits in formatted messages are ignored, so the same message
+ * with different ids has the same fingerprint. The first record of a fingerprint is logged in full, the later ones
+ * are only counted. When the window ends, {@link #flush()} returns a summary record for each fingerprint with their
+ * number and the times of the first and last one. A fingerprint that isn't seen during a window is forgotten, so its
+ * next record is logged in full again.
+ *
+ * The batches that are being logged while a window ends keep counting into the next window, so their records are
+ * summarized one window later. When the aggregation stops, {@link #close()} ends the last window, and the records of
+ * those batches are logged in full instead of being counted for a summary that is never logged.
+ *
+ * The fingerprints are kept in an open addressing table of primitive longs, bounded by a maximum number of
+ * fingerprints. If the table is full, records of new fingerprints are logged in full.
+ */
+public class ErrorAggregator {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private static final class Aggregate {
+    final Level level;
+    final String loggerName;
+    final String text;
+    /** the number of records that have been counted instead of logged in the current window */
+    long count;
+    long firstMillis;
+    long lastMillis;
+    /** a record has been seen in the current window */
+    boolean seen;
+
+    Aggregate(Level level, String loggerName, String text) {
+      this.level = level;
+      this.loggerName = loggerName;
+      this.text = text;
+    }
+  }
+
+  private final int maxFingerprints;
+  private final int topFrames;
+  private final Level minLevel;
+
+  /** 0 marks an empty slot */
+  private long[] fingerprints;
+  private Aggregate[] aggregates;
+  private int size;
+  private boolean closed;
+
+  /**
+   * @param maxFingerprints the maximum number of fingerprints that are aggregated at once
+   * @param topFrames the number of stack frames that are part of the fingerprint
+   * @param minLevel the lowest level of the records that are aggregated
+   */
+  public ErrorAggregator(int maxFingerprints, int topFrames, Level minLevel) {
+    this.maxFingerprints = maxFingerprints;
+    this.topFrames = topFrames;
+    this.minLevel = minLevel;
+    int capacity = Integer.highestOneBit(Math.max(maxFingerprints, 1) * 2 - 1) << 1;
+    fingerprints = new long[capacity];
+    aggregates = new Aggregate[capacity];
+  }
+
+  /**
+   * Counts the record if its fingerprint has been logged before.
+   *
+   * @return true if the record should be logged in full, false if it has been counted
+   */
+  public boolean admit(LogRecord record) {
+    if (record.getLevel().intValue() < minLevel.intValue()) {
+      return true;
+    }
+
+    long fingerprint = fingerprint(record);
+    int repeatCount = record instanceof PatternLogRecord ? ((PatternLogRecord) record).getRepeatCount() : 1;
+    long lastMillis = record instanceof PatternLogRecord
+            ? ((PatternLogRecord) record).getLastMillis()
+            : record.getMillis();
+    synchronized (this) {
+      if (closed) {
+        return true;
+      }
+      int slot = slot(fingerprint);
+      Aggregate aggregate = aggregates[slot];
+      if (aggregate != null) {
+        if (aggregate.count == 0) {
+          aggregate.firstMillis = record.getMillis();
+          aggregate.lastMillis = lastMillis;
+        } else {
+          aggregate.firstMillis = Math.min(aggregate.firstMillis, record.getMillis());
+          aggregate.lastMillis = Math.max(aggregate.lastMillis, lastMillis);
+        }
+        aggregate.count += repeatCount;
+        aggregate.seen = true;
+        return false;
+      }
+
+      if (size < maxFingerprints) {
+        aggregate = new Aggregate(record.getLevel(), record.getLoggerName(), text(record));
+        aggregate.seen = true;
+        fingerprints[slot] = fingerprint;
+        aggregates[slot] = aggregate;
+        size++;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Ends the current window.
+   *
+   * @return the summary records of the fingerprints that have been counted during the window
+   */
+  public List<LogRecord> flush() {
+    ArrayList<LogRecord> summaries = new ArrayList<>();
+    synchronized (this) {
+      long[] oldFingerprints = fingerprints;
+      Aggregate[] oldAggregates = aggregates;
+      fingerprints = new long[oldFingerprints.length];
+      aggregates = new Aggregate[oldAggregates.length];
+      size = 0;
+
+      for (int i = 0; i < oldAggregates.length; i++) {
+        Aggregate aggregate = oldAggregates[i];
+        if (aggregate == null || !aggregate.seen) {
+          continue;
+        }
+
+        if (aggregate.count > 0) {
+          summaries.add(summary(aggregate));
+        }
+        aggregate.count = 0;
+        aggregate.seen = false;
+        int slot = slot(oldFingerprints[i]);
+        fingerprints[slot] = oldFingerprints[i];
+        aggregates[slot] = aggregate;
+        size++;
+      }
+    }
+    return summaries;
+  }
+
+  /**
+   * Ends the last window, later records are logged in full.
+   *
+   * @return the summary records of the fingerprints that have been counted during the last window
+   */
+  public synchronized List<LogRecord> close() {
+    closed = true;
+    return flush();
+  }
+
+  /**
+   * @return the slot of the fingerprint, or the empty slot where it belongs
+   */
+  private int slot(long fingerprint) {
+    int mask = fingerprints.length - 1;
+    int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+    while (fingerprints[slot] != 0 && fingerprints[slot] != fingerprint) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static LogRecord summary(Aggregate aggregate) {
+    LogRecord summary = new LogRecord(aggregate.level, aggregate.count + " more times between "
+            + Instant.ofEpochMilli(aggregate.firstMillis) + " and " + Instant.ofEpochMilli(aggregate.lastMillis) + ": "
+            + aggregate.text);
+    summary.setLoggerName(aggregate.loggerName);
+    summary.setMillis(aggregate.lastMillis);
+    return summary;
+  }
+
+  /**
+   * @return the pattern of a structured record, or the message
+   */
+  private static String text(LogRecord record) {
+    String text = record instanceof PatternLogRecord ? ((PatternLogRecord) record).getPattern() : record.getMessage();
+    Throwable thrown = record.getThrown();
+    return thrown != null ? text + " [" + throwableType(thrown) + "]" : text;
+  }
+
+  private long fingerprint(LogRecord record) {
+    long hash = FNV_OFFSET_BASIS;
+    hash = hash(hash, record.getLoggerName(), false);
+    hash = record instanceof PatternLogRecord
+            ? hash(hash, ((PatternLogRecord) record).getPattern(), false)
+            : hash(hash, record.getMessage(), true);
+
+    Throwable thrown = record.getThrown();
+    if (thrown != null) {
+      hash = hash(hash, throwableType(thrown), false);
+      StackTraceElement[] stackTrace = thrown.getStackTrace();
+      for (int i = 0; i < stackTrace.length && i < topFrames; i++) {
+        hash = hash(hash, stackTrace[i].getClassName(), false);
+        hash = hash(hash, stackTrace[i].getMethodName(), false);
+      }
+    }
+    // 0 marks an empty slot
+    return hash != 0 ? hash : 1;
+  }
+
+  /**
+   * FNV-1a hash of the characters of a value, followed by a separator.
+   *
+   * @param ignoreDigits hash runs of digits as a single placeholder
+   */
+  private static long hash(long hash, String value, boolean ignoreDigits) {
+    if (value != null) {
+      boolean inDigits = false;
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (ignoreDigits && c >= '0' && c <= '9') {
+          if (inDigits) {
+            continue;
+          }
+          inDigits = true;
+          c = '#';
+        } else {
+          inDigits = false;
+        }
+        hash = (hash ^ c) * FNV_PRIME;
+      }
+    }
+    return (hash ^ 0xffff) * FNV_PRIME;
+  }
+
+  private static String throwableType(Throwable thrown) {
+    return thrown instanceof SerializableThrowable
+            ? ((SerializableThrowable) thrown).getDesignatedType()
+            : thrown.getClass().getName();
+  }
+}
@@ -0,0 +1,310 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import javax.servlet.http.HttpSession;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * the logger names and message patterns a client has sent in structured batches, and the order of its batches.
+ *
+ * The dictionaries are kept in the http session, keyed by the dictionary key of the client, because several pages of
+ * a session log independently.
+ *
+ * @see RemoteLogBatch
+ */
+class LogDictionary implements Serializable {
+
+  /** the result of a batch with a record that refers to an unknown id, the other records of the batch are logged */
+  static final String UNKNOWN_ID = "Remote logging failed, unknown dictionary id.";
+
+  private static final String SESSION_ATTRIBUTE = LogDictionary.class.getName();
+
+  /** the number of batches a batch may be ahead of the next expected one to wait for its predecessors */
+  private static final int REORDER_WINDOW = 16;
+
+  /** the time after which the batches missing before a held batch are given up */
+  static final long REORDER_TIMEOUT_MILLIS = 2000;
+
+  /** the maximum number of records of the batches that wait for their predecessors */
+  private static final int MAX_HELD_RECORDS = 10000;
+
+  /** the number of dictionaries that are kept per session, the least recently used is dropped */
+  private static final int MAX_DICTIONARIES_PER_SESSION = 8;
+
+  /**
+   * the turns of the batches.
+   */
+  enum Turn {
+    /** the batch has the turn, it's processed now and {@link #finishTurn(int, long)} ends the turn */
+    TAKEN,
+    /** the batch has no sequence number, it's processed without turn */
+    NONE,
+    /** the batch arrived before its predecessors, it's held until its turn comes */
+    EARLY
+  }
+
+  /**
+   * a batch that waits for its predecessors.
+   */
+  static final class HeldBatch {
+    final int sequence;
+    final int dictionarySize;
+    final String strongName;
+    final Object sessionKey;
+    final List<RemoteLogRecord> records;
+
+    HeldBatch(int sequence, int dictionarySize, String strongName, Object sessionKey, List<RemoteLogRecord> records) {
+      this.sequence = sequence;
+      this.dictionarySize = dictionarySize;
+      this.strongName = strongName;
+      this.sessionKey = sessionKey;
+      this.records = records;
+    }
+  }
+
+  private final ArrayList<String> values = new ArrayList<>();
+
+  /** the sequence number of the next batch that is expected */
+  private int nextSequence;
+
+  /** the held batches by their sequence number, they aren't replicated with the session */
+  private transient TreeMap<Integer, HeldBatch> heldBatches;
+
+  /** the number of records of the held batches */
+  private transient int heldRecords;
+
+  /** the time the gap before the first held batch was noticed */
+  private transient long gapMillis;
+
+  /** whether a batch has the turn */
+  private transient boolean turnTaken;
+
+  /** whether the release of the held batches has been scheduled */
+  private transient boolean releaseScheduled;
+
+  static LogDictionary forKey(HttpSession session, String key) {
+    synchronized (session) {
+      Dictionaries dictionaries = (Dictionaries) session.getAttribute(SESSION_ATTRIBUTE);
+      if (dictionaries == null) {
+        dictionaries = new Dictionaries();
+      }
+      LogDictionary dictionary = dictionaries.computeIfAbsent(key, k -> new LogDictionary());
+      // set the attribute again, so that the session is replicated
+      session.setAttribute(SESSION_ATTRIBUTE, dictionaries);
+      return dictionary;
+    }
+  }
+
+  /**
+   * Starts the turn of a batch, unless it arrived before its predecessors have been processed. Such a batch is held
+   * with {@link #hold(HeldBatch, long)} until its predecessors are processed, so the strings are added in the order
+   * of the client and neither a thread nor the client waits for the missing batches. A batch that is too far ahead
+   * of the expected one is processed as soon as no other batch has the turn, a late batch, too. If its predecessors
+   * added strings, {@link #startBatch(int)} detects the gap.
+   *
+   * @param sequence the sequence number of the batch, or -1 if it has none
+   */
+  synchronized Turn tryStartTurn(int sequence) {
+    if (sequence < 0) {
+      return Turn.NONE;
+    }
+    if (turnTaken || !isNext(sequence)) {
+      return Turn.EARLY;
+    }
+    turnTaken = true;
+    return Turn.TAKEN;
+  }
+
+  /**
+   * Holds a batch that {@link #tryStartTurn(int)} found early, unless its turn came while it was read.
+   *
+   * @return {@link Turn#TAKEN} if the batch has the turn now, {@link Turn#EARLY} if it is held, or {@link Turn#NONE}
+   * if too many records are held already
+   */
+  synchronized Turn hold(HeldBatch batch, long nowMillis) {
+    if (tryStartTurn(batch.sequence) == Turn.TAKEN) {
+      return Turn.TAKEN;
+    }
+    if (heldRecords + batch.records.size() > MAX_HELD_RECORDS) {
+      return Turn.NONE;
+    }
+
+    if (heldBatches().isEmpty()) {
+      gapMillis = nowMillis;
+    }
+    HeldBatch replaced = heldBatches().put(batch.sequence, batch);
+    if (replaced != null) {
+      // the client sent the batch again
+      heldRecords -= replaced.records.size();
+    }
+    heldRecords += batch.records.size();
+    return Turn.EARLY;
+  }
+
+  /**
+   * Ends the turn of a batch that {@link #tryStartTurn(int)} or {@link #hold(HeldBatch, long)} started.
+   *
+   * @return the held batch that has the turn now, or null
+   */
+  synchronized HeldBatch finishTurn(int sequence, long nowMillis) {
+    turnTaken = false;
+    if (sequence >= nextSequence) {
+      nextSequence = sequence + 1;
+    }
+    return releaseHeldBatch(nowMillis);
+  }
+
+  /**
+   * Gives up the batches missing before the first held batch, if they haven't arrived within
+   * {@link #REORDER_TIMEOUT_MILLIS} after their gap was noticed. It is called when the release that
+   * {@link #scheduleRelease(long)} scheduled is due.
+   *
+   * @return the held batch that has the turn now, or null
+   */
+  synchronized HeldBatch releaseExpiredBatch(long nowMillis) {
+    releaseScheduled = false;
+    return releaseHeldBatch(nowMillis);
+  }
+
+  /**
+   * Gives up all missing batches, e.g. when the server shuts down.
+   *
+   * @return the held batches in their order, they are logged without turn
+   */
+  synchronized List<HeldBatch> releaseAll() {
+    List<HeldBatch> batches = new ArrayList<>(heldBatches().values());
+    heldBatches().clear();
+    heldRecords = 0;
+    return batches;
+  }
+
+  private HeldBatch releaseHeldBatch(long nowMillis) {
+    if (turnTaken || heldBatches().isEmpty()) {
+      return null;
+    }
+
+    Map.Entry<Integer, HeldBatch> first = heldBatches().firstEntry();
+    boolean next = isNext(first.getKey());
+    if (!next && nowMillis - gapMillis < REORDER_TIMEOUT_MILLIS) {
+      return null;
+    }
+    heldBatches().remove(first.getKey());
+    heldRecords -= first.getValue().records.size();
+    if (next) {
+      // a later gap is noticed now
+      gapMillis = nowMillis;
+    }
+    turnTaken = true;
+    return first.getValue();
+  }
+
+  /**
+   * @return the delay after which {@link #releaseExpiredBatch(long)} may release a held batch, or -1 if no batch is held
+   * or the release has been scheduled already
+   */
+  synchronized long scheduleRelease(long nowMillis) {
+    if (releaseScheduled || heldBatches().isEmpty()) {
+      return -1;
+    }
+    releaseScheduled = true;
+    return Math.max(0, gapMillis + REORDER_TIMEOUT_MILLIS - nowMillis);
+  }
+
+  private boolean isNext(int sequence) {
+    return sequence <= nextSequence || sequence - nextSequence >= REORDER_WINDOW;
+  }
+
+  private TreeMap<Integer, HeldBatch> heldBatches() {
+    if (heldBatches == null) {
+      heldBatches = new TreeMap<>();
+    }
+    return heldBatches;
+  }
+
+  /**
+   * Starts to read a batch.
+   *
+   * @param dictionarySize the size of the dictionary of the client before the batch
+   * @return true if the dictionary matches the one of the client, false if the client has to start a new dictionary
+   */
+  synchronized boolean startBatch(int dictionarySize) {
+    if (dictionarySize == 0) {
+      // the client started a new dictionary
+      values.clear();
+    }
+    return dictionarySize == values.size();
+  }
+
+  /**
+   * Replaces the ids of a record with the strings of the dictionary and adds the new strings.
+   *
+   * @return the resolved record, or null if the record refers to an unknown id
+   */
+  synchronized RemoteLogRecord resolve(RemoteLogRecord record) {
+    String loggerName = resolve(record.getLoggerName(), record.getLoggerNameId());
+    String message = record.getArguments() != null
+            ? resolve(record.getMessage(), record.getMessageId())
+            : record.getMessage();
+    if ((loggerName == null && record.getLoggerNameId() != -1) || (message == null && record.getMessageId() != -1)) {
+      return null;
+    }
+
+    RemoteLogRecord resolved = new RemoteLogRecord(record.getLevel(), loggerName, record.getMillis(), message,
+            record.getArguments(), record.getThrown());
+    resolved.setRepeats(record.getRepeatCount(), record.getLastMillis());
+    return resolved;
+  }
+
+  private String resolve(String value, int id) {
+    if (id != -1) {
+      return id >= 0 && id < values.size() ? values.get(id) : null;
+    }
+    if (value != null && values.size() < RemoteLogBatch.MAX_DICTIONARY_SIZE) {
+      // the client added the string to its dictionary, too
+      values.add(value);
+    }
+    return value;
+  }
+
+  private static class Dictionaries extends LinkedHashMap<String, LogDictionary> {
+
+    Dictionaries() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, LogDictionary> eldest) {
+      return size() > MAX_DICTIONARIES_PER_SESSION;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * logs the structured batches of a dictionary in the order of their sequence numbers.
+ *
+ * A batch that arrives before its predecessors is read into memory and held by its {@link LogDictionary}. It is
+ * logged after its predecessors, or when they haven't arrived within {@link LogDictionary#REORDER_TIMEOUT_MILLIS}.
+ * The client gets the answer for a held batch right away, so problems of its records are only logged on the server.
+ */
+final class OrderedBatchLogger {
+
+  private static final Logger logger = Logger.getLogger(OrderedBatchLogger.class.getName());
+
+  /**
+   * the records of a batch, read while they are logged.
+   */
+  interface RecordSource {
+
+    /**
+     * @return the next record, or null at the end of the batch
+     */
+    RemoteLogRecord next() throws IOException;
+  }
+
+  private final RemoteLogPublisher publisher;
+
+  /** the dictionaries whose held batches are released by the {@link #releaseTimer} */
+  private final Set<LogDictionary> scheduledReleases = new HashSet<>();
+
+  private ScheduledExecutorService releaseTimer;
+
+  OrderedBatchLogger(RemoteLogPublisher publisher) {
+    this.publisher = publisher;
+  }
+
+  /**
+   * Logs a batch in its turn, or holds it until its turn comes.
+   *
+   * @param sequence the sequence number of the batch, or -1 if it has none
+   * @return either an error message, or null if logging is successful or the batch is held
+   */
+  String log(LogDictionary dictionary, int sequence, int dictionarySize, String strongName, Object sessionKey,
+             RecordSource records) throws IOException {
+    LogDictionary.Turn turn = dictionary.tryStartTurn(sequence);
+    if (turn == LogDictionary.Turn.NONE) {
+      return logBatch(dictionary, dictionarySize, strongName, sessionKey, records);
+    }
+
+    if (turn == LogDictionary.Turn.EARLY) {
+      List<RemoteLogRecord> heldRecords = new ArrayList<>();
+      RemoteLogRecord record;
+      while ((record = records.next()) != null) {
+        heldRecords.add(record);
+      }
+      turn = dictionary.hold(new LogDictionary.HeldBatch(sequence, dictionarySize, strongName, sessionKey,
+              heldRecords), System.currentTimeMillis());
+      if (turn == LogDictionary.Turn.NONE) {
+        throw new RejectedExecutionException("Too many remote log batches wait for their predecessors");
+      }
+      if (turn == LogDictionary.Turn.EARLY) {
+        scheduleRelease(dictionary);
+        return null;
+      }
+      records = source(heldRecords);
+    }
+
+    try {
+      return logBatch(dictionary, dictionarySize, strongName, sessionKey, records);
+    } finally {
+      logHeldBatches(dictionary, dictionary.finishTurn(sequence, System.currentTimeMillis()));
+    }
+  }
+
+  /**
+   * Logs the held batches that got their turn, one after the other.
+   */
+  private void logHeldBatches(LogDictionary dictionary, LogDictionary.HeldBatch batch) {
+    while (batch != null) {
+      logHeldBatch(dictionary, batch);
+      batch = dictionary.finishTurn(batch.sequence, System.currentTimeMillis());
+    }
+    scheduleRelease(dictionary);
+  }
+
+  private String logBatch(LogDictionary dictionary, int dictionarySize, String strongName, Object sessionKey,
+                          RecordSource records) throws IOException {
+    if (!dictionary.startBatch(dictionarySize)) {
+      return RemoteLogBatch.DICTIONARY_RESET;
+    }
+    return publish(dictionary, records, publisher.open(strongName, sessionKey));
+  }
+
+  /**
+   * Logs a batch that has been held. The client can't send it again, so it waits for room in the queue, and if the
+   * batches before it are lost, its records without ids are logged.
+   */
+  private void logHeldBatch(LogDictionary dictionary, LogDictionary.HeldBatch batch) {
+    try {
+      boolean dictionaryMatches = dictionary.startBatch(batch.dictionarySize);
+      String result = publish(dictionaryMatches ? dictionary : null, source(batch.records),
+              publisher.open(batch.strongName, batch.sessionKey, RemoteLogPublisher.OverloadPolicy.CALLER_RUNS));
+      if (result != null) {
+        logger.warning("Remote logging of a held batch of " + batch.records.size() + " records failed: " + result);
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Remote logging of a held batch failed", e);
+    }
+  }
+
+  /**
+   * Resolves the records of a batch with the dictionary and logs them.
+   *
+   * @param dictionary the dictionary, or null if the batch is logged without it, its records with ids are dropped
+   */
+  static String publish(LogDictionary dictionary, RecordSource records, RemoteLogPublisher.Publication publication)
+          throws IOException {
+    String result = null;
+    RemoteLogRecord record;
+    while ((record = records.next()) != null) {
+      RemoteLogRecord resolved = dictionary != null ? dictionary.resolve(record) : withoutIds(record);
+      if (resolved != null) {
+        publication.add(new PatternLogRecord(resolved));
+      } else if (result == null) {
+        result = LogDictionary.UNKNOWN_ID;
+      }
+    }
+
+    String publishResult = publication.finish();
+    return result != null ? result : publishResult;
+  }
+
+  /**
+   * @return the record of a batch without dictionary, or null if it refers to an id
+   */
+  static RemoteLogRecord withoutIds(RemoteLogRecord record) {
+    return record.getLoggerNameId() == -1 && record.getMessageId() == -1 ? record : null;
+  }
+
+  static RecordSource source(List<RemoteLogRecord> records) {
+    Iterator<RemoteLogRecord> iterator = records.iterator();
+    return () -> iterator.hasNext() ? iterator.next() : null;
+  }
+
+  private void scheduleRelease(LogDictionary dictionary) {
+    long delayMillis = dictionary.scheduleRelease(System.currentTimeMillis());
+    if (delayMillis < 0) {
+      return;
+    }
+
+    synchronized (this) {
+      if (releaseTimer == null) {
+        releaseTimer = Executors.newSingleThreadScheduledExecutor(
+                RemoteLogPublisher.daemonThreads("slf4gwt-remote-log-reorder-"));
+      }
+      scheduledReleases.add(dictionary);
+      releaseTimer.schedule(() -> {
+        synchronized (this) {
+          scheduledReleases.remove(dictionary);
+        }
+        logHeldBatches(dictionary, dictionary.releaseExpiredBatch(System.currentTimeMillis()));
+      }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stops the release timer and logs the held batches without waiting for their predecessors.
+   */
+  void shutdown() {
+    List<LogDictionary> dictionaries;
+    synchronized (this) {
+      if (releaseTimer == null) {
+        return;
+      }
+      releaseTimer.shutdownNow();
+      releaseTimer = null;
+      dictionaries = new ArrayList<>(scheduledReleases);
+      scheduledReleases.clear();
+    }
+
+    for (LogDictionary dictionary : dictionaries) {
+      for (LogDictionary.HeldBatch batch : dictionary.releaseAll()) {
+        logHeldBatch(dictionary, batch);
+      }
+    }
+  }
+}
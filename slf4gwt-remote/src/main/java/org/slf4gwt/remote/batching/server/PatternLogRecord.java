@@ -0,0 +1,102 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * server side record of a structured remote log record.
+ *
+ * The message is formatted from the pattern and the arguments when it is requested the first time, so handlers that
+ * only need the pattern don't pay for the formatting. If the record stands for repeated records, the message tells
+ * their number and time span.
+ */
+public class PatternLogRecord extends LogRecord {
+
+  private final String pattern;
+  private final String[] arguments;
+  private final RemoteLogRecord record;
+  private boolean formatted;
+
+  public PatternLogRecord(RemoteLogRecord record) {
+    super(Level.parse(record.getLevel()), record.getArguments() == null
+            ? record.appendRepeats(record.getMessage())
+            : record.getMessage());
+    setLoggerName(record.getLoggerName());
+    setMillis(record.getMillis());
+    setThrown(record.getThrown());
+
+    this.pattern = record.getMessage();
+    this.arguments = record.getArguments();
+    this.record = record;
+    this.formatted = arguments == null;
+  }
+
+  /**
+   * @return the message pattern sent by the client, or the message if it was formatted on the client
+   */
+  public String getPattern() {
+    return pattern;
+  }
+
+  /**
+   * @return the arguments of the pattern as strings, or null if the message was formatted on the client
+   */
+  public String[] getArguments() {
+    return arguments;
+  }
+
+  /**
+   * @return the number of client records this record stands for, 1 if it isn't repeated
+   */
+  public int getRepeatCount() {
+    return record.getRepeatCount();
+  }
+
+  /**
+   * @return the time of the last repeat, the time of the record if it isn't repeated
+   */
+  public long getLastMillis() {
+    return record.getLastMillis();
+  }
+
+  @Override
+  public String getMessage() {
+    if (!formatted) {
+      formatted = true;
+      super.setMessage(record.appendRepeats(MessageFormatter.arrayFormat(pattern, arguments, null).getMessage()));
+    }
+    return super.getMessage();
+  }
+
+  @Override
+  public void setMessage(String message) {
+    formatted = true;
+    super.setMessage(message);
+  }
+}
@@ -23,32 +23,59 @@
  */
 package org.slf4gwt.remote.batching.server;
 
-import com.google.gwt.core.server.StackTraceDeobfuscator;
-import com.google.gwt.logging.server.RemoteLoggingServiceUtil;
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 import org.slf4gwt.remote.batching.shared.RemoteBatchLoggingService;
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteStructuredLoggingService;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
-import java.util.Objects;
-import java.util.logging.Level;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.LogRecord;
-import java.util.logging.Logger;
 
 /**
  * Server-side code for the remote batch log handler.
+ *
+ * The batches are checked on the thread of the request and logged by the workers of the {@link RemoteLogPublisher},
+ * which log the batches of a session in their order. A structured batch that arrived before its predecessors is held
+ * until they are logged (see {@link OrderedBatchLogger}). If the workers are overloaded, the batch is rejected with the
+ * status 503 and the client sends it again later.
  */
-public class RemoteBatchLoggingServiceImpl extends RemoteServiceServlet implements RemoteBatchLoggingService {
+public class RemoteBatchLoggingServiceImpl extends RemoteServiceServlet
+    implements RemoteBatchLoggingService, RemoteStructuredLoggingService {
 
-  private static final Logger logger = Logger.getLogger(RemoteServiceServlet.class.getName());
+  private final RemoteLogPublisher publisher = new RemoteLogPublisher();
 
-  // No deobfuscator by default
-  private StackTraceDeobfuscator deobfuscator = null;
-  private String loggerNameOverride = null;
+  private final OrderedBatchLogger batchLogger = new OrderedBatchLogger(publisher);
 
   @Override
   public String logOnServer(List<LogRecord> logRecords) {
     if (logRecords != null) {
-      return logRecords.stream().map(this::logOnServer).filter(Objects::nonNull).findFirst().orElse(null);
+      // the lists of a client are only ordered if it has a session
+      HttpSession session = getThreadLocalRequest().getSession(false);
+      return session != null
+          ? publisher.publish(logRecords, getPermutationStrongName(), session.getId())
+          : publisher.publish(logRecords, getPermutationStrongName());
+    }
+
+    return null;
+  }
+
+  @Override
+  public String logStructuredOnServer(RemoteLogBatch batch) {
+    if (batch != null && batch.getRecords() != null) {
+      HttpSession session = getThreadLocalRequest().getSession();
+      LogDictionary dictionary = LogDictionary.forKey(session, batch.getDictionaryKey());
+      try {
+        return batchLogger.log(dictionary, batch.getSequence(), batch.getDictionarySize(), getPermutationStrongName(),
+                session.getId(), OrderedBatchLogger.source(batch.getRecords()));
+      } catch (IOException e) {
+        // the records are in memory already
+        throw new UncheckedIOException(e);
+      }
     }
 
     return null;
@@ -60,15 +87,7 @@ public class RemoteBatchLoggingServiceImpl extends RemoteServiceServlet implemen
    */
   @Override
   public String logOnServer(LogRecord lr) {
-    String strongName = getPermutationStrongName();
-    try {
-      RemoteLoggingServiceUtil.logOnServer(
-              lr, strongName, deobfuscator, loggerNameOverride);
-    } catch (RemoteLoggingServiceUtil.RemoteLoggingException e) {
-      logger.log(Level.SEVERE, "Remote logging failed", e);
-      return "Remote logging failed, check stack trace for details.";
-    }
-    return null;
+    return publisher.publish(lr, getPermutationStrongName());
   }
 
   /**
@@ -78,7 +97,7 @@ public class RemoteBatchLoggingServiceImpl extends RemoteServiceServlet implemen
    * using this method.
    */
   public void setLoggerNameOverride(String override) {
-    loggerNameOverride = override;
+    publisher.setLoggerNameOverride(override);
   }
 
   /**
@@ -87,6 +106,91 @@ public class RemoteBatchLoggingServiceImpl extends RemoteServiceServlet implemen
    * directory visible to the server and set the directory using this method.
    */
   public void setSymbolMapsDirectory(String symbolMapsDir) {
-    deobfuscator = StackTraceDeobfuscator.fromFileSystem(symbolMapsDir);
+    publisher.setSymbolMapsDirectory(symbolMapsDir);
+  }
+
+  /**
+   * Deobfuscates with the symbol indexes the {@code org.slf4gwt.remote.batching.SymbolIndex} module writes, instead of
+   * the symbolMaps files. The indexes are mapped into memory and don't need heap, copy them to a directory visible to
+   * the server and set the directory using this method.
+   */
+  public void setSymbolIndexDirectory(String symbolIndexDir) {
+    publisher.setSymbolIndexDirectory(symbolIndexDir);
+  }
+
+  /**
+   * Aggregates the warnings and errors of the clients in windows of the given length, 0 by default, which disables the
+   * aggregation. The first record of an error is logged in full, the later records of the same error as a summary at
+   * the end of each window, so the number of records logged depends on the number of errors, not on the number of
+   * clients.
+   *
+   * @see ErrorAggregator
+   */
+  public void setAggregationWindowMillis(long windowMillis) {
+    publisher.setAggregationWindowMillis(windowMillis);
+  }
+
+  /**
+   * Sets the memory budget of the cache of deobfuscated stack frames in estimated bytes, 16 MB by default. 0 disables
+   * the cache.
+   */
+  public void setFrameCacheBytes(long frameCacheBytes) {
+    publisher.setFrameCacheBytes(frameCacheBytes);
+  }
+
+  /**
+   * @return the cache of deobfuscated stack frames with its hit rate, or null if it is disabled
+   */
+  public DeobfuscatedFrameCache getFrameCache() {
+    return publisher.getFrameCache();
+  }
+
+  /**
+   * Sets the number of threads that log the batches, 2 by default. With 0 threads the batches are logged by the
+   * thread of the request. A change applies to the running workers, with 0 threads they stop after the queued batches.
+   */
+  public void setWorkerThreads(int workerThreads) {
+    publisher.setWorkerThreads(workerThreads);
+  }
+
+  /**
+   * Sets the number of batches that may wait for the workers, 1000 by default. A change applies to the next batch.
+   */
+  public void setQueueCapacity(int queueCapacity) {
+    publisher.setQueueCapacity(queueCapacity);
+  }
+
+  /**
+   * Sets what happens to a batch if the queue of the workers is full, {@link RemoteLogPublisher.OverloadPolicy#REJECT}
+   * by default.
+   */
+  public void setOverloadPolicy(RemoteLogPublisher.OverloadPolicy overloadPolicy) {
+    publisher.setOverloadPolicy(overloadPolicy);
+  }
+
+  @Override
+  protected void doUnexpectedFailure(Throwable e) {
+    Throwable cause = e;
+    while (cause.getCause() != null && !(cause instanceof RejectedExecutionException)) {
+      cause = cause.getCause();
+    }
+    if (!(cause instanceof RejectedExecutionException)) {
+      super.doUnexpectedFailure(e);
+      return;
+    }
+
+    // the client retries the batch, no need to log the overload with a stack trace
+    try {
+      getThreadLocalResponse().sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, cause.getMessage());
+    } catch (IOException ioException) {
+      super.doUnexpectedFailure(e);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    batchLogger.shutdown();
+    publisher.shutdown();
+    super.destroy();
   }
 }
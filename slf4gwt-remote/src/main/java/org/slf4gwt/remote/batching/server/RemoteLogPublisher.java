@@ -0,0 +1,555 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import com.google.gwt.core.server.StackTraceDeobfuscator;
+
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * logs the records of the clients on the server.
+ *
+ * All transports of the remote batch log handler hand their records to a publisher, so they are deobfuscated and
+ * logged the same way.
+ *
+ * The records of a batch are logged by a pool of worker threads, so the request is acknowledged as soon as the batch
+ * is queued and the threads of the container don't wait for the log I/O. The batches of a session are queued one
+ * after the other and logged by a single task at a time, so they are logged in the order they were published, while
+ * the batches of different sessions are logged in parallel. The number of queued batches is bounded. If the bound is
+ * reached, the {@link OverloadPolicy} decides whether the batch is rejected or logged by the thread of the request.
+ * {@link #shutdown()} logs the queued batches before it returns.
+ *
+ * The strong name, the deobfuscator and the loggers are looked up once per batch (see {@link BatchContext}), not for
+ * every record. The deobfuscated stack frames are kept in a {@link DeobfuscatedFrameCache}, so the same error of many
+ * clients is resymbolized only once.
+ *
+ * With an aggregation window, the records of the same error are aggregated by an {@link ErrorAggregator}: the first
+ * one is logged in full, the later ones as a summary at the end of each window.
+ */
+public class RemoteLogPublisher {
+
+  /**
+   * what happens to a batch if the queue of the workers is full.
+   */
+  public enum OverloadPolicy {
+    /** reject the batch, the client sends it again after a delay */
+    REJECT,
+    /**
+     * log the batch on the thread of the request, which slows the client down. If earlier batches of the same session
+     * are queued, the thread waits for room in the queue instead, so the batches stay in order and the queue bounded.
+     */
+    CALLER_RUNS
+  }
+
+  private static final Logger logger = Logger.getLogger(RemoteLogPublisher.class.getName());
+
+  private static final String FAILED = "Remote logging failed, check stack trace for details.";
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+  /** the number of records that are queued together if a batch is published while it is read */
+  private static final int CHUNK_RECORDS = 256;
+
+  private static final long DEFAULT_FRAME_CACHE_BYTES = 16 * 1024 * 1024;
+
+  /** the maximum number of errors that are aggregated at once */
+  private static final int MAX_AGGREGATED_ERRORS = 10000;
+
+  /** the number of deobfuscated stack frames that identify an error */
+  private static final int FINGERPRINT_FRAMES = 5;
+
+  // No deobfuscator by default
+  private volatile StackTraceResymbolizer deobfuscator = null;
+  private volatile String loggerNameOverride = null;
+
+  /** null if the frames aren't cached */
+  private volatile DeobfuscatedFrameCache frameCache = new DeobfuscatedFrameCache(DEFAULT_FRAME_CACHE_BYTES);
+
+  private int workerThreads = 2;
+  private int queueCapacity = 1000;
+  private volatile OverloadPolicy overloadPolicy = OverloadPolicy.REJECT;
+
+  /** the workers, created with the first batch */
+  private ThreadPoolExecutor executor;
+
+  /** the workers that have been stopped and may still log queued batches, {@link #shutdown()} waits for them */
+  private final ArrayList<ThreadPoolExecutor> stoppedExecutors = new ArrayList<>();
+
+  /** the queues of the sessions that have batches waiting or being logged */
+  private final HashMap<Object, SessionQueue> sessionQueues = new HashMap<>();
+
+  /** the number of batches waiting in the queues of the sessions */
+  private int queuedBatches;
+
+  /** null if the records aren't aggregated */
+  private volatile ErrorAggregator aggregator;
+
+  /** ends the windows of the aggregator */
+  private ScheduledExecutorService aggregationTimer;
+
+  /**
+   * the state that all records of a batch share: the permutation of the client, its deobfuscator and the loggers the
+   * records are logged to.
+   */
+  private static final class BatchContext {
+
+    private final String strongName;
+    /** null if the batch isn't deobfuscated */
+    private final StackTraceResymbolizer deobfuscator;
+    /** null if the frames aren't cached */
+    private final DeobfuscatedFrameCache frameCache;
+    /** null if the records aren't aggregated */
+    private final ErrorAggregator aggregator;
+    private final String loggerNameOverride;
+    private final HashMap<String, Logger> loggers = new HashMap<>();
+
+    BatchContext(String strongName, StackTraceResymbolizer deobfuscator, DeobfuscatedFrameCache frameCache,
+                 ErrorAggregator aggregator, String loggerNameOverride) {
+      this.strongName = strongName;
+      // without the strong name the symbol maps can't be found
+      this.deobfuscator = strongName != null ? deobfuscator : null;
+      this.frameCache = frameCache;
+      this.aggregator = aggregator;
+      this.loggerNameOverride = loggerNameOverride;
+    }
+
+    /**
+     * @return either an error message, or null if logging is successful.
+     */
+    String publish(LogRecord lr) {
+      try {
+        if (deobfuscator != null && lr.getThrown() != null) {
+          if (frameCache != null) {
+            frameCache.deobfuscateStackTrace(deobfuscator, lr.getThrown(), strongName);
+          } else {
+            deobfuscator.deobfuscateStackTrace(lr.getThrown(), strongName);
+          }
+        }
+        if (aggregator != null && !aggregator.admit(lr)) {
+          // counted for the summary of the window
+          return null;
+        }
+        getLogger(loggerNameOverride == null ? lr.getLoggerName() : loggerNameOverride).log(lr);
+      } catch (RuntimeException e) {
+        logger.log(Level.SEVERE, "Remote logging failed", e);
+        return FAILED;
+      }
+      return null;
+    }
+
+    /**
+     * @return either the first error message, or null if logging is successful.
+     */
+    String publishAll(List<? extends LogRecord> records) {
+      String result = null;
+      for (LogRecord record : records) {
+        String recordResult = publish(record);
+        if (result == null) {
+          result = recordResult;
+        }
+      }
+      return result;
+    }
+
+    private Logger getLogger(String name) {
+      Logger target = loggers.get(name);
+      if (target == null) {
+        target = Logger.getLogger(name);
+        loggers.put(name, target);
+      }
+      return target;
+    }
+  }
+
+  /**
+   * the batches of a session that wait to be logged. A single task logs them in their order and removes the queue
+   * when it is empty, so a queue exists while its batches are being logged.
+   */
+  private final class SessionQueue implements Runnable {
+
+    private final Object sessionKey;
+    /** guarded by the publisher */
+    private final ArrayDeque<Runnable> batches = new ArrayDeque<>();
+
+    SessionQueue(Object sessionKey) {
+      this.sessionKey = sessionKey;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Runnable batch;
+        synchronized (RemoteLogPublisher.this) {
+          batch = batches.poll();
+          // callers may wait for room in the queue or for the end of this session's queue
+          RemoteLogPublisher.this.notifyAll();
+          if (batch == null) {
+            sessionQueues.remove(sessionKey);
+            return;
+          }
+          queuedBatches--;
+        }
+        batch.run();
+      }
+    }
+  }
+
+  /**
+   * publishes the records of a batch while it is read, in chunks of {@link #CHUNK_RECORDS} records, so the batch is
+   * never held in memory as a whole. Only the first chunk can be rejected, the later ones wait for room in the queue
+   * like with {@link OverloadPolicy#CALLER_RUNS}, so an accepted batch isn't rejected halfway.
+   */
+  final class Publication {
+
+    private final BatchContext context;
+    private final Object sessionKey;
+    private OverloadPolicy policy;
+    private ArrayList<LogRecord> chunk = new ArrayList<>();
+    private String result;
+
+    Publication(BatchContext context, Object sessionKey, OverloadPolicy policy) {
+      this.context = context;
+      this.sessionKey = sessionKey;
+      this.policy = policy;
+    }
+
+    /**
+     * @throws RejectedExecutionException if the queue is full and the policy is {@link OverloadPolicy#REJECT}
+     */
+    void add(LogRecord record) {
+      chunk.add(record);
+      if (chunk.size() >= CHUNK_RECORDS) {
+        submitChunk();
+      }
+    }
+
+    /**
+     * Publishes the rest of the batch.
+     *
+     * @return either the first error message, or null if logging is successful or the batch has been queued.
+     * @throws RejectedExecutionException if the queue is full and the policy is {@link OverloadPolicy#REJECT}
+     */
+    String finish() {
+      if (!chunk.isEmpty()) {
+        submitChunk();
+      }
+      return result;
+    }
+
+    private void submitChunk() {
+      String chunkResult = submit(context, chunk, sessionKey, policy);
+      if (result == null) {
+        result = chunkResult;
+      }
+      chunk = new ArrayList<>();
+      policy = OverloadPolicy.CALLER_RUNS;
+    }
+  }
+
+  /**
+   * Logs a record of a client on the server.
+   *
+   * @param lr the record
+   * @param strongName the strong name of the permutation of the client, used for deobfuscation
+   * @return either an error message, or null if logging is successful.
+   */
+  public String publish(LogRecord lr, String strongName) {
+    return newBatchContext(strongName).publish(lr);
+  }
+
+  /**
+   * Logs all records of a batch, even if some of them fail. The batch is logged by the workers, unless there are none.
+   *
+   * @param records the records of the batch
+   * @param strongName the strong name of the permutation of the client, used for deobfuscation
+   * @return either an error message, or null if logging is successful or the batch has been queued.
+   * @throws RejectedExecutionException if the queue is full and the policy is {@link OverloadPolicy#REJECT}
+   */
+  public String publish(List<? extends LogRecord> records, String strongName) {
+    return publish(records, strongName, new Object());
+  }
+
+  /**
+   * Logs all records of a batch after the batches published before for the same session, even if some of them fail.
+   * The batch is logged by the workers, unless there are none.
+   *
+   * @param records the records of the batch
+   * @param strongName the strong name of the permutation of the client, used for deobfuscation
+   * @param sessionKey the key of the session, e.g. its id
+   * @return either an error message, or null if logging is successful or the batch has been queued.
+   * @throws RejectedExecutionException if the queue is full and the policy is {@link OverloadPolicy#REJECT}
+   */
+  public String publish(List<? extends LogRecord> records, String strongName, Object sessionKey) {
+    return submit(newBatchContext(strongName), records, sessionKey, overloadPolicy);
+  }
+
+  /**
+   * Queues a batch behind the batches of its session. If the queue is full, the batch is rejected, or with
+   * {@link OverloadPolicy#CALLER_RUNS} logged by the calling thread as soon as no batch of its session is queued.
+   */
+  private String submit(BatchContext context, List<? extends LogRecord> records, Object sessionKey,
+                        OverloadPolicy policy) {
+    SessionQueue callerRuns;
+    synchronized (this) {
+      while (true) {
+        ThreadPoolExecutor workers = getExecutor();
+        SessionQueue sessionQueue = sessionQueues.get(sessionKey);
+        if (workers == null && sessionQueue == null) {
+          callerRuns = null;
+          break;
+        }
+
+        if (queuedBatches < queueCapacity) {
+          if (sessionQueue == null) {
+            sessionQueue = new SessionQueue(sessionKey);
+            sessionQueues.put(sessionKey, sessionQueue);
+            workers.execute(sessionQueue);
+          }
+          sessionQueue.batches.add(() -> context.publishAll(records));
+          queuedBatches++;
+          return null;
+        }
+
+        if (policy == OverloadPolicy.REJECT) {
+          throw new RejectedExecutionException("The remote log queue is full");
+        }
+        if (sessionQueue == null) {
+          // the batches of the session that are published meanwhile are queued behind this one
+          callerRuns = new SessionQueue(sessionKey);
+          sessionQueues.put(sessionKey, callerRuns);
+          break;
+        }
+
+        // earlier batches of the session are queued, wait for room in the queue to keep them in order
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RejectedExecutionException("Interrupted while waiting for the remote log queue");
+        }
+      }
+    }
+
+    String result = context.publishAll(records);
+    if (callerRuns != null) {
+      callerRuns.run();
+    }
+    return result;
+  }
+
+  /**
+   * Starts to publish a batch while it is read.
+   *
+   * @param strongName the strong name of the permutation of the client, used for deobfuscation
+   * @param sessionKey the key of the session, e.g. its id, or null if the batch doesn't have to be logged in order
+   */
+  Publication open(String strongName, Object sessionKey) {
+    return open(strongName, sessionKey, overloadPolicy);
+  }
+
+  /**
+   * @param policy what happens to the batch if the queue is full, regardless of the policy of the publisher
+   * @see #open(String, Object)
+   */
+  Publication open(String strongName, Object sessionKey, OverloadPolicy policy) {
+    return new Publication(newBatchContext(strongName), sessionKey != null ? sessionKey : new Object(), policy);
+  }
+
+  private BatchContext newBatchContext(String strongName) {
+    return new BatchContext(strongName, deobfuscator, frameCache, aggregator, loggerNameOverride);
+  }
+
+  private synchronized ThreadPoolExecutor getExecutor() {
+    if (executor == null && workerThreads > 0) {
+      // the pool only queues the tasks of the sessions, the batches are bounded by the queue capacity
+      executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(), daemonThreads("slf4gwt-remote-log-"));
+    }
+    return executor;
+  }
+
+  static ThreadFactory daemonThreads(String namePrefix) {
+    AtomicInteger threadNumber = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Logs the summaries of the aggregated records and starts a new window.
+   */
+  private void flushAggregates() {
+    ErrorAggregator currentAggregator = aggregator;
+    if (currentAggregator != null) {
+      // the summaries are logged as they are, without deobfuscation and aggregation
+      new BatchContext(null, null, null, null, loggerNameOverride).publishAll(currentAggregator.flush());
+    }
+  }
+
+  /**
+   * Stops the workers after they logged the queued batches, later batches are logged by the thread of the request.
+   * The summaries of the aggregated records are logged, later records aren't aggregated.
+   */
+  public void shutdown() {
+    ArrayList<ThreadPoolExecutor> workers;
+    synchronized (this) {
+      setWorkerThreads(0);
+      workers = new ArrayList<>(stoppedExecutors);
+      stoppedExecutors.clear();
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+    try {
+      for (ThreadPoolExecutor stoppedWorkers : workers) {
+        if (!stoppedWorkers.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+          logger.warning("Remote log queue not drained within " + SHUTDOWN_TIMEOUT_SECONDS + " seconds");
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    setAggregationWindowMillis(0);
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setLoggerNameOverride(String)
+   */
+  public void setLoggerNameOverride(String override) {
+    loggerNameOverride = override;
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setSymbolMapsDirectory(String)
+   */
+  public void setSymbolMapsDirectory(String symbolMapsDir) {
+    setDeobfuscator(StackTraceDeobfuscator.fromFileSystem(symbolMapsDir)::resymbolize);
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setSymbolIndexDirectory(String)
+   */
+  public void setSymbolIndexDirectory(String symbolIndexDir) {
+    setDeobfuscator(new SymbolIndexDeobfuscator(Paths.get(symbolIndexDir)));
+  }
+
+  private void setDeobfuscator(StackTraceResymbolizer deobfuscator) {
+    this.deobfuscator = deobfuscator;
+    DeobfuscatedFrameCache cache = frameCache;
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setAggregationWindowMillis(long)
+   */
+  public synchronized void setAggregationWindowMillis(long windowMillis) {
+    if (aggregationTimer != null) {
+      aggregationTimer.shutdownNow();
+      aggregationTimer = null;
+      ErrorAggregator lastAggregator = aggregator;
+      aggregator = null;
+      // the batches that are being logged may still refer to it
+      new BatchContext(null, null, null, null, loggerNameOverride).publishAll(lastAggregator.close());
+    }
+
+    if (windowMillis > 0) {
+      aggregator = new ErrorAggregator(MAX_AGGREGATED_ERRORS, FINGERPRINT_FRAMES, Level.WARNING);
+      aggregationTimer = Executors.newSingleThreadScheduledExecutor(daemonThreads("slf4gwt-remote-log-aggregation-"));
+      aggregationTimer.scheduleAtFixedRate(this::flushAggregates, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setFrameCacheBytes(long)
+   */
+  public void setFrameCacheBytes(long frameCacheBytes) {
+    frameCache = frameCacheBytes > 0 ? new DeobfuscatedFrameCache(frameCacheBytes) : null;
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#getFrameCache()
+   */
+  public DeobfuscatedFrameCache getFrameCache() {
+    return frameCache;
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setWorkerThreads(int)
+   */
+  public synchronized void setWorkerThreads(int workerThreads) {
+    this.workerThreads = workerThreads;
+    if (executor == null) {
+      return;
+    }
+
+    if (workerThreads <= 0) {
+      // the workers log the queued batches, the later ones are logged by the threads of the requests
+      executor.shutdown();
+      stoppedExecutors.removeIf(ThreadPoolExecutor::isTerminated);
+      stoppedExecutors.add(executor);
+      executor = null;
+    } else if (workerThreads > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(workerThreads);
+      executor.setCorePoolSize(workerThreads);
+    } else {
+      executor.setCorePoolSize(workerThreads);
+      executor.setMaximumPoolSize(workerThreads);
+    }
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setQueueCapacity(int)
+   */
+  public synchronized void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+    // callers may wait for room in the queue
+    notifyAll();
+  }
+
+  /**
+   * @see RemoteBatchLoggingServiceImpl#setOverloadPolicy(OverloadPolicy)
+   */
+  public synchronized void setOverloadPolicy(OverloadPolicy overloadPolicy) {
+    this.overloadPolicy = overloadPolicy;
+  }
+}
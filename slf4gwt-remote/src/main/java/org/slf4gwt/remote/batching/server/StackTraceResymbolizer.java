@@ -0,0 +1,49 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+/**
+ * replaces the obfuscated stack frames of a client with the frames of the Java source.
+ *
+ * @see SymbolIndexDeobfuscator
+ * @see com.google.gwt.core.server.StackTraceDeobfuscator
+ */
+public interface StackTraceResymbolizer {
+
+  /**
+   * @param frames the obfuscated frames
+   * @param strongName the strong name of the permutation of the client
+   * @return the resymbolized frames, the obfuscated frame where it can't be resymbolized
+   */
+  StackTraceElement[] resymbolize(StackTraceElement[] frames, String strongName);
+
+  /**
+   * Replaces the stack traces of a throwable and its causes with the resymbolized ones.
+   */
+  default void deobfuscateStackTrace(Throwable throwable, String strongName) {
+    for (Throwable t = throwable; t != null; t = t.getCause()) {
+      t.setStackTrace(resymbolize(t.getStackTrace(), strongName));
+    }
+  }
+}
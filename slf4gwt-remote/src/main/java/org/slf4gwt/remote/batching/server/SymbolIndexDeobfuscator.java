@@ -0,0 +1,199 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * resymbolizes stack frames with the symbol indexes of the {@link org.slf4gwt.remote.batching.linker.SymbolIndexLinker}.
+ *
+ * The index of a permutation is mapped into memory when its first frame is resymbolized, and a symbol is found by
+ * binary search in the mapped file. So the symbol maps aren't parsed and kept on the heap, and many permutations of
+ * several releases can be served at once. The frames are resolved like the {@code StackTraceDeobfuscator} does with
+ * the symbol maps, source maps aren't used.
+ */
+public class SymbolIndexDeobfuscator implements StackTraceResymbolizer {
+
+  private static final Logger logger = Logger.getLogger(SymbolIndexDeobfuscator.class.getName());
+
+  /** strong names are hex strings, anything else mustn't become a file name */
+  private static final Pattern STRONG_NAME_PATTERN = Pattern.compile("[0-9A-Za-z_]+");
+
+  private static final int LINE_NUMBER_UNKNOWN = -1;
+
+  /** the index of a permutation without index file */
+  private static final ByteBuffer MISSING = ByteBuffer.allocate(0);
+
+  private final Path directory;
+
+  private final ConcurrentHashMap<String, ByteBuffer> indexes = new ConcurrentHashMap<>();
+
+  /**
+   * @param directory the directory with the symbol index files
+   */
+  public SymbolIndexDeobfuscator(Path directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public StackTraceElement[] resymbolize(StackTraceElement[] frames, String strongName) {
+    StackTraceElement[] resolved = new StackTraceElement[frames.length];
+    ByteBuffer index = strongName != null ? index(strongName) : MISSING;
+    for (int i = 0; i < frames.length; i++) {
+      resolved[i] = index != MISSING ? resymbolize(index, frames[i]) : frames[i];
+    }
+    return resolved;
+  }
+
+  /**
+   * Forgets the index of a permutation, e.g. after its release has been retired. It is mapped again if it is needed.
+   * The file stays mapped until the garbage collector frees the buffer, unmapping it while another request still reads
+   * it would crash the JVM.
+   */
+  public void evictPermutation(String strongName) {
+    indexes.remove(strongName);
+  }
+
+  private ByteBuffer index(String strongName) {
+    ByteBuffer index = indexes.get(strongName);
+    if (index == null) {
+      index = indexes.computeIfAbsent(strongName, this::map);
+    }
+    return index;
+  }
+
+  private ByteBuffer map(String strongName) {
+    if (!STRONG_NAME_PATTERN.matcher(strongName).matches()) {
+      return MISSING;
+    }
+
+    Path file = directory.resolve(strongName + SymbolIndexFormat.FILE_SUFFIX);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (index.limit() < SymbolIndexFormat.HEADER_SIZE || index.getInt(0) != SymbolIndexFormat.MAGIC
+              || index.getInt(4) != SymbolIndexFormat.VERSION) {
+        logger.warning("Invalid symbol index " + file);
+        return MISSING;
+      }
+      return index;
+    } catch (NoSuchFileException e) {
+      return MISSING;
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Unable to map the symbol index " + file, e);
+      return MISSING;
+    }
+  }
+
+  private static StackTraceElement resymbolize(ByteBuffer index, StackTraceElement frame) {
+    if (frame.getMethodName() == null) {
+      return frame;
+    }
+    int entry = find(index, frame.getMethodName().getBytes(StandardCharsets.UTF_8));
+    if (entry == -1) {
+      return frame;
+    }
+
+    String declaringClass = readString(index, index.getInt(entry + 4));
+    String methodName = readString(index, index.getInt(entry + 8));
+    if (declaringClass == null || methodName == null) {
+      declaringClass = frame.getClassName();
+      methodName = frame.getMethodName();
+    }
+
+    // a java file name comes from the emulated stack and is exact
+    String fileName = frame.getFileName();
+    if (fileName == null || !fileName.endsWith(".java")) {
+      fileName = readString(index, index.getInt(entry + 12));
+    }
+
+    int lineNumber = frame.getLineNumber();
+    if (lineNumber == LINE_NUMBER_UNKNOWN) {
+      lineNumber = index.getInt(entry + 16);
+    }
+    return new StackTraceElement(declaringClass, methodName, fileName, lineNumber);
+  }
+
+  /**
+   * @return the position of the entry of the symbol, or -1 if there is none
+   */
+  private static int find(ByteBuffer index, byte[] symbol) {
+    int low = 0;
+    int high = index.getInt(8) - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int entry = SymbolIndexFormat.HEADER_SIZE + middle * SymbolIndexFormat.ENTRY_SIZE;
+      int result = compare(index, index.getInt(entry), symbol);
+      if (result < 0) {
+        low = middle + 1;
+      } else if (result > 0) {
+        high = middle - 1;
+      } else {
+        return entry;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Compares a string of the pool with a symbol without copying it.
+   */
+  private static int compare(ByteBuffer index, int offset, byte[] symbol) {
+    int position = stringPosition(index, offset);
+    int length = index.getInt(position);
+    int common = Math.min(length, symbol.length);
+    for (int i = 0; i < common; i++) {
+      int result = (index.get(position + 4 + i) & 0xff) - (symbol[i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return length - symbol.length;
+  }
+
+  private static String readString(ByteBuffer index, int offset) {
+    if (offset == -1) {
+      return null;
+    }
+    int position = stringPosition(index, offset);
+    byte[] bytes = new byte[index.getInt(position)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = index.get(position + 4 + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int stringPosition(ByteBuffer index, int offset) {
+    return SymbolIndexFormat.HEADER_SIZE + index.getInt(8) * SymbolIndexFormat.ENTRY_SIZE + offset;
+  }
+}
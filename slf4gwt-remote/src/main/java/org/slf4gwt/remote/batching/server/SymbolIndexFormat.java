@@ -0,0 +1,68 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+/**
+ * the binary symbol index of a permutation, written by the
+ * {@link org.slf4gwt.remote.batching.linker.SymbolIndexLinker} and read by the {@link SymbolIndexDeobfuscator}.
+ *
+ * All numbers are big endian ints. The file starts with the {@link #MAGIC}, the {@link #VERSION} and the number of
+ * entries, followed by the entries and the string pool. An entry has {@value #ENTRY_SIZE} bytes: the offsets of the
+ * obfuscated method name, the class name, the method name and the file name in the string pool, the line of the method
+ * and the fragment number. An offset of -1 stands for null. A string in the pool is written as the number of its UTF-8
+ * bytes, followed by the bytes.
+ *
+ * The entries hold the methods of the symbol map and are sorted by the UTF-8 bytes of the obfuscated name, compared
+ * unsigned, so a symbol is found by binary search.
+ */
+public final class SymbolIndexFormat {
+
+  public static final int MAGIC = 0x53344749;
+
+  public static final int VERSION = 1;
+
+  public static final int HEADER_SIZE = 12;
+
+  public static final int ENTRY_SIZE = 24;
+
+  /** the suffix of the file name, which starts with the strong name of the permutation */
+  public static final String FILE_SUFFIX = ".symbolIndex";
+
+  private SymbolIndexFormat() {
+  }
+
+  /**
+   * @return the comparison of two UTF-8 byte sequences, compared unsigned
+   */
+  public static int compare(byte[] a, byte[] b) {
+    int length = Math.min(a.length, b.length);
+    for (int i = 0; i < length; i++) {
+      int result = (a[i] & 0xff) - (b[i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return a.length - b.length;
+  }
+}
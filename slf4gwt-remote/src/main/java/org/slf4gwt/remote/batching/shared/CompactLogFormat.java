@@ -0,0 +1,74 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.shared;
+
+/**
+ * the compact format of remote log batches, an alternative to GWT RPC.
+ *
+ * The format is text, so the client can send it with a plain XMLHttpRequest and the server can read it record by
+ * record from the request:
+ * <ul>
+ *   <li>a number is written in base 36 and ends with {@value #NUMBER_END}</li>
+ *   <li>a string is written as its length in base 36, {@value #STRING_START} and its characters. Null is written as
+ *   the length -1</li>
+ * </ul>
+ * A batch starts with the {@link #VERSION}, the dictionary key, the dictionary size and the sequence number of the
+ * {@link RemoteLogBatch}, followed by its records. A batch with an empty dictionary key doesn't use a dictionary, all its ids are -1.
+ *
+ * A record is written as the int value of its level, the logger name id, the logger name if the id is -1, the millis
+ * as difference to the previous record of the batch, the repeat count, the millis of the last repeat as difference to
+ * the millis if the repeat count is greater than 1, the message id, the message if the id is -1, the number of
+ * arguments or -1, the arguments and the throwable.
+ *
+ * A throwable is written as 0 if there is none, otherwise as 1, the designated type, 1 if the designated type is
+ * exact else 0, the message, the number of stack frames, each frame as class name, method name, file name and line
+ * number, and the cause as throwable.
+ *
+ * The reader rejects batches with more than {@link #MAX_ELEMENTS} arguments or stack frames per record, more than
+ * {@link #MAX_CAUSES} nested causes or levels other than the standard JUL levels. The writer truncates stack traces and
+ * cause chains to these limits.
+ */
+public final class CompactLogFormat {
+
+  public static final int VERSION = 2;
+
+  public static final char NUMBER_END = ',';
+
+  public static final char STRING_START = ':';
+
+  /** the maximum number of arguments or stack frames of a record, to bound the memory of a malformed batch */
+  public static final int MAX_ELEMENTS = 4096;
+
+  /** the maximum number of nested causes of a throwable */
+  public static final int MAX_CAUSES = 32;
+
+  /** the request parameter with the strong name of the permutation, for requests that can't set headers */
+  public static final String STRONG_NAME_PARAMETER = "strongName";
+
+  /** the content type of compact batches */
+  public static final String CONTENT_TYPE = "text/plain; charset=utf-8";
+
+  private CompactLogFormat() {
+  }
+}
@@ -0,0 +1,269 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.shared;
+
+import com.google.gwt.core.shared.SerializableThrowable;
+
+import java.io.IOException;
+import java.util.logging.Level;
+
+/**
+ * reads a remote log batch in the {@link CompactLogFormat} record by record.
+ *
+ * The server reads the batches of the requests, the client the records it saved in the browser storage.
+ */
+public class CompactLogReader {
+
+  /**
+   * the characters of a batch, with the semantics of {@code java.io.Reader}.
+   */
+  public interface Input {
+
+    int read() throws IOException;
+
+    int read(char[] buffer, int offset, int length) throws IOException;
+  }
+
+  /**
+   * input of a batch in a string.
+   */
+  public static class StringInput implements Input {
+
+    private final String value;
+    private int position;
+
+    public StringInput(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public int read() {
+      return position < value.length() ? value.charAt(position++) : -1;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+      if (position >= value.length()) {
+        return -1;
+      }
+      int count = Math.min(length, value.length() - position);
+      value.getChars(position, position + count, buffer, offset);
+      position += count;
+      return count;
+    }
+  }
+
+  private static final int BUFFER_SIZE = 1024;
+
+  private static final Level[] LEVELS = { Level.OFF, Level.SEVERE, Level.WARNING, Level.INFO, Level.CONFIG, Level.FINE,
+                                          Level.FINER, Level.FINEST, Level.ALL };
+
+  /** the maximum length of a number, a long has at most 13 digits in base 36 */
+  private static final int MAX_NUMBER_LENGTH = 14;
+
+  private final Input in;
+  private final String dictionaryKey;
+  private final int dictionarySize;
+  private final int sequence;
+  private long millis;
+
+  /**
+   * Creates a reader and reads the header of the batch.
+   *
+   * @param in the input of the batch, should be buffered
+   * @throws IOException if the batch can't be read
+   */
+  public CompactLogReader(Input in) throws IOException {
+    this.in = in;
+
+    int version = readNumber();
+    if (version != CompactLogFormat.VERSION) {
+      throw new IOException("Unsupported compact log format version " + version);
+    }
+    dictionaryKey = readString();
+    dictionarySize = readNumber();
+    sequence = readNumber();
+  }
+
+  public String getDictionaryKey() {
+    return dictionaryKey;
+  }
+
+  public int getDictionarySize() {
+    return dictionarySize;
+  }
+
+  public int getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @return the next record or null at the end of the batch
+   * @throws IOException if the record can't be read
+   */
+  public RemoteLogRecord next() throws IOException {
+    String levelValue = readToken(CompactLogFormat.NUMBER_END, true);
+    if (levelValue == null) {
+      return null;
+    }
+    String level = levelName((int) parseLong(levelValue, Integer.MIN_VALUE, Integer.MAX_VALUE));
+
+    int loggerNameId = readNumber();
+    String loggerName = loggerNameId == -1 ? readString() : null;
+    millis += readLong();
+    int repeatCount = (int) parseLong(readToken(CompactLogFormat.NUMBER_END, false), 1, Integer.MAX_VALUE);
+    long lastMillis = repeatCount > 1 ? millis + readLong() : millis;
+    int messageId = readNumber();
+    String message = messageId == -1 ? readString() : null;
+
+    String[] arguments = null;
+    int argumentCount = readCount(-1);
+    if (argumentCount >= 0) {
+      arguments = new String[argumentCount];
+      for (int i = 0; i < argumentCount; i++) {
+        arguments[i] = readString();
+      }
+    }
+
+    RemoteLogRecord record = new RemoteLogRecord(level, loggerName, loggerNameId, millis, message, messageId,
+            arguments, readThrowable());
+    record.setRepeats(repeatCount, lastMillis);
+    return record;
+  }
+
+  /**
+   * Reads a throwable and its causes. The causes are read in a loop, so a deeply nested batch can't overflow the stack.
+   */
+  private SerializableThrowable readThrowable() throws IOException {
+    SerializableThrowable first = null;
+    SerializableThrowable last = null;
+    for (int depth = 0; readNumber() != 0; depth++) {
+      if (depth > CompactLogFormat.MAX_CAUSES) {
+        throw new IOException("Too many nested causes in compact log batch");
+      }
+
+      SerializableThrowable thrown = readThrowableFields();
+      if (last == null) {
+        first = thrown;
+      } else {
+        last.initCause(thrown);
+      }
+      last = thrown;
+    }
+    return first;
+  }
+
+  private SerializableThrowable readThrowableFields() throws IOException {
+    String designatedType = readString();
+    boolean exactType = readNumber() == 1;
+    SerializableThrowable thrown = new SerializableThrowable(designatedType, readString());
+    thrown.setDesignatedType(designatedType, exactType);
+
+    int frameCount = readCount(0);
+    StackTraceElement[] stackTrace = new StackTraceElement[frameCount];
+    for (int i = 0; i < frameCount; i++) {
+      String className = readString();
+      String methodName = readString();
+      String fileName = readString();
+      stackTrace[i] = new StackTraceElement(className != null ? className : "Unknown",
+              methodName != null ? methodName : "Unknown", fileName, readNumber());
+    }
+    thrown.setStackTrace(stackTrace);
+    return thrown;
+  }
+
+  private int readNumber() throws IOException {
+    return (int) parseLong(readToken(CompactLogFormat.NUMBER_END, false), Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  private int readCount(int min) throws IOException {
+    return (int) parseLong(readToken(CompactLogFormat.NUMBER_END, false), min, CompactLogFormat.MAX_ELEMENTS);
+  }
+
+  private long readLong() throws IOException {
+    return parseLong(readToken(CompactLogFormat.NUMBER_END, false), Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  private String readString() throws IOException {
+    long length = parseLong(readToken(CompactLogFormat.STRING_START, false), -1, Integer.MAX_VALUE);
+    if (length == -1) {
+      return null;
+    }
+
+    // read in chunks, so a wrong length doesn't allocate more than the request contains
+    StringBuilder value = new StringBuilder((int) Math.min(length, BUFFER_SIZE));
+    char[] buffer = new char[(int) Math.min(length, BUFFER_SIZE)];
+    while (value.length() < length) {
+      int count = in.read(buffer, 0, (int) Math.min(length - value.length(), buffer.length));
+      if (count == -1) {
+        throw new IOException("Unexpected end of compact log batch");
+      }
+      value.append(buffer, 0, count);
+    }
+    return value.toString();
+  }
+
+  private String readToken(char end, boolean endOfBatchAllowed) throws IOException {
+    StringBuilder token = new StringBuilder();
+    int c;
+    while ((c = in.read()) != end) {
+      if (c == -1) {
+        if (endOfBatchAllowed && token.length() == 0) {
+          return null;
+        }
+        throw new IOException("Unexpected end of compact log batch");
+      }
+      if (token.length() == MAX_NUMBER_LENGTH) {
+        throw new IOException("Number too long in compact log batch");
+      }
+      token.append((char) c);
+    }
+    return token.toString();
+  }
+
+  /**
+   * Maps the standard levels. Level.parse isn't used: GWT's doesn't accept int values, and the JRE's registers every
+   * unknown value as a new level, so a client could grow that registry without bound.
+   */
+  private static String levelName(int value) throws IOException {
+    for (Level level : LEVELS) {
+      if (level.intValue() == value) {
+        return level.getName();
+      }
+    }
+    throw new IOException("Unknown level in compact log batch: " + value);
+  }
+
+  private static long parseLong(String token, long min, long max) throws IOException {
+    try {
+      long value = Long.parseLong(token, 36);
+      if (value < min || value > max) {
+        throw new IOException("Number out of range in compact log batch: " + token);
+      }
+      return value;
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid number in compact log batch: " + token, e);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.shared;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * batch of structured remote log records.
+ *
+ * Logger names and message patterns are sent as strings only the first time in a session. Client and server both
+ * number these strings in the order they appear on the wire, and later records refer to them by their id. The
+ * dictionary is bounded by {@link #MAX_DICTIONARY_SIZE}, strings beyond it are always sent in full.
+ *
+ * A client may send several batches at the same time. The batches of a dictionary are numbered, and the server
+ * processes them in the order of their sequence numbers, so the strings are added to the dictionary in the same order
+ * on both sides. A batch that arrives before its predecessors have been processed is held by the server until they
+ * arrive, or for a short time. So that a held batch never depends on a lost one, the client sends a batch after one
+ * that added strings to the dictionary only when the server has acknowledged it. A client that gets a
+ * {@link #DICTIONARY_RESET} starts a dictionary with a new key.
+ *
+ * Batches are sent with {@link RemoteStructuredLoggingService} or in the compact format. {@link
+ * RemoteBatchLoggingService} doesn't refer to them, so their serializers are only compiled into the permutations that
+ * send batches over GWT RPC.
+ */
+public class RemoteLogBatch implements Serializable {
+
+  /** the maximum number of strings in the dictionary of a client */
+  public static final int MAX_DICTIONARY_SIZE = 1024;
+
+  /** the result of a batch that refers to a dictionary the server doesn't know (anymore) */
+  public static final String DICTIONARY_RESET = "slf4gwt.dictionary.reset";
+
+  private String dictionaryKey;
+  private int dictionarySize;
+  private int sequence;
+  private ArrayList<RemoteLogRecord> records;
+
+  protected RemoteLogBatch() {
+    // for serialization
+  }
+
+  /**
+   * Creates a batch without sequence number.
+   *
+   * @param dictionaryKey the key of the dictionary of the client
+   * @param dictionarySize the number of strings in the dictionary before this batch
+   * @param records the records of the batch
+   */
+  public RemoteLogBatch(String dictionaryKey, int dictionarySize, ArrayList<RemoteLogRecord> records) {
+    this(dictionaryKey, dictionarySize, -1, records);
+  }
+
+  /**
+   * Creates a batch.
+   *
+   * @param dictionaryKey the key of the dictionary of the client
+   * @param dictionarySize the number of strings in the dictionary before this batch
+   * @param sequence the number of the batch within the dictionary, starting with 0, or -1 if the order doesn't matter
+   * @param records the records of the batch
+   */
+  public RemoteLogBatch(String dictionaryKey, int dictionarySize, int sequence, ArrayList<RemoteLogRecord> records) {
+    this.dictionaryKey = dictionaryKey;
+    this.dictionarySize = dictionarySize;
+    this.sequence = sequence;
+    this.records = records;
+  }
+
+  public String getDictionaryKey() {
+    return dictionaryKey;
+  }
+
+  public int getDictionarySize() {
+    return dictionarySize;
+  }
+
+  public int getSequence() {
+    return sequence;
+  }
+
+  public ArrayList<RemoteLogRecord> getRecords() {
+    return records;
+  }
+}
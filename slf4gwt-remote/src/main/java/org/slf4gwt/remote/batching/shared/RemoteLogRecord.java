@@ -0,0 +1,165 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.shared;
+
+import com.google.gwt.core.shared.SerializableThrowable;
+
+import java.io.Serializable;
+
+/**
+ * log record of the structured remote batches.
+ *
+ * In the structured mode the record carries the message pattern and its arguments as strings instead of the
+ * formatted message. The server formats the message only if a handler needs the text and can group records by their
+ * pattern.
+ *
+ * A record can stand for several equal records that were logged one after another, with their number and the time of
+ * the last one (see {@link #setRepeats(int, long)}).
+ */
+public class RemoteLogRecord implements Serializable {
+
+  private String level;
+  private String loggerName;
+  private int loggerNameId;
+  private long millis;
+  private String message;
+  private int messageId;
+  private String[] arguments;
+  private SerializableThrowable thrown;
+  private int repeatCount = 1;
+  private long lastMillis;
+
+  protected RemoteLogRecord() {
+    // for serialization
+  }
+
+  /**
+   * Creates a record.
+   *
+   * @param level the name of the JUL level
+   * @param loggerName the name of the client side logger
+   * @param millis the time of the event
+   * @param message the formatted message, or the message pattern if there are arguments
+   * @param arguments the arguments of the pattern, or null if the message is formatted
+   * @param thrown the throwable of the event or null
+   */
+  public RemoteLogRecord(String level, String loggerName, long millis, String message, String[] arguments,
+                         SerializableThrowable thrown) {
+    this(level, loggerName, -1, millis, message, -1, arguments, thrown);
+  }
+
+  /**
+   * Creates a record that may refer to the logger name and the message pattern by their id in the dictionary.
+   *
+   * @param level the name of the JUL level
+   * @param loggerName the name of the client side logger, or null if it is sent by its id
+   * @param loggerNameId the id of the logger name in the dictionary or -1
+   * @param millis the time of the event
+   * @param message the formatted message, or the message pattern if there are arguments, or null if the pattern is
+   *                sent by its id
+   * @param messageId the id of the message pattern in the dictionary or -1
+   * @param arguments the arguments of the pattern, or null if the message is formatted
+   * @param thrown the throwable of the event or null
+   * @see RemoteLogBatch
+   */
+  public RemoteLogRecord(String level, String loggerName, int loggerNameId, long millis, String message,
+                         int messageId, String[] arguments, SerializableThrowable thrown) {
+    this.level = level;
+    this.loggerName = loggerName;
+    this.loggerNameId = loggerNameId;
+    this.millis = millis;
+    this.lastMillis = millis;
+    this.message = message;
+    this.messageId = messageId;
+    this.arguments = arguments;
+    this.thrown = thrown;
+  }
+
+  public String getLevel() {
+    return level;
+  }
+
+  public String getLoggerName() {
+    return loggerName;
+  }
+
+  public int getLoggerNameId() {
+    return loggerNameId;
+  }
+
+  public long getMillis() {
+    return millis;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public int getMessageId() {
+    return messageId;
+  }
+
+  public String[] getArguments() {
+    return arguments;
+  }
+
+  public SerializableThrowable getThrown() {
+    return thrown;
+  }
+
+  /**
+   * @return the number of records this record stands for, 1 if it isn't repeated
+   */
+  public int getRepeatCount() {
+    return repeatCount;
+  }
+
+  /**
+   * @return the time of the last repeat, the time of the record if it isn't repeated
+   */
+  public long getLastMillis() {
+    return lastMillis;
+  }
+
+  /**
+   * Lets the record stand for several equal records.
+   *
+   * @param repeatCount the number of records, at least 1
+   * @param lastMillis the time of the last record
+   */
+  public void setRepeats(int repeatCount, long lastMillis) {
+    this.repeatCount = repeatCount;
+    this.lastMillis = lastMillis;
+  }
+
+  /**
+   * @return the message with the number of repeats and their time span, or the message if the record isn't repeated
+   */
+  public String appendRepeats(String message) {
+    if (repeatCount <= 1) {
+      return message;
+    }
+    return message + " (repeated " + repeatCount + " times within " + (lastMillis - millis) + " ms)";
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.junit.Test;
+import org.slf4gwt.remote.batching.shared.CompactLogReader;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BeaconFlushTest {
+
+  /**
+   * a browser that accepts a number of beacons and keeps their records.
+   */
+  private static class Browser implements BeaconFlush.Beacon {
+
+    final List<List<RemoteLogRecord>> beacons = new ArrayList<List<RemoteLogRecord>>();
+    final List<Integer> beaconBytes = new ArrayList<Integer>();
+    int quota;
+
+    Browser(int quota) {
+      this.quota = quota;
+    }
+
+    @Override
+    public boolean send(String data) {
+      if (quota == 0) {
+        return false;
+      }
+      quota--;
+      try {
+        beaconBytes.add(data.getBytes("UTF-8").length);
+        CompactLogReader reader = new CompactLogReader(new CompactLogReader.StringInput(data));
+        List<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+        RemoteLogRecord record;
+        while ((record = reader.next()) != null) {
+          records.add(record);
+        }
+        beacons.add(records);
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+      return true;
+    }
+  }
+
+  private final RemoteLogQueue queue = new RemoteLogQueue(10000, 10000000, RemoteLogQueue.DropPolicy.OLDEST, false);
+
+  private final BeaconFlush.Batches batches = new BeaconFlush.Batches() {
+    @Override
+    public ArrayList<RemoteLogRecord> take(int maxRecords, int maxBytes) {
+      return queue.isEmpty() ? new ArrayList<RemoteLogRecord>() : queue.drain(maxRecords, maxBytes);
+    }
+
+    @Override
+    public void giveBack(List<RemoteLogRecord> records) {
+      queue.requeue(records);
+    }
+  };
+
+  @Test
+  public void sendsTheQueueInBeaconsOfTheMaximumSize() {
+    addRecords(0, 450, "message");
+    Browser browser = new Browser(10);
+
+    assertTrue(BeaconFlush.send(batches, 200, BeaconFlush.MAX_BEACON_BYTES, browser));
+    assertTrue(queue.isEmpty());
+    assertEquals(3, browser.beacons.size());
+    assertEquals(200, browser.beacons.get(0).size());
+    assertMessages(0, 450, browser.beacons);
+  }
+
+  @Test
+  public void keepsTheRestIfTheBrowserRefusesABeacon() {
+    addRecords(0, 450, "message");
+    Browser browser = new Browser(1);
+
+    assertFalse(BeaconFlush.send(batches, 200, BeaconFlush.MAX_BEACON_BYTES, browser));
+    assertMessages(0, 200, browser.beacons);
+    List<List<RemoteLogRecord>> rest = new ArrayList<List<RemoteLogRecord>>();
+    rest.add(queue.snapshot());
+    assertMessages(200, 250, rest);
+  }
+
+  @Test
+  public void splitsBeaconsWhoseCharactersHaveSeveralBytes() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      text.append("日本語");
+    }
+    // the queue estimates 2 bytes per character, UTF-8 needs 3
+    addRecords(0, 100, text.toString());
+    Browser browser = new Browser(100);
+
+    assertTrue(BeaconFlush.send(batches, 200, BeaconFlush.MAX_BEACON_BYTES, browser));
+    assertTrue(browser.beacons.size() > 1);
+    for (int bytes : browser.beaconBytes) {
+      assertTrue(bytes + " bytes", bytes <= BeaconFlush.MAX_BEACON_BYTES);
+    }
+    assertMessages(0, 100, browser.beacons);
+  }
+
+  private void addRecords(int first, int count, String text) {
+    for (int i = first; i < first + count; i++) {
+      queue.add(new RemoteLogRecord("INFO", "com.acme.Beacon", 1580000000000L + i, i + " " + text, null, null));
+    }
+  }
+
+  /**
+   * asserts that the records of the beacons are the records from first in their order.
+   */
+  private static void assertMessages(int first, int count, List<List<RemoteLogRecord>> beacons) {
+    int next = first;
+    for (List<RemoteLogRecord> records : beacons) {
+      for (RemoteLogRecord record : records) {
+        assertEquals(String.valueOf(next++), record.getMessage().substring(0, record.getMessage().indexOf(' ')));
+      }
+    }
+    assertEquals(first + count, next);
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.LogRecord;
+
+/**
+ * the compact batches of the client, for the tests of the server.
+ */
+public final class CompactBatches {
+
+  private CompactBatches() {
+  }
+
+  /**
+   * @return the batch in the compact format, as the handler sends it
+   */
+  public static String write(RemoteLogBatch batch) {
+    return CompactLogWriter.write(batch);
+  }
+
+  /**
+   * @return the first batch of a page with typical records, strings are sent in full and numbered on both sides
+   */
+  public static RemoteLogBatch sampleFirstBatch(int size) {
+    return new SampleBatch(size).firstBatch;
+  }
+
+  /**
+   * @return the batch that follows {@link #sampleFirstBatch(int)}, it refers to the strings of the first one by their id
+   */
+  public static RemoteLogBatch sampleLaterBatch(int size) {
+    return new SampleBatch(size).laterBatch;
+  }
+
+  /**
+   * @return the first batch of a page whose second record refers to a logger name the server doesn't know
+   */
+  public static RemoteLogBatch batchWithUnknownId() {
+    ArrayList<RemoteLogRecord> records = new ArrayList<>();
+    records.add(new RemoteLogRecord("INFO", "com.acme.Known", 1000, "before", null, null));
+    records.add(new RemoteLogRecord("INFO", null, 42, 1001, "unknown", -1, null, null));
+    records.add(new RemoteLogRecord("INFO", "com.acme.Known", 1002, "after", null, null));
+    return new RemoteLogBatch("page.0", 0, 0, records);
+  }
+
+  /**
+   * @return the typical records of {@link #sampleFirstBatch(int)} as they are logged on the server
+   */
+  public static List<LogRecord> sampleLogRecords(int size) {
+    return new SampleBatch(size).logRecords;
+  }
+}
@@ -0,0 +1,178 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import com.google.gwt.core.shared.SerializableThrowable;
+import org.junit.Test;
+import org.slf4gwt.remote.batching.shared.CompactLogFormat;
+import org.slf4gwt.remote.batching.shared.CompactLogReader;
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CompactLogFormatTest {
+
+  @Test
+  public void readsWhatTheWriterWrote() throws IOException {
+    ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    records.add(new RemoteLogRecord("INFO", "com.acme.Grid", -1, 1580000000000L, "Rendered {} rows", -1,
+        new String[] { "42" }, null));
+    records.add(new RemoteLogRecord("FINEST", null, 3, 1580000000005L, null, 7, new String[] { null, "", "a:1,b" },
+        null));
+    records.add(new RemoteLogRecord("SEVERE", "com.acme.Net", -1, 1579999999000L, "Request failed: 中文 | \\", -1,
+        null, throwable("outer", throwable("inner", null))));
+    RemoteLogRecord repeated = new RemoteLogRecord("WARNING", "com.acme.Net", -1, 1580000001000L, "Retry", -1,
+        new String[0], null);
+    repeated.setRepeats(17, 1580000009000L);
+    records.add(repeated);
+
+    RemoteLogBatch batch = new RemoteLogBatch("page.1", 12, 5, records);
+    CompactLogReader reader = new CompactLogReader(new CompactLogReader.StringInput(CompactLogWriter.write(batch)));
+
+    assertEquals("page.1", reader.getDictionaryKey());
+    assertEquals(12, reader.getDictionarySize());
+    assertEquals(5, reader.getSequence());
+    for (RemoteLogRecord expected : records) {
+      assertRecordEquals(expected, reader.next());
+    }
+    assertNull(reader.next());
+  }
+
+  @Test
+  public void readsBatchesWithoutDictionary() throws IOException {
+    ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    records.add(new RemoteLogRecord("CONFIG", "com.acme.Grid", 1L, null, null, null));
+    String data = CompactLogWriter.write(new RemoteLogBatch(null, 0, records));
+
+    CompactLogReader reader = new CompactLogReader(new CompactLogReader.StringInput(data));
+    assertNull(reader.getDictionaryKey());
+    assertEquals(-1, reader.getSequence());
+    assertRecordEquals(records.get(0), reader.next());
+    assertNull(reader.next());
+  }
+
+  @Test
+  public void truncatesLongCauseChains() throws IOException {
+    SerializableThrowable thrown = null;
+    for (int i = 0; i < CompactLogFormat.MAX_CAUSES * 2; i++) {
+      thrown = throwable("cause " + i, thrown);
+    }
+    ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    records.add(new RemoteLogRecord("SEVERE", "com.acme.Grid", 1L, "failed", null, thrown));
+    String data = CompactLogWriter.write(new RemoteLogBatch(null, 0, records));
+
+    Throwable read = new CompactLogReader(new CompactLogReader.StringInput(data)).next().getThrown();
+    int depth = 0;
+    while (read.getCause() != null) {
+      read = read.getCause();
+      depth++;
+    }
+    assertEquals(CompactLogFormat.MAX_CAUSES, depth);
+  }
+
+  @Test
+  public void rejectsUnknownLevels() throws IOException {
+    // a record of level 801 without logger name, message, arguments and throwable
+    assertRejected(header() + Integer.toString(801, 36) + ",-1,-1:1,1,-1,-1:-1,0,");
+  }
+
+  @Test
+  public void rejectsDeeplyNestedCausesWithoutOverflowingTheStack() throws IOException {
+    // a SEVERE record with a throwable with 100,000 causes
+    StringBuilder data = new StringBuilder(header()).append(Integer.toString(1000, 36)).append(",-1,-1:1,1,-1,-1:-1,");
+    for (int i = 0; i < 100_000; i++) {
+      data.append("1,-1:0,-1:0,");
+    }
+    data.append("0,");
+    assertRejected(data.toString());
+  }
+
+  @Test
+  public void rejectsTruncatedBatches() throws IOException {
+    ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    records.add(new RemoteLogRecord("INFO", "com.acme.Grid", 1L, "message", null, null));
+    String data = CompactLogWriter.write(new RemoteLogBatch(null, 0, records));
+    assertRejected(data.substring(0, data.length() - 3));
+  }
+
+  private static String header() {
+    return Integer.toString(CompactLogFormat.VERSION, 36) + ",-1:0,-1,";
+  }
+
+  private static void assertRejected(String data) throws IOException {
+    CompactLogReader reader = new CompactLogReader(new CompactLogReader.StringInput(data));
+    try {
+      reader.next();
+      fail("the batch should have been rejected");
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  private static SerializableThrowable throwable(String message, SerializableThrowable cause) {
+    SerializableThrowable thrown = new SerializableThrowable("com.acme.GridException", message);
+    thrown.setDesignatedType("com.acme.GridException", true);
+    thrown.setStackTrace(new StackTraceElement[] {
+        new StackTraceElement("com.acme.Grid", "render", "Grid.java", 42),
+        new StackTraceElement("Unknown", "Unknown", null, -1) });
+    if (cause != null) {
+      thrown.initCause(cause);
+    }
+    return thrown;
+  }
+
+  static void assertRecordEquals(RemoteLogRecord expected, RemoteLogRecord actual) {
+    assertEquals(expected.getLevel(), actual.getLevel());
+    assertEquals(expected.getLoggerName(), actual.getLoggerName());
+    assertEquals(expected.getLoggerNameId(), actual.getLoggerNameId());
+    assertEquals(expected.getMillis(), actual.getMillis());
+    assertEquals(expected.getMessage(), actual.getMessage());
+    assertEquals(expected.getMessageId(), actual.getMessageId());
+    assertArrayEquals(expected.getArguments(), actual.getArguments());
+    assertEquals(expected.getRepeatCount(), actual.getRepeatCount());
+    assertEquals(expected.getLastMillis(), actual.getLastMillis());
+
+    Throwable expectedThrown = expected.getThrown();
+    Throwable actualThrown = actual.getThrown();
+    while (expectedThrown != null) {
+      SerializableThrowable expectedSerializable = (SerializableThrowable) expectedThrown;
+      SerializableThrowable actualSerializable = (SerializableThrowable) actualThrown;
+      assertEquals(expectedSerializable.getDesignatedType(), actualSerializable.getDesignatedType());
+      assertEquals(expectedSerializable.isExactDesignatedTypeKnown(), actualSerializable.isExactDesignatedTypeKnown());
+      assertEquals(expectedThrown.getMessage(), actualThrown.getMessage());
+      assertEquals(Arrays.asList(expectedThrown.getStackTrace()), Arrays.asList(actualThrown.getStackTrace()));
+      expectedThrown = expectedThrown.getCause();
+      actualThrown = actualThrown.getCause();
+    }
+    assertNull(actualThrown);
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.RPC;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4gwt.remote.batching.shared.CompactLogReader;
+import org.slf4gwt.remote.batching.shared.RemoteBatchLoggingService;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogRecord;
+
+/**
+ * compares the size and the server side decode time of a batch sent with GWT RPC and in the compact format.
+ *
+ * The RPC request is a {@code logOnServer(List<LogRecord>)} call with formatted messages, the compact batches carry
+ * patterns and arguments, once as the first batch of a page, which sends each string in full once, and once as a later
+ * batch, which only sends dictionary ids. The sizes are printed during
+ * the setup. It isn't run by the build, start {@link #main(String[])} with the test class path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompactTransportBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int records;
+
+  private String rpcRequest;
+  private String compactFirstBatch;
+  private String compactLaterBatch;
+
+  @Setup
+  public void setUp() throws SerializationException {
+    SampleBatch sample = new SampleBatch(records);
+    rpcRequest = rpcRequest(sample);
+    compactFirstBatch = CompactLogWriter.write(sample.firstBatch);
+    compactLaterBatch = CompactLogWriter.write(sample.laterBatch);
+
+    System.out.printf("%n%d records: rpc %d chars, compact %d chars, compact with dictionary %d chars%n", records,
+        rpcRequest.length(), compactFirstBatch.length(), compactLaterBatch.length());
+  }
+
+  static String rpcRequest(SampleBatch sample) throws SerializationException {
+    try {
+      return RpcRequestWriter.write(RemoteBatchLoggingService.class.getMethod("logOnServer", List.class),
+          new ArrayList<LogRecord>(sample.logRecords));
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Benchmark
+  public Object decodeRpc() throws SerializationException {
+    return RPC.decodeRequest(rpcRequest, RemoteBatchLoggingService.class, RpcRequestWriter.PROVIDER).getParameters();
+  }
+
+  @Benchmark
+  public void decodeCompact(Blackhole blackhole) throws IOException {
+    decode(compactFirstBatch, blackhole);
+  }
+
+  @Benchmark
+  public void decodeCompactWithDictionary(Blackhole blackhole) throws IOException {
+    decode(compactLaterBatch, blackhole);
+  }
+
+  private static void decode(String batch, Blackhole blackhole) throws IOException {
+    CompactLogReader reader = new CompactLogReader(new CompactLogReader.StringInput(batch));
+    RemoteLogRecord record;
+    while ((record = reader.next()) != null) {
+      blackhole.consume(record);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CompactTransportBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import com.google.gwt.user.server.rpc.RPC;
+import com.google.gwt.user.server.rpc.RPCRequest;
+import org.junit.Test;
+import org.slf4gwt.remote.batching.shared.CompactLogReader;
+import org.slf4gwt.remote.batching.shared.RemoteBatchLoggingService;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.List;
+import java.util.logging.LogRecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * checks the inputs of the {@link CompactTransportBenchmark}: both transports carry the same records, and the compact
+ * batches are smaller than the RPC request.
+ */
+public class CompactTransportComparisonTest {
+
+  @Test
+  public void transportsTheSameRecords() throws Exception {
+    SampleBatch sample = new SampleBatch(100);
+
+    RPCRequest request = RPC.decodeRequest(CompactTransportBenchmark.rpcRequest(sample),
+        RemoteBatchLoggingService.class, RpcRequestWriter.PROVIDER);
+    @SuppressWarnings("unchecked")
+    List<LogRecord> logRecords = (List<LogRecord>) request.getParameters()[0];
+
+    CompactLogReader reader = new CompactLogReader(
+        new CompactLogReader.StringInput(CompactLogWriter.write(sample.firstBatch)));
+    assertEquals(sample.logRecords.size(), logRecords.size());
+    for (int i = 0; i < logRecords.size(); i++) {
+      LogRecord expected = sample.logRecords.get(i);
+      LogRecord fromRpc = logRecords.get(i);
+      RemoteLogRecord fromCompact = reader.next();
+
+      assertEquals(expected.getMessage(), fromRpc.getMessage());
+      assertEquals(expected.getLoggerName(), fromRpc.getLoggerName());
+      assertEquals(expected.getMillis(), fromRpc.getMillis());
+      assertEquals(expected.getLevel(), fromRpc.getLevel());
+
+      assertEquals(expected.getMillis(), fromCompact.getMillis());
+      assertEquals(expected.getLevel().getName(), fromCompact.getLevel());
+    }
+    assertNull(reader.next());
+  }
+
+  @Test
+  public void compactBatchesAreSmaller() throws Exception {
+    SampleBatch sample = new SampleBatch(100);
+
+    int rpcLength = CompactTransportBenchmark.rpcRequest(sample).length();
+    int firstLength = CompactLogWriter.write(sample.firstBatch).length();
+    int laterLength = CompactLogWriter.write(sample.laterBatch).length();
+
+    assertTrue(firstLength + " >= " + rpcLength, firstLength < rpcLength);
+    assertTrue(laterLength + " >= " + firstLength, laterLength < firstLength);
+  }
+}
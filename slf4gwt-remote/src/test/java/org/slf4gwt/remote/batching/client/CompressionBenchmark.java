@@ -0,0 +1,143 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4gwt.remote.batching.shared.CompactLogReader;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * measures the compression ratio and the cost of compressing compact batches.
+ *
+ * The browser compresses with the DEFLATE of its {@code CompressionStream}, which can't run on the JVM, so the
+ * {@link GZIPOutputStream} of the JDK stands in for it: the ratio is the same, the time is an estimate of the CPU the
+ * client spends. The server side inflates while it reads the batch, like the compact servlet. The sizes are printed
+ * during the setup. It isn't run by the build, start {@link #main(String[])} with the test class path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int records;
+
+  private byte[] firstBatch;
+  private byte[] laterBatch;
+  private byte[] compressedFirstBatch;
+  private byte[] compressedLaterBatch;
+
+  @Setup
+  public void setUp() throws IOException {
+    SampleBatch sample = new SampleBatch(records);
+    firstBatch = CompactLogWriter.write(sample.firstBatch).getBytes(StandardCharsets.UTF_8);
+    laterBatch = CompactLogWriter.write(sample.laterBatch).getBytes(StandardCharsets.UTF_8);
+    compressedFirstBatch = gzip(firstBatch);
+    compressedLaterBatch = gzip(laterBatch);
+
+    System.out.printf("%n%d records: first batch %d -> %d bytes (%.1f%%), with dictionary %d -> %d bytes (%.1f%%)%n",
+        records, firstBatch.length, compressedFirstBatch.length, 100.0 * compressedFirstBatch.length / firstBatch.length,
+        laterBatch.length, compressedLaterBatch.length, 100.0 * compressedLaterBatch.length / laterBatch.length);
+  }
+
+  @Benchmark
+  public byte[] compress() throws IOException {
+    return gzip(firstBatch);
+  }
+
+  @Benchmark
+  public byte[] compressWithDictionary() throws IOException {
+    return gzip(laterBatch);
+  }
+
+  @Benchmark
+  public void inflateAndDecode(Blackhole blackhole) throws IOException {
+    decode(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(compressedFirstBatch)),
+        StandardCharsets.UTF_8), blackhole);
+  }
+
+  @Benchmark
+  public void decodeUncompressed(Blackhole blackhole) throws IOException {
+    decode(new InputStreamReader(new ByteArrayInputStream(firstBatch), StandardCharsets.UTF_8), blackhole);
+  }
+
+  private static void decode(Reader in, Blackhole blackhole) throws IOException {
+    BufferedReader reader = new BufferedReader(in);
+    CompactLogReader batch = new CompactLogReader(new CompactLogReader.Input() {
+      @Override
+      public int read() throws IOException {
+        return reader.read();
+      }
+
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        return reader.read(buffer, offset, length);
+      }
+    });
+    RemoteLogRecord record;
+    while ((record = batch.next()) != null) {
+      blackhole.consume(record);
+    }
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(data);
+    }
+    return out.toByteArray();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CompressionBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,156 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CrossTabLeaseTest {
+
+  /**
+   * the local storage that the tabs share.
+   */
+  private static class MapStorage implements LogStorage {
+
+    final HashMap<String, String> items = new HashMap<String, String>();
+    boolean full;
+    /** the value another tab writes right after the next write of this tab, or null */
+    String racingValue;
+
+    @Override
+    public int getLength() {
+      return items.size();
+    }
+
+    @Override
+    public String key(int index) {
+      return new ArrayList<String>(items.keySet()).get(index);
+    }
+
+    @Override
+    public String getItem(String key) {
+      return items.get(key);
+    }
+
+    @Override
+    public void setItem(String key, String value) {
+      if (full) {
+        throw new RuntimeException("QuotaExceededError");
+      }
+      items.put(key, value);
+      if (racingValue != null) {
+        items.put(key, racingValue);
+        racingValue = null;
+      }
+    }
+
+    @Override
+    public void removeItem(String key) {
+      items.remove(key);
+    }
+  }
+
+  private static final String KEY = "slf4gwt.remoteLog.leader.app";
+
+  private static final int LEASE_MILLIS = 6000;
+
+  private final MapStorage storage = new MapStorage();
+
+  private final CrossTabLease tabA = new CrossTabLease(storage, KEY, "a", LEASE_MILLIS);
+  private final CrossTabLease tabB = new CrossTabLease(storage, KEY, "b", LEASE_MILLIS);
+
+  @Test
+  public void theFirstVisibleTabLeads() {
+    assertTrue(tabA.renew(0, true));
+    assertFalse(tabB.renew(1, true));
+    assertTrue(tabA.isLeader());
+    assertFalse(tabB.isLeader());
+  }
+
+  @Test
+  public void theLeaderRenewsItsLease() {
+    tabA.renew(0, true);
+    assertTrue(tabA.renew(5000, true));
+    // the lease was renewed until 11000
+    assertFalse(tabB.renew(10000, true));
+    assertTrue(tabA.isLeader());
+  }
+
+  @Test
+  public void aVisibleTabTakesAnExpiredLease() {
+    tabA.renew(0, true);
+    // tab a crashed
+    assertTrue(tabB.renew(LEASE_MILLIS + 1, true));
+    assertFalse(tabA.renew(LEASE_MILLIS + 2, true));
+  }
+
+  @Test
+  public void aHiddenTabDoesntTakeTheLease() {
+    assertFalse(tabB.renew(0, false));
+    assertNull(storage.getItem(KEY));
+    assertTrue(tabA.renew(1, true));
+  }
+
+  @Test
+  public void theReleasedLeaseIsTakenRightAway() {
+    tabA.renew(0, true);
+    tabA.release();
+    assertFalse(tabA.isLeader());
+    assertNull(storage.getItem(KEY));
+
+    assertTrue(tabB.renew(1, true));
+    assertFalse(tabA.renew(2, true));
+  }
+
+  @Test
+  public void aTabKeepsItsRoleIfTheStorageIsFull() {
+    tabA.renew(0, true);
+    storage.full = true;
+    assertTrue(tabA.renew(LEASE_MILLIS - 1, true));
+    assertFalse(tabB.renew(LEASE_MILLIS + 1, true));
+  }
+
+  @Test
+  public void onlyTheLastTabThatTookTheLeaseLeads() {
+    // both tabs found no lease, tab b wrote its lease after tab a
+    storage.racingValue = "b," + Long.toString(LEASE_MILLIS, 36);
+    assertFalse(tabA.renew(0, true));
+    assertTrue(tabB.renew(1, true));
+    assertFalse(tabA.renew(2, true));
+  }
+
+  @Test
+  public void aMalformedLeaseHasExpired() {
+    storage.setItem(KEY, "c,not a time");
+    assertTrue(tabA.renew(1, true));
+    storage.setItem(KEY, "garbage");
+    assertTrue(tabB.renew(2, true));
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.junit.Test;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CrossTabPostsTest {
+
+  private final CrossTabPosts posts = new CrossTabPosts(6000);
+
+  @Test
+  public void forgetsAcknowledgedBatches() {
+    int first = posts.add(records(0, 2), 0);
+    posts.add(records(2, 2), 0);
+
+    assertTrue(posts.acknowledge(first));
+    assertFalse(posts.acknowledge(first));
+    assertMessages(2, 2, posts.getUnacknowledged());
+    assertMessages(2, 2, posts.takeExpired(6001, false));
+    assertEquals(0, posts.getUnacknowledged().size());
+  }
+
+  @Test
+  public void givesBackTheBatchesThatWerentAcknowledgedWithinTheLease() {
+    posts.add(records(0, 2), 0);
+    posts.add(records(2, 2), 1000);
+
+    assertEquals(0, posts.takeExpired(6000, false).size());
+    assertMessages(0, 2, posts.takeExpired(6001, false));
+    assertMessages(2, 2, posts.takeExpired(7001, false));
+    assertEquals(0, posts.getUnacknowledged().size());
+  }
+
+  @Test
+  public void givesBackAllBatchesWhenTheTabLeads() {
+    posts.add(records(0, 2), 0);
+    posts.add(records(2, 3), 1000);
+
+    assertMessages(0, 5, posts.takeExpired(1001, true));
+    assertEquals(0, posts.getUnacknowledged().size());
+  }
+
+  @Test
+  public void ignoresUnknownAcknowledgements() {
+    posts.add(records(0, 1), 0);
+    assertFalse(posts.acknowledge(null));
+    assertFalse(posts.acknowledge(7));
+    assertMessages(0, 1, posts.getUnacknowledged());
+  }
+
+  private static ArrayList<RemoteLogRecord> records(int first, int count) {
+    ArrayList<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    for (int i = first; i < first + count; i++) {
+      records.add(new RemoteLogRecord("INFO", "com.acme.Tab", 1580000000000L + i, String.valueOf(i), null, null));
+    }
+    return records;
+  }
+
+  private static void assertMessages(int first, int count, List<RemoteLogRecord> records) {
+    assertEquals(count, records.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(String.valueOf(first + i), records.get(i).getMessage());
+    }
+  }
+}
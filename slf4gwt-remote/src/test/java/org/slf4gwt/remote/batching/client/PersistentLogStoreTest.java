@@ -0,0 +1,211 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.junit.Test;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentLogStoreTest {
+
+  /**
+   * a storage in a map that counts the written characters.
+   */
+  private static class MapStorage implements LogStorage {
+
+    final LinkedHashMap<String, String> items = new LinkedHashMap<String, String>();
+    int writtenChars;
+
+    @Override
+    public int getLength() {
+      return items.size();
+    }
+
+    @Override
+    public String key(int index) {
+      return new ArrayList<String>(items.keySet()).get(index);
+    }
+
+    @Override
+    public String getItem(String key) {
+      return items.get(key);
+    }
+
+    @Override
+    public void setItem(String key, String value) {
+      writtenChars += value.length();
+      items.put(key, value);
+    }
+
+    @Override
+    public void removeItem(String key) {
+      items.remove(key);
+    }
+  }
+
+  private final MapStorage storage = new MapStorage();
+
+  @Test
+  public void writesOnlyTheChangedRecords() {
+    PersistentLogStore store = new PersistentLogStore(storage, "page1", 1048576);
+    List<RemoteLogRecord> records = records(0, 500);
+    store.save(records, false);
+    int fullSave = storage.writtenChars;
+
+    storage.writtenChars = 0;
+    records.addAll(records(500, 1));
+    store.save(records, false);
+    assertTrue(storage.writtenChars + " chars written", storage.writtenChars < fullSave / 50);
+
+    // the first segment has been sent, it is removed without writing
+    storage.writtenChars = 0;
+    records = new ArrayList<RemoteLogRecord>(records.subList(500, 501));
+    store.save(records, false);
+    assertTrue(storage.writtenChars + " chars written", storage.writtenChars < 20);
+
+    store.save(records, true);
+    assertMessages(500, 1, new PersistentLogStore(storage, "page2", 1048576).adoptAbandoned());
+    assertEquals(0, storage.items.size());
+  }
+
+  @Test
+  public void rewritesPartlySentAndRepeatedRecords() {
+    PersistentLogStore store = new PersistentLogStore(storage, "page1", 1048576);
+    List<RemoteLogRecord> records = records(0, 10);
+    store.save(records, false);
+
+    records.remove(0);
+    records.get(0).setRepeats(3, 1580000009000L);
+    store.save(records, true);
+
+    List<RemoteLogRecord> adopted = new PersistentLogStore(storage, "page2", 1048576).adoptAbandoned();
+    assertMessages(1, 9, adopted);
+    assertEquals(3, adopted.get(0).getRepeatCount());
+  }
+
+  @Test
+  public void adoptsClosedPagesInOrder() {
+    PersistentLogStore store = new PersistentLogStore(storage, "page1", 1048576);
+    List<RemoteLogRecord> records = records(0, 5);
+    store.save(records, false);
+    records.addAll(records(5, 5));
+    store.save(records, false);
+
+    PersistentLogStore next = new PersistentLogStore(storage, "page2", 1048576);
+    assertEquals(0, next.adoptAbandoned().size());
+
+    store.save(records, true);
+    assertMessages(0, 10, next.adoptAbandoned());
+    assertEquals(0, storage.items.size());
+  }
+
+  @Test
+  public void doesntAdoptIdlePagesThatAreAlive() {
+    PersistentLogStore store = new PersistentLogStore(storage, "page1", 1048576);
+    store.save(records(0, 5), false);
+    long savedMillis = System.currentTimeMillis();
+    PersistentLogStore next = new PersistentLogStore(storage, "page2", 1048576);
+
+    // the page is offline, its queue doesn't change, but it refreshes the time of its save
+    long now = savedMillis;
+    for (int i = 0; i < 10; i++) {
+      now += PersistentLogStore.REFRESH_MILLIS;
+      store.refresh(now);
+      assertEquals(0, next.adoptAbandoned(now + PersistentLogStore.REFRESH_MILLIS).size());
+    }
+
+    // a page that crashed stops refreshing
+    assertMessages(0, 5, next.adoptAbandoned(now + 10 * PersistentLogStore.REFRESH_MILLIS));
+  }
+
+  @Test
+  public void dropsTheOldestSegmentsOverBudget() {
+    PersistentLogStore store = new PersistentLogStore(storage, "page1", 2000);
+    List<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    for (int i = 0; i < 10; i++) {
+      records.addAll(records(i * 5, 5));
+      store.save(records, false);
+    }
+    store.save(records, true);
+
+    List<RemoteLogRecord> adopted = new PersistentLogStore(storage, "page2", 1048576).adoptAbandoned();
+    assertTrue(adopted.size() + " records adopted", adopted.size() > 0 && adopted.size() < 50);
+    assertMessages(50 - adopted.size(), adopted.size(), adopted);
+  }
+
+  @Test
+  public void doesntAdoptPagesClaimedByAnotherTab() {
+    new PersistentLogStore(storage, "page1", 1048576).save(records(0, 3), true);
+    storage.setItem("slf4gwt.remoteLog.claim.page1", Long.toString(System.currentTimeMillis(), 36) + ",page3");
+
+    PersistentLogStore next = new PersistentLogStore(storage, "page2", 1048576);
+    assertEquals(0, next.adoptAbandoned().size());
+
+    // the claim of a tab that crashed expires
+    storage.setItem("slf4gwt.remoteLog.claim.page1", Long.toString(System.currentTimeMillis() - 600000, 36) + ",page3");
+    assertMessages(0, 3, next.adoptAbandoned());
+    assertEquals(0, storage.items.size());
+  }
+
+  @Test
+  public void doesntAdoptPagesClaimedAtTheSameTime() {
+    new PersistentLogStore(storage, "page1", 1048576).save(records(0, 3), true);
+    MapStorage racingStorage = new MapStorage() {
+      @Override
+      public void setItem(String key, String value) {
+        super.setItem(key, value);
+        if (key.startsWith("slf4gwt.remoteLog.claim.")) {
+          // another tab sets its marker right after this one
+          super.setItem(key, Long.toString(System.currentTimeMillis(), 36) + ",page3");
+        }
+      }
+    };
+    racingStorage.items.putAll(storage.items);
+
+    assertEquals(0, new PersistentLogStore(racingStorage, "page2", 1048576).adoptAbandoned().size());
+    assertEquals(storage.items.size() + 1, racingStorage.items.size());
+  }
+
+  private static List<RemoteLogRecord> records(int first, int count) {
+    List<RemoteLogRecord> records = new ArrayList<RemoteLogRecord>();
+    for (int i = first; i < first + count; i++) {
+      records.add(new RemoteLogRecord("INFO", "com.acme.Grid", -1, 1580000000000L + i, "Rendered {} rows", -1,
+          new String[] { Integer.toString(i) }, null));
+    }
+    return records;
+  }
+
+  private static void assertMessages(int first, int count, List<RemoteLogRecord> records) {
+    assertEquals(count, records.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(Integer.toString(first + i), records.get(i).getArguments()[0]);
+    }
+  }
+}
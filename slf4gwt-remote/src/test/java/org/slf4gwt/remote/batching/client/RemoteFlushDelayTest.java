@@ -0,0 +1,71 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RemoteFlushDelayTest {
+
+  @Test
+  public void growsWithLightTraffic() {
+    RemoteFlushDelay delay = new RemoteFlushDelay(100, 2000, 200);
+    assertEquals(100, delay.getMillis());
+
+    delay.adapt(1);
+    assertEquals(200, delay.getMillis());
+    for (int i = 0; i < 10; i++) {
+      delay.adapt(49);
+    }
+    assertEquals(2000, delay.getMillis());
+  }
+
+  @Test
+  public void shrinksWithHeavyTraffic() {
+    RemoteFlushDelay delay = new RemoteFlushDelay(100, 2000, 200);
+    for (int i = 0; i < 5; i++) {
+      delay.adapt(0);
+    }
+    assertEquals(2000, delay.getMillis());
+
+    delay.adapt(50);
+    assertEquals(1000, delay.getMillis());
+    delay.adapt(200);
+    assertEquals(500, delay.getMillis());
+    for (int i = 0; i < 10; i++) {
+      delay.adapt(200);
+    }
+    assertEquals(100, delay.getMillis());
+  }
+
+  @Test
+  public void maximumBelowTheMinimumKeepsTheMinimum() {
+    RemoteFlushDelay delay = new RemoteFlushDelay(100, 50, 200);
+    delay.adapt(1);
+    assertEquals(100, delay.getMillis());
+    delay.adapt(200);
+    assertEquals(100, delay.getMillis());
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.junit.Test;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RemoteLogQueueTest {
+
+  @Test
+  public void keepsAtLeastOneRecord() {
+    for (RemoteLogQueue.DropPolicy policy : RemoteLogQueue.DropPolicy.values()) {
+      RemoteLogQueue queue = new RemoteLogQueue(0, 1048576, policy, false);
+      queue.add(record("INFO", "first"));
+      queue.add(record("WARNING", "second"));
+
+      List<RemoteLogRecord> queued = queue.snapshot();
+      assertEquals(policy.name(), 1, queued.size());
+      assertEquals(policy.name(), 1, queue.takeDroppedRecords());
+    }
+  }
+
+  @Test
+  public void dropsRecordsThatDontFitAnyQueue() {
+    RemoteLogQueue queue = new RemoteLogQueue(-5, -5, RemoteLogQueue.DropPolicy.OLDEST, false);
+    queue.add(record("INFO", "too large"));
+
+    assertEquals(0, queue.snapshot().size());
+    assertEquals(1, queue.takeDroppedRecords());
+  }
+
+  @Test
+  public void requeuesBehindTheFirstRecords() {
+    RemoteLogQueue queue = new RemoteLogQueue(100, 1048576, RemoteLogQueue.DropPolicy.OLDEST, false);
+    queue.add(record("INFO", "queued1"));
+    queue.add(record("INFO", "queued2"));
+    queue.requeue(Arrays.asList(record("INFO", "requeued1"), record("INFO", "requeued2")), 1);
+    queue.requeue(Collections.singletonList(record("INFO", "first")));
+
+    List<String> messages = new ArrayList<String>();
+    for (RemoteLogRecord record : queue.snapshot()) {
+      messages.add(record.getMessage());
+    }
+    assertEquals(Arrays.asList("first", "queued1", "requeued1", "requeued2", "queued2"), messages);
+  }
+
+  @Test
+  public void countsEqualRecordsAsRepeats() {
+    RemoteLogQueue queue = new RemoteLogQueue(100, 1048576, RemoteLogQueue.DropPolicy.OLDEST, true);
+    queue.add(record("INFO", "loop", 1000));
+    queue.add(record("INFO", "other", 1001));
+    queue.add(record("INFO", "loop", 1002));
+    queue.add(record("WARNING", "loop", 1003));
+    queue.add(record("INFO", "loop", 1004));
+
+    List<RemoteLogRecord> queued = queue.snapshot();
+    assertEquals(3, queued.size());
+    assertEquals(3, queued.get(0).getRepeatCount());
+    assertEquals(1004, queued.get(0).getLastMillis());
+    assertEquals("loop (repeated 3 times within 4 ms)", queued.get(0).appendRepeats("loop"));
+    assertEquals(1, queued.get(1).getRepeatCount());
+    assertEquals(1, queued.get(2).getRepeatCount());
+  }
+
+  @Test
+  public void repeatsAfterADrainGoIntoTheNextBatch() {
+    RemoteLogQueue queue = new RemoteLogQueue(100, 1048576, RemoteLogQueue.DropPolicy.OLDEST, true);
+    queue.add(record("INFO", "loop", 1000));
+    queue.add(record("INFO", "loop", 1001));
+    List<RemoteLogRecord> batch = queue.drain(10, 1048576);
+    queue.add(record("INFO", "loop", 1002));
+
+    assertEquals(2, batch.get(0).getRepeatCount());
+    assertEquals(1001, batch.get(0).getLastMillis());
+    List<RemoteLogRecord> queued = queue.snapshot();
+    assertEquals(1, queued.size());
+    assertEquals(1, queued.get(0).getRepeatCount());
+  }
+
+  @Test
+  public void keepsEqualRecordsIfRepeatsArentCollapsed() {
+    RemoteLogQueue queue = new RemoteLogQueue(100, 1048576, RemoteLogQueue.DropPolicy.OLDEST, false);
+    queue.add(record("INFO", "loop", 1000));
+    queue.add(record("INFO", "loop", 1001));
+
+    assertEquals(2, queue.snapshot().size());
+  }
+
+  private static RemoteLogRecord record(String level, String message) {
+    return record(level, message, 1580000000000L);
+  }
+
+  private static RemoteLogRecord record(String level, String message, long millis) {
+    return new RemoteLogRecord(level, "com.acme.Grid", -1, millis, message, -1, null, null);
+  }
+}
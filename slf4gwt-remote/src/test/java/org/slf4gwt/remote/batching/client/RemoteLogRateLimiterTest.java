@@ -0,0 +1,138 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteLogRateLimiterTest {
+
+  private final Logger logger = Logger.getLogger(RemoteLogRateLimiterTest.class.getName());
+  private final List<String> warnings = new ArrayList<String>();
+
+  private final Handler recorder = new Handler() {
+    @Override
+    public void publish(LogRecord record) {
+      warnings.add(record.getMessage());
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  @Before
+  public void recordWarnings() {
+    logger.addHandler(recorder);
+    logger.setUseParentHandlers(false);
+  }
+
+  @After
+  public void stopRecording() {
+    logger.removeHandler(recorder);
+    logger.setUseParentHandlers(true);
+  }
+
+  @Test
+  public void throttledLoggerDoesntUseTheBudgetOfItsLevel() {
+    RemoteLogRateLimiter limiter = new RemoteLogRateLimiter("com.acme.noisy=0/1", "INFO=0/5", "", logger);
+
+    assertEquals(1, acquire(limiter, "com.acme.noisy.Grid", 10));
+    assertEquals(4, acquire(limiter, "com.acme.Grid", 10));
+    assertEquals(Integer.valueOf(15), limiter.takeRejectedRecords().get("INFO"));
+  }
+
+  @Test
+  public void prefixesMatchAtDots() {
+    RemoteLogRateLimiter limiter = new RemoteLogRateLimiter("com.acme.noisy=0/1", "", "", logger);
+
+    assertEquals(10, acquire(limiter, "com.acme.noisyOther", 10));
+    assertEquals(1, acquire(limiter, "com.acme.noisy", 10));
+    assertEquals(0, acquire(limiter, "com.acme.noisy.Grid", 10));
+  }
+
+  @Test
+  public void emptyPrefixMatchesAllLoggers() {
+    RemoteLogRateLimiter limiter = new RemoteLogRateLimiter("=0/2", "", "", logger);
+
+    assertEquals(2, acquire(limiter, "com.acme.Grid", 5) + acquire(limiter, null, 5));
+  }
+
+  @Test
+  public void ignoresMalformedLimits() {
+    RemoteLogRateLimiter limiter = new RemoteLogRateLimiter("com.a=x/1,com.b=1,com.c=0/2,com.d=1/2/3",
+        "BOGUS=1/1,INFO=abc", "FINE=zz", logger);
+
+    assertEquals(10, acquire(limiter, "com.a", 10));
+    assertEquals(10, acquire(limiter, "com.b", 10));
+    assertEquals(2, acquire(limiter, "com.c", 10));
+    assertEquals(10, acquire(limiter, "com.d", 10));
+    assertEquals(6, warnings.size());
+  }
+
+  @Test
+  public void logsEntriesWithoutValue() {
+    RemoteLogRateLimiter limiter = new RemoteLogRateLimiter("com.a 1/1,,com.b=0/1 ", "INFO", "", logger);
+
+    assertEquals(10, acquire(limiter, "com.a", 10));
+    assertEquals(1, acquire(limiter, "com.b", 10));
+    assertEquals(Arrays.asList("Ignoring the malformed remote log logger rate limit com.a 1/1",
+            "Ignoring the malformed remote log level rate limit INFO"), warnings);
+  }
+
+  @Test
+  public void alwaysSendsSevereRecords() {
+    RemoteLogRateLimiter limiter = new RemoteLogRateLimiter("com.acme=0/0", "SEVERE=0/0", "SEVERE=0", logger);
+
+    for (int i = 0; i < 10; i++) {
+      assertTrue(limiter.tryAcquire(Level.SEVERE, "com.acme.Grid"));
+    }
+  }
+
+  private static int acquire(RemoteLogRateLimiter limiter, String loggerName, int records) {
+    int accepted = 0;
+    for (int i = 0; i < records; i++) {
+      if (limiter.tryAcquire(Level.INFO, loggerName)) {
+        accepted++;
+      }
+    }
+    return accepted;
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteRetryPolicyTest {
+
+  @Test
+  public void doublesTheDelayUpToTheMaximum() {
+    RemoteRetryPolicy policy = new RemoteRetryPolicy(10, 60000, 1000, 30000);
+    assertEquals(1000, policy.failed());
+    assertEquals(2000, policy.failed());
+    assertEquals(4000, policy.failed());
+    assertEquals(8000, policy.failed());
+    assertEquals(16000, policy.failed());
+    assertEquals(30000, policy.failed());
+    assertEquals(30000, policy.failed());
+    assertFalse(policy.isCircuitOpen());
+  }
+
+  @Test
+  public void opensTheCircuitAfterTheMaximumRetries() {
+    RemoteRetryPolicy policy = new RemoteRetryPolicy(2, 60000, 1000, 30000);
+    policy.failed();
+    policy.failed();
+    assertFalse(policy.isCircuitOpen());
+
+    assertEquals(60000, policy.failed());
+    assertTrue(policy.isCircuitOpen());
+    // the probes fail, too
+    assertEquals(60000, policy.failed());
+    assertTrue(policy.isCircuitOpen());
+  }
+
+  @Test
+  public void successClosesTheCircuitAndResetsTheDelay() {
+    RemoteRetryPolicy policy = new RemoteRetryPolicy(1, 60000, 1000, 30000);
+    policy.failed();
+    policy.failed();
+    assertTrue(policy.succeeded());
+    assertFalse(policy.isCircuitOpen());
+    assertFalse(policy.succeeded());
+
+    assertEquals(1000, policy.failed());
+  }
+
+  @Test
+  public void manyRetriesDontOverflowTheDelay() {
+    RemoteRetryPolicy policy = new RemoteRetryPolicy(100, 60000, 1000, 30000);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Math.min(1000L << Math.min(i, 31), 30000), policy.failed());
+    }
+  }
+
+  @Test
+  public void jitterSpreadsTheDelayOverItsUpperHalf() {
+    assertEquals(500, RemoteRetryPolicy.jitter(1000, 0));
+    assertEquals(750, RemoteRetryPolicy.jitter(1000, 0.5));
+    assertEquals(1000, RemoteRetryPolicy.jitter(1000, 1));
+  }
+}
@@ -0,0 +1,174 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.client.rpc.SerializationStreamWriter;
+import com.google.gwt.user.client.rpc.impl.AbstractSerializationStream;
+import com.google.gwt.user.client.rpc.impl.AbstractSerializationStreamWriter;
+import com.google.gwt.user.server.Base64Utils;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+import com.google.gwt.user.server.rpc.SerializationPolicyProvider;
+import com.google.gwt.user.server.rpc.impl.SerializabilityUtil;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * writes GWT RPC requests on the JVM, in the format the client proxies send.
+ *
+ * The GWT client writer needs JSNI, this one serializes with the custom field serializers of GWT and with reflection.
+ * The requests are decoded with {@code RPC.decodeRequest} and the {@link #PROVIDER}, which allows every type.
+ */
+public class RpcRequestWriter extends AbstractSerializationStreamWriter {
+
+  /** a policy that serializes every type, like the policy of the client that sends the request */
+  public static final SerializationPolicy POLICY = new SerializationPolicy() {
+    @Override
+    public boolean shouldDeserializeFields(Class<?> clazz) {
+      return clazz != null && clazz != Object.class;
+    }
+
+    @Override
+    public boolean shouldSerializeFields(Class<?> clazz) {
+      return clazz != null && clazz != Object.class;
+    }
+
+    @Override
+    public void validateDeserialize(Class<?> clazz) {
+    }
+
+    @Override
+    public void validateSerialize(Class<?> clazz) {
+    }
+  };
+
+  static final SerializationPolicyProvider PROVIDER = (moduleBaseURL, strongName) -> POLICY;
+
+  private final StringBuilder payload = new StringBuilder();
+
+  private RpcRequestWriter() {
+    setFlags(AbstractSerializationStream.DEFAULT_FLAGS);
+  }
+
+  /**
+   * @return the request that calls the given service method with the given parameters
+   */
+  public static String write(Method method, Object... parameters) throws SerializationException {
+    RpcRequestWriter writer = new RpcRequestWriter();
+    writer.prepareToWrite();
+    writer.writeString("http://localhost/module/");
+    writer.writeString("0123456789ABCDEF0123456789ABCDEF");
+    writer.writeString(method.getDeclaringClass().getName());
+    writer.writeString(method.getName());
+    writer.writeInt(parameters.length);
+    for (Class<?> parameterType : method.getParameterTypes()) {
+      writer.writeString(SerializabilityUtil.getSerializedTypeName(parameterType));
+    }
+    for (Object parameter : parameters) {
+      writer.writeObject(parameter);
+    }
+    return writer.toString();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder request = new StringBuilder();
+    append(request, String.valueOf(getVersion()));
+    append(request, String.valueOf(getFlags()));
+    append(request, String.valueOf(getStringTable().size()));
+    for (String value : getStringTable()) {
+      append(request, quote(value));
+    }
+    return request.append(payload).toString();
+  }
+
+  @Override
+  public void writeLong(long value) {
+    append(Base64Utils.toBase64(value));
+  }
+
+  @Override
+  protected void append(String token) {
+    append(payload, token);
+  }
+
+  @Override
+  protected String getObjectTypeSignature(Object instance) {
+    return SerializabilityUtil.encodeSerializedInstanceReference(instance.getClass(), POLICY);
+  }
+
+  @Override
+  protected void serialize(Object instance, String typeSignature) throws SerializationException {
+    try {
+      serializeClass(instance, instance.getClass());
+    } catch (ReflectiveOperationException e) {
+      throw new SerializationException(e);
+    }
+  }
+
+  private void serializeClass(Object instance, Class<?> clazz)
+      throws ReflectiveOperationException, SerializationException {
+    Class<?> customSerializer = SerializabilityUtil.hasCustomFieldSerializer(clazz);
+    if (customSerializer != null) {
+      customSerializer.getMethod("serialize", SerializationStreamWriter.class, clazz).invoke(null, this, instance);
+      return;
+    }
+
+    // the server reads the fields of the class first, then those of its superclass
+    for (Field field : SerializabilityUtil.applyFieldSerializationPolicy(clazz, POLICY)) {
+      field.setAccessible(true);
+      writeValue(field.getType(), field.get(instance));
+    }
+    if (POLICY.shouldSerializeFields(clazz.getSuperclass())) {
+      serializeClass(instance, clazz.getSuperclass());
+    }
+  }
+
+  private void writeValue(Class<?> type, Object value) throws SerializationException {
+    if (type == int.class) {
+      writeInt((Integer) value);
+    } else if (type == long.class) {
+      writeLong((Long) value);
+    } else if (type == boolean.class) {
+      writeBoolean((Boolean) value);
+    } else if (type == double.class) {
+      writeDouble((Double) value);
+    } else if (type == String.class) {
+      writeString((String) value);
+    } else if (type.isPrimitive() || (type.isArray() && value != null)) {
+      throw new SerializationException("Unsupported field type " + type);
+    } else {
+      writeObject(value);
+    }
+  }
+
+  private static void append(StringBuilder buffer, String token) {
+    buffer.append(token).append(AbstractSerializationStream.RPC_SEPARATOR_CHAR);
+  }
+
+  private static String quote(String value) {
+    return value.replace("\\", "\\\\").replace("|", "\\!").replace("\u0000", "\\0");
+  }
+}
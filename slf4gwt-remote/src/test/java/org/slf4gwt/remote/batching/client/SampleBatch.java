@@ -0,0 +1,105 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.client;
+
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * a batch of typical records, as list of LogRecords for GWT RPC and as compact batches.
+ */
+final class SampleBatch {
+
+  private static final Level[] LEVELS = { Level.FINE, Level.INFO, Level.INFO, Level.WARNING };
+
+  private static final String[] PATTERNS = {
+      "Rendering {} rows of grid {} took {} ms",
+      "Request {} failed with status {}, retrying in {} ms",
+      "User {} opened view {}",
+      "Cache {} evicted {} entries",
+  };
+
+  final List<LogRecord> logRecords = new ArrayList<LogRecord>();
+
+  /** the records of the first batch of a page, the first occurrence of a string is sent in full */
+  final RemoteLogBatch firstBatch;
+
+  /** the records of a later batch, logger names and patterns are sent as dictionary ids */
+  final RemoteLogBatch laterBatch;
+
+  SampleBatch(int size) {
+    ArrayList<RemoteLogRecord> firstRecords = new ArrayList<RemoteLogRecord>();
+    ArrayList<RemoteLogRecord> laterRecords = new ArrayList<RemoteLogRecord>();
+    Map<String, Integer> dictionary = new HashMap<String, Integer>();
+
+    long millis = 1580000000000L;
+    for (int i = 0; i < size; i++) {
+      Level level = LEVELS[i % LEVELS.length];
+      String loggerName = "com.acme.app.module" + (i % 7) + ".Component" + (i % 13);
+      String pattern = PATTERNS[i % PATTERNS.length];
+      String[] arguments = { "item-" + i, String.valueOf(i * 31 % 1000), String.valueOf(i % 50) };
+      millis += i % 5;
+
+      LogRecord logRecord = new LogRecord(level, format(pattern, arguments));
+      logRecord.setLoggerName(loggerName);
+      logRecord.setMillis(millis);
+      logRecords.add(logRecord);
+
+      // like the handler, the first occurrence of a string is sent in full and numbered on both sides
+      int loggerNameId = toDictionaryId(dictionary, loggerName);
+      int patternId = toDictionaryId(dictionary, pattern);
+      firstRecords.add(new RemoteLogRecord(level.getName(), loggerNameId == -1 ? loggerName : null, loggerNameId,
+          millis, patternId == -1 ? pattern : null, patternId, arguments, null));
+      laterRecords.add(new RemoteLogRecord(level.getName(), null, dictionary.get(loggerName), millis, null,
+          dictionary.get(pattern), arguments, null));
+    }
+
+    firstBatch = new RemoteLogBatch("page.0", 0, 0, firstRecords);
+    laterBatch = new RemoteLogBatch("page.0", dictionary.size(), 1, laterRecords);
+  }
+
+  private static int toDictionaryId(Map<String, Integer> dictionary, String value) {
+    Integer id = dictionary.get(value);
+    if (id != null) {
+      return id;
+    }
+    dictionary.put(value, dictionary.size());
+    return -1;
+  }
+
+  private static String format(String pattern, String[] arguments) {
+    String message = pattern;
+    for (String argument : arguments) {
+      message = message.replaceFirst("\\{\\}", argument);
+    }
+    return message;
+  }
+}
@@ -0,0 +1,255 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4gwt.remote.batching.client.CompactBatches;
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompactRemoteLoggingServletTest {
+
+  private static final Map<String, String> GZIP = Collections.singletonMap("Content-Encoding", "gzip");
+
+  private final Logger clientLogger = Logger.getLogger("com.acme");
+  private final List<LogRecord> logged = Collections.synchronizedList(new ArrayList<>());
+  private final Handler recorder = new Handler() {
+    @Override
+    public void publish(LogRecord record) {
+      logged.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  private final CompactRemoteLoggingServlet servlet = new CompactRemoteLoggingServlet();
+
+  @Before
+  public void recordClientLogs() {
+    clientLogger.addHandler(recorder);
+    clientLogger.setUseParentHandlers(false);
+    clientLogger.setLevel(Level.ALL);
+    servlet.setWorkerThreads(0);
+  }
+
+  @After
+  public void stopRecording() {
+    servlet.destroy();
+    clientLogger.removeHandler(recorder);
+    clientLogger.setUseParentHandlers(true);
+    clientLogger.setLevel(null);
+  }
+
+  @Test
+  public void inflatesCompressedBatches() throws Exception {
+    byte[] batch = CompactBatches.write(CompactBatches.sampleFirstBatch(100)).getBytes(StandardCharsets.UTF_8);
+    ServletFakes.Response response = post(gzip(batch), GZIP);
+
+    assertEquals(HttpServletResponse.SC_OK, response.status);
+    assertEquals("", response.body.toString());
+    assertLogged(CompactBatches.sampleLogRecords(100));
+  }
+
+  @Test
+  public void logsCompressedAndPlainBatchesAlike() throws Exception {
+    byte[] batch = CompactBatches.write(CompactBatches.sampleFirstBatch(20)).getBytes(StandardCharsets.UTF_8);
+    post(batch, Collections.emptyMap());
+    List<LogRecord> plain = new ArrayList<>(logged);
+    logged.clear();
+
+    post(gzip(batch), GZIP);
+    assertLogged(plain);
+  }
+
+  @Test
+  public void logsLargeBatchesInTheirOrderOnTheWorkers() throws Exception {
+    servlet.setWorkerThreads(2);
+    byte[] batch = CompactBatches.write(CompactBatches.sampleFirstBatch(1000)).getBytes(StandardCharsets.UTF_8);
+    post(batch, Collections.emptyMap());
+    servlet.destroy();
+
+    assertLogged(CompactBatches.sampleLogRecords(1000));
+  }
+
+  @Test
+  public void rejectsBatchesThatArentCompressed() throws Exception {
+    byte[] batch = CompactBatches.write(CompactBatches.sampleFirstBatch(5)).getBytes(StandardCharsets.UTF_8);
+    ServletFakes.Response response = post(batch, GZIP);
+
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.status);
+    assertEquals(0, logged.size());
+  }
+
+  @Test
+  public void rejectsTruncatedCompressedBatches() throws Exception {
+    byte[] batch = gzip(CompactBatches.write(CompactBatches.sampleFirstBatch(50)).getBytes(StandardCharsets.UTF_8));
+    byte[] truncated = new byte[batch.length / 2];
+    System.arraycopy(batch, 0, truncated, 0, truncated.length);
+
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, post(truncated, GZIP).status);
+  }
+
+  @Test
+  public void rejectsBatchesWithTooManyRecords() throws Exception {
+    servlet.setMaxBatchRecords(99);
+    byte[] batch = CompactBatches.write(CompactBatches.sampleFirstBatch(100)).getBytes(StandardCharsets.UTF_8);
+
+    assertEquals(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, post(gzip(batch), GZIP).status);
+    assertEquals(0, logged.size());
+  }
+
+  @Test
+  public void rejectsBatchesThatInflateTooMuch() throws Exception {
+    byte[] batch = CompactBatches.write(CompactBatches.sampleFirstBatch(100)).getBytes(StandardCharsets.UTF_8);
+    servlet.setMaxBatchChars(batch.length - 1);
+
+    assertEquals(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, post(gzip(batch), GZIP).status);
+    assertEquals(0, logged.size());
+
+    servlet.setMaxBatchChars(batch.length);
+    assertEquals(HttpServletResponse.SC_OK, post(gzip(batch), GZIP).status);
+  }
+
+  @Test
+  public void logsTheRecordsWithKnownIdsOfABatch() throws Exception {
+    byte[] batch = CompactBatches.write(CompactBatches.batchWithUnknownId()).getBytes(StandardCharsets.UTF_8);
+    ServletFakes.Response response = post(batch, Collections.emptyMap());
+
+    assertEquals(LogDictionary.UNKNOWN_ID, response.body.toString());
+    assertEquals(2, logged.size());
+    assertEquals("before", logged.get(0).getMessage());
+    assertEquals("after", logged.get(1).getMessage());
+  }
+
+  @Test
+  public void holdsBatchesThatOvertookTheirPredecessor() throws Exception {
+    HttpSession session = ServletFakes.session();
+    byte[] first = CompactBatches.write(CompactBatches.sampleFirstBatch(10)).getBytes(StandardCharsets.UTF_8);
+    byte[] later = CompactBatches.write(CompactBatches.sampleLaterBatch(10)).getBytes(StandardCharsets.UTF_8);
+
+    assertEquals("", post(later, Collections.emptyMap(), session).body.toString());
+    assertEquals(0, logged.size());
+
+    assertEquals("", post(first, Collections.emptyMap(), session).body.toString());
+    assertLogged(twice(CompactBatches.sampleLogRecords(10)));
+  }
+
+  @Test
+  public void logsHeldBatchesIfTheirPredecessorIsMissing() throws Exception {
+    HttpSession session = ServletFakes.session();
+    post(firstBatch(), Collections.emptyMap(), session);
+    assertEquals("", post(batchAfterAMissingOne(), Collections.emptyMap(), session).body.toString());
+    assertEquals(10, logged.size());
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (logged.size() < 20 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertLogged(twice(CompactBatches.sampleLogRecords(10)));
+  }
+
+  @Test
+  public void logsHeldBatchesOnShutdown() throws Exception {
+    HttpSession session = ServletFakes.session();
+    post(firstBatch(), Collections.emptyMap(), session);
+    post(batchAfterAMissingOne(), Collections.emptyMap(), session);
+    servlet.destroy();
+
+    assertLogged(twice(CompactBatches.sampleLogRecords(10)));
+  }
+
+  private static byte[] firstBatch() {
+    return CompactBatches.write(CompactBatches.sampleFirstBatch(10)).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the batch after {@link CompactBatches#sampleLaterBatch(int)}, with the same records
+   */
+  private static byte[] batchAfterAMissingOne() {
+    RemoteLogBatch later = CompactBatches.sampleLaterBatch(10);
+    return CompactBatches.write(new RemoteLogBatch(later.getDictionaryKey(), later.getDictionarySize(), 2,
+        later.getRecords())).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private ServletFakes.Response post(byte[] body, Map<String, String> headers) throws IOException, ServletException {
+    return post(body, headers, ServletFakes.session());
+  }
+
+  private ServletFakes.Response post(byte[] body, Map<String, String> headers, HttpSession session)
+          throws IOException, ServletException {
+    ServletFakes.Response response = new ServletFakes.Response();
+    servlet.service(ServletFakes.post(body, headers, session), response.proxy);
+    return response;
+  }
+
+  private void assertLogged(List<LogRecord> expected) {
+    assertEquals(expected.size(), logged.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getLevel(), logged.get(i).getLevel());
+      assertEquals(expected.get(i).getLoggerName(), logged.get(i).getLoggerName());
+      assertEquals(expected.get(i).getMillis(), logged.get(i).getMillis());
+      assertEquals(expected.get(i).getMessage(), logged.get(i).getMessage());
+    }
+  }
+
+  private static List<LogRecord> twice(List<LogRecord> records) {
+    List<LogRecord> twice = new ArrayList<>(records);
+    twice.addAll(records);
+    return twice;
+  }
+
+  static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(data);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,143 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeobfuscatedFrameCacheTest {
+
+  /**
+   * resymbolizes the frames by their method name and records the frames it was asked for.
+   */
+  private static class CountingResymbolizer implements StackTraceResymbolizer {
+
+    final List<List<StackTraceElement>> calls = new ArrayList<>();
+
+    @Override
+    public StackTraceElement[] resymbolize(StackTraceElement[] frames, String strongName) {
+      calls.add(Arrays.asList(frames));
+      StackTraceElement[] resolved = new StackTraceElement[frames.length];
+      for (int i = 0; i < frames.length; i++) {
+        resolved[i] = resolved(frames[i], strongName);
+      }
+      return resolved;
+    }
+  }
+
+  private final CountingResymbolizer resymbolizer = new CountingResymbolizer();
+
+  @Test
+  public void resymbolizesOnlyTheMissingFramesTogether() {
+    DeobfuscatedFrameCache cache = new DeobfuscatedFrameCache(1024 * 1024);
+    StackTraceElement[] first = { frame(1), frame(2) };
+    assertArrayEquals(resolved(first, "perm"), cache.resymbolize(resymbolizer, first, "perm"));
+
+    StackTraceElement[] second = { frame(2), frame(3), frame(1), frame(4) };
+    assertArrayEquals(resolved(second, "perm"), cache.resymbolize(resymbolizer, second, "perm"));
+    assertEquals(Arrays.asList(Arrays.asList(first), Arrays.asList(frame(3), frame(4))), resymbolizer.calls);
+
+    cache.resymbolize(resymbolizer, second, "perm");
+    assertEquals(2, resymbolizer.calls.size());
+    assertEquals(6, cache.getHits());
+    assertEquals(4, cache.getMisses());
+    assertEquals(0.6, cache.getHitRate(), 0.001);
+  }
+
+  @Test
+  public void deobfuscatesTheCauses() {
+    DeobfuscatedFrameCache cache = new DeobfuscatedFrameCache(1024 * 1024);
+    IllegalStateException cause = new IllegalStateException();
+    cause.setStackTrace(new StackTraceElement[] { frame(1) });
+    RuntimeException thrown = new RuntimeException(cause);
+    thrown.setStackTrace(new StackTraceElement[] { frame(2), frame(1) });
+
+    cache.deobfuscateStackTrace(resymbolizer, thrown, "perm");
+    assertArrayEquals(resolved(new StackTraceElement[] { frame(2), frame(1) }, "perm"), thrown.getStackTrace());
+    assertArrayEquals(resolved(new StackTraceElement[] { frame(1) }, "perm"), cause.getStackTrace());
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsedFramesOverBudget() {
+    long maxBytes = 16 * 1000;
+    DeobfuscatedFrameCache cache = new DeobfuscatedFrameCache(maxBytes);
+    for (int i = 0; i < 1000; i++) {
+      cache.resymbolize(resymbolizer, new StackTraceElement[] { frame(i) }, "perm");
+      assertTrue(cache.getBytes() + " bytes", cache.getBytes() <= maxBytes);
+    }
+    assertEquals(1000, cache.getMisses());
+    assertTrue(cache.getEvictions() > 900);
+
+    // the last frame is still cached, the first one has been evicted
+    cache.resymbolize(resymbolizer, new StackTraceElement[] { frame(999) }, "perm");
+    assertEquals(1, cache.getHits());
+    cache.resymbolize(resymbolizer, new StackTraceElement[] { frame(0) }, "perm");
+    assertEquals(1001, cache.getMisses());
+
+    cache.clear();
+    assertEquals(0, cache.getBytes());
+  }
+
+  @Test
+  public void evictsThePermutation() {
+    DeobfuscatedFrameCache cache = new DeobfuscatedFrameCache(1024 * 1024);
+    StackTraceElement[] frames = { frame(1), frame(2) };
+    cache.resymbolize(resymbolizer, frames, "perm1");
+    long bytes = cache.getBytes();
+    cache.resymbolize(resymbolizer, frames, "perm2");
+
+    cache.evictPermutation("perm1");
+    assertEquals(bytes, cache.getBytes());
+    assertEquals(0, cache.getEvictions());
+
+    cache.resymbolize(resymbolizer, frames, "perm2");
+    assertEquals(2, cache.getHits());
+    assertArrayEquals(resolved(frames, "perm1"), cache.resymbolize(resymbolizer, frames, "perm1"));
+    assertEquals(3, resymbolizer.calls.size());
+  }
+
+  private static StackTraceElement frame(int number) {
+    return new StackTraceElement("Unknown", "a" + number, "app.js", number);
+  }
+
+  private static StackTraceElement resolved(StackTraceElement frame, String strongName) {
+    return new StackTraceElement("com.acme." + strongName, frame.getMethodName(), "Grid.java", frame.getLineNumber());
+  }
+
+  private static StackTraceElement[] resolved(StackTraceElement[] frames, String strongName) {
+    StackTraceElement[] resolved = new StackTraceElement[frames.length];
+    for (int i = 0; i < frames.length; i++) {
+      resolved[i] = resolved(frames[i], strongName);
+    }
+    return resolved;
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import org.junit.Test;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ErrorAggregatorTest {
+
+  private final ErrorAggregator aggregator = new ErrorAggregator(2, 5, Level.WARNING);
+
+  @Test
+  public void ignoresTheDigitsOfMessages() {
+    assertTrue(aggregator.admit(record("Order 123 failed", 1000)));
+    assertFalse(aggregator.admit(record("Order 4567 failed", 2000)));
+    assertTrue(aggregator.admit(record("Order failed", 3000)));
+  }
+
+  @Test
+  public void logsTheRecordsOfNewFingerprintsIfTheTableIsFull() {
+    assertTrue(aggregator.admit(record("first", 1000)));
+    assertTrue(aggregator.admit(record("second", 1000)));
+    assertTrue(aggregator.admit(record("third", 1000)));
+    assertTrue(aggregator.admit(record("third", 1000)));
+    assertFalse(aggregator.admit(record("first", 1000)));
+  }
+
+  @Test
+  public void summarizesTheCountedRecordsAndForgetsUnseenFingerprints() {
+    assertTrue(aggregator.admit(record("Order 1 failed", 1000)));
+    assertFalse(aggregator.admit(record("Order 2 failed", 2000)));
+    assertFalse(aggregator.admit(record("Order 3 failed", 3000)));
+    assertTrue(aggregator.admit(record("Payment failed", 1000)));
+
+    List<LogRecord> summaries = aggregator.flush();
+    assertEquals(1, summaries.size());
+    assertEquals(Level.WARNING, summaries.get(0).getLevel());
+    assertEquals("com.acme.Orders", summaries.get(0).getLoggerName());
+    assertEquals(3000, summaries.get(0).getMillis());
+    assertTrue(summaries.get(0).getMessage(), summaries.get(0).getMessage().startsWith("2 more times between "));
+    assertTrue(summaries.get(0).getMessage(), summaries.get(0).getMessage().endsWith(": Order 1 failed"));
+
+    // the fingerprints seen in the last window are still counted
+    assertFalse(aggregator.admit(record("Order 4 failed", 4000)));
+    assertEquals(1, aggregator.flush().size());
+    // unseen in the last window, so it is forgotten
+    assertTrue(aggregator.admit(record("Payment failed", 5000)));
+  }
+
+  @Test
+  public void countsTheRepeatsOfStructuredRecords() {
+    assertTrue(aggregator.admit(patternRecord(1, 1000, 1000)));
+    assertFalse(aggregator.admit(patternRecord(5, 2000, 6000)));
+
+    List<LogRecord> summaries = aggregator.flush();
+    assertEquals(1, summaries.size());
+    assertEquals(6000, summaries.get(0).getMillis());
+    assertTrue(summaries.get(0).getMessage(), summaries.get(0).getMessage().startsWith("5 more times between "));
+    assertTrue(summaries.get(0).getMessage(), summaries.get(0).getMessage().endsWith(": Order {} failed"));
+  }
+
+  @Test
+  public void doesntAggregateLowerLevels() {
+    LogRecord info = record("Order 1 shipped", 1000);
+    info.setLevel(Level.INFO);
+    assertTrue(aggregator.admit(info));
+    assertTrue(aggregator.admit(info));
+    assertEquals(0, aggregator.flush().size());
+  }
+
+  @Test
+  public void logsTheRecordsInFullAfterTheLastWindow() {
+    assertTrue(aggregator.admit(record("Order 1 failed", 1000)));
+    assertFalse(aggregator.admit(record("Order 2 failed", 2000)));
+
+    assertEquals(1, aggregator.close().size());
+    // a batch that was being logged while the aggregation stopped
+    assertTrue(aggregator.admit(record("Order 3 failed", 3000)));
+    assertEquals(0, aggregator.flush().size());
+  }
+
+  private static LogRecord record(String message, long millis) {
+    LogRecord record = new LogRecord(Level.WARNING, message);
+    record.setLoggerName("com.acme.Orders");
+    record.setMillis(millis);
+    return record;
+  }
+
+  private static PatternLogRecord patternRecord(int repeatCount, long millis, long lastMillis) {
+    RemoteLogRecord record = new RemoteLogRecord(Level.WARNING.getName(), "com.acme.Orders", millis, "Order {} failed",
+        new String[] { String.valueOf(millis) }, null);
+    record.setRepeats(repeatCount, lastMillis);
+    return new PatternLogRecord(record);
+  }
+}
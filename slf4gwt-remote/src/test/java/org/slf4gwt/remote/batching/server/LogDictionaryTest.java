@@ -0,0 +1,162 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import org.junit.Test;
+import org.slf4gwt.remote.batching.shared.RemoteLogRecord;
+
+import javax.servlet.http.HttpSession;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LogDictionaryTest {
+
+  private final LogDictionary dictionary = new LogDictionary();
+
+  @Test
+  public void holdsBatchesThatOvertookTheirPredecessors() {
+    assertEquals(LogDictionary.Turn.TAKEN, dictionary.tryStartTurn(0));
+    // the batch in progress has the turn
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.tryStartTurn(1));
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.hold(held(1), 0));
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.tryStartTurn(2));
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.hold(held(2), 0));
+
+    LogDictionary.HeldBatch next = dictionary.finishTurn(0, 10);
+    assertEquals(1, next.sequence);
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.tryStartTurn(3));
+    next = dictionary.finishTurn(1, 10);
+    assertEquals(2, next.sequence);
+    assertNull(dictionary.finishTurn(2, 10));
+    assertEquals(LogDictionary.Turn.TAKEN, dictionary.tryStartTurn(3));
+  }
+
+  @Test
+  public void holdsBatchesThatOvertookTheirPredecessorsAfterAnIdleTime() {
+    assertEquals(LogDictionary.Turn.TAKEN, dictionary.tryStartTurn(0));
+    assertNull(dictionary.finishTurn(0, 0));
+
+    // the gap is timed from the arrival of the batch after it, not from the last batch
+    long idleMillis = 10 * LogDictionary.REORDER_TIMEOUT_MILLIS;
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.tryStartTurn(2));
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.hold(held(2), idleMillis));
+    assertNull(dictionary.releaseExpiredBatch(idleMillis + 10));
+
+    assertEquals(LogDictionary.Turn.TAKEN, dictionary.tryStartTurn(1));
+    assertEquals(2, dictionary.finishTurn(1, idleMillis + 20).sequence);
+  }
+
+  @Test
+  public void givesUpMissingBatchesAfterTheTimeout() {
+    assertEquals(LogDictionary.Turn.TAKEN, dictionary.tryStartTurn(0));
+    assertNull(dictionary.finishTurn(0, 0));
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.hold(held(2), 1000));
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.hold(held(4), 1500));
+
+    assertEquals(LogDictionary.REORDER_TIMEOUT_MILLIS - 500, dictionary.scheduleRelease(1500));
+    assertEquals(-1, dictionary.scheduleRelease(1500));
+    assertNull(dictionary.releaseExpiredBatch(1000 + LogDictionary.REORDER_TIMEOUT_MILLIS - 1));
+    LogDictionary.HeldBatch released = dictionary.releaseExpiredBatch(1000 + LogDictionary.REORDER_TIMEOUT_MILLIS);
+    assertEquals(2, released.sequence);
+    // the batch missing before the next held batch has been missing as long
+    assertEquals(4, dictionary.finishTurn(2, 1000 + LogDictionary.REORDER_TIMEOUT_MILLIS).sequence);
+    assertNull(dictionary.finishTurn(4, 1000 + LogDictionary.REORDER_TIMEOUT_MILLIS));
+
+    // a late batch is processed in its own turn, the dictionary detects whether it misses strings
+    assertEquals(LogDictionary.Turn.TAKEN, dictionary.tryStartTurn(1));
+  }
+
+  @Test
+  public void batchesFarAheadDontWait() {
+    assertEquals(LogDictionary.Turn.TAKEN, dictionary.tryStartTurn(100));
+    assertNull(dictionary.finishTurn(100, 0));
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.tryStartTurn(102));
+  }
+
+  @Test
+  public void boundsTheHeldRecords() {
+    assertEquals(LogDictionary.Turn.TAKEN, dictionary.tryStartTurn(0));
+    List<RemoteLogRecord> records = Collections.nCopies(6000, record("com.acme.Grid", -1, "Rendered {} rows", -1));
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.hold(held(1, records), 0));
+    assertEquals(LogDictionary.Turn.NONE, dictionary.hold(held(2, records), 0));
+
+    assertEquals(1, dictionary.releaseAll().size());
+    assertEquals(LogDictionary.Turn.EARLY, dictionary.hold(held(2, records), 0));
+  }
+
+  @Test
+  public void batchesWithoutSequenceDontTakeTurns() {
+    assertEquals(LogDictionary.Turn.NONE, dictionary.tryStartTurn(-1));
+    assertEquals(LogDictionary.Turn.TAKEN, dictionary.tryStartTurn(0));
+    assertEquals(LogDictionary.Turn.NONE, dictionary.tryStartTurn(-1));
+  }
+
+  @Test
+  public void resolvesIdsInTheOrderOfTheClient() {
+    assertTrue(dictionary.startBatch(0));
+    RemoteLogRecord first = dictionary.resolve(record("com.acme.Grid", -1, "Rendered {} rows", -1));
+    assertEquals("com.acme.Grid", first.getLoggerName());
+
+    assertTrue(dictionary.startBatch(2));
+    RemoteLogRecord later = dictionary.resolve(record(null, 0, null, 1));
+    assertEquals("com.acme.Grid", later.getLoggerName());
+    assertEquals("Rendered {} rows", later.getMessage());
+
+    assertNull(dictionary.resolve(record(null, 2, null, 1)));
+    assertFalse(dictionary.startBatch(5));
+    assertTrue(dictionary.startBatch(0));
+  }
+
+  @Test
+  public void keepsTheDictionariesInTheSession() {
+    HttpSession session = ServletFakes.session();
+    LogDictionary dictionary = LogDictionary.forKey(session, "page.0");
+
+    assertSame(dictionary, LogDictionary.forKey(session, "page.0"));
+    for (int i = 1; i <= 8; i++) {
+      LogDictionary.forKey(session, "page." + i);
+    }
+    // the least recently used dictionary is dropped
+    assertFalse(dictionary == LogDictionary.forKey(session, "page.0"));
+  }
+
+  private static LogDictionary.HeldBatch held(int sequence) {
+    return held(sequence, Collections.singletonList(record("com.acme.Grid", -1, "Rendered {} rows", -1)));
+  }
+
+  private static LogDictionary.HeldBatch held(int sequence, List<RemoteLogRecord> records) {
+    return new LogDictionary.HeldBatch(sequence, 0, null, "session", records);
+  }
+
+  private static RemoteLogRecord record(String loggerName, int loggerNameId, String pattern, int patternId) {
+    return new RemoteLogRecord("INFO", loggerName, loggerNameId, 1580000000000L, pattern, patternId,
+        new String[] { "42" }, null);
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import com.google.gwt.user.client.rpc.RpcRequestBuilder;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4gwt.remote.batching.client.CompactBatches;
+import org.slf4gwt.remote.batching.client.RpcRequestWriter;
+import org.slf4gwt.remote.batching.shared.RemoteLogBatch;
+import org.slf4gwt.remote.batching.shared.RemoteStructuredLoggingService;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteBatchLoggingServiceImplTest {
+
+  private final Logger clientLogger = Logger.getLogger("com.acme");
+  private final List<LogRecord> logged = Collections.synchronizedList(new ArrayList<>());
+  private final Handler recorder = new Handler() {
+    @Override
+    public void publish(LogRecord record) {
+      logged.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  private final RemoteBatchLoggingServiceImpl service = new RemoteBatchLoggingServiceImpl() {
+    @Override
+    protected SerializationPolicy doGetSerializationPolicy(HttpServletRequest request, String moduleBaseURL,
+                                                           String strongName) {
+      return RpcRequestWriter.POLICY;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+      return ServletFakes.context();
+    }
+  };
+
+  @Before
+  public void recordClientLogs() {
+    clientLogger.addHandler(recorder);
+    clientLogger.setUseParentHandlers(false);
+    clientLogger.setLevel(Level.ALL);
+    service.setWorkerThreads(0);
+  }
+
+  @After
+  public void stopRecording() {
+    service.destroy();
+    clientLogger.removeHandler(recorder);
+    clientLogger.setUseParentHandlers(true);
+    clientLogger.setLevel(null);
+  }
+
+  @Test
+  public void logsTheRecordsWithKnownIdsOfABatch() throws Exception {
+    ServletFakes.Response response = logStructured(CompactBatches.batchWithUnknownId());
+
+    assertEquals(200, response.status);
+    assertTrue(response.body.toString(), response.body.toString().startsWith("//OK"));
+    assertTrue(response.body.toString(), response.body.toString().contains(LogDictionary.UNKNOWN_ID));
+    assertEquals(2, logged.size());
+    assertEquals("before", logged.get(0).getMessage());
+    assertEquals("after", logged.get(1).getMessage());
+  }
+
+  private ServletFakes.Response logStructured(RemoteLogBatch batch) throws Exception {
+    String payload = RpcRequestWriter.write(
+        RemoteStructuredLoggingService.class.getMethod("logStructuredOnServer", RemoteLogBatch.class), batch);
+    Map<String, String> headers = new HashMap<>();
+    headers.put("Content-Type", "text/x-gwt-rpc; charset=utf-8");
+    headers.put(RpcRequestBuilder.STRONG_NAME_HEADER, "0123456789ABCDEF0123456789ABCDEF");
+    HttpServletRequest request = ServletFakes.post(payload.getBytes(StandardCharsets.UTF_8), headers,
+        ServletFakes.session());
+    ServletFakes.Response response = new ServletFakes.Response();
+    service.service(request, response.proxy);
+    return response;
+  }
+}
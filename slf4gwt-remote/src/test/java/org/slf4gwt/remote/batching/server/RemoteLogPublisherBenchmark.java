@@ -0,0 +1,133 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import com.google.gwt.logging.server.RemoteLoggingServiceUtil;
+import com.google.gwt.logging.server.RemoteLoggingServiceUtil.RemoteLoggingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4gwt.remote.batching.client.CompactBatches;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * measures how many batches per second the server logs when a batch goes through the publisher as a whole, record by
+ * record, and record by record through {@link RemoteLoggingServiceUtil} as before the publisher resolved the
+ * permutation and the loggers once per batch.
+ *
+ * The records are handed to a handler that only counts them. It isn't run by the build, start {@link #main(String[])}
+ * with the test class path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RemoteLogPublisherBenchmark {
+
+  @Param({ "1", "100", "1000" })
+  public int records;
+
+  private final Logger clientLogger = Logger.getLogger("com.acme");
+  private final Handler counter = new Handler() {
+    @Override
+    public void publish(LogRecord record) {
+      logged++;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+  private long logged;
+
+  private final RemoteLogPublisher publisher = new RemoteLogPublisher();
+  private List<LogRecord> batch;
+
+  @Setup
+  public void setUp() {
+    clientLogger.addHandler(counter);
+    clientLogger.setUseParentHandlers(false);
+    clientLogger.setLevel(Level.ALL);
+    publisher.setWorkerThreads(0);
+    batch = CompactBatches.sampleLogRecords(records);
+  }
+
+  @TearDown
+  public void tearDown() {
+    publisher.shutdown();
+    clientLogger.removeHandler(counter);
+    clientLogger.setUseParentHandlers(true);
+    clientLogger.setLevel(null);
+  }
+
+  @Benchmark
+  public String publishBatch() {
+    return publisher.publish(batch, null);
+  }
+
+  @Benchmark
+  public String publishRecordByRecord() {
+    String result = null;
+    for (LogRecord record : batch) {
+      result = publisher.publish(record, null);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public long publishThroughServiceUtil() throws RemoteLoggingException {
+    for (LogRecord record : batch) {
+      RemoteLoggingServiceUtil.logOnServer(record, null, null, null);
+    }
+    return logged;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RemoteLogPublisherBenchmark.class.getSimpleName()).build()).run();
+  }
+}
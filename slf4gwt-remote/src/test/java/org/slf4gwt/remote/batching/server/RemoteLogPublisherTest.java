@@ -0,0 +1,331 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemoteLogPublisherTest {
+
+  private final Logger clientLogger = Logger.getLogger("com.acme.publisher");
+  private final List<LogRecord> logged = Collections.synchronizedList(new ArrayList<>());
+  private final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+  private static final String WORKER_PREFIX = "slf4gwt-remote-log-";
+
+  /** blocks the workers until it is counted down, the threads of the callers aren't blocked */
+  private volatile CountDownLatch gate = new CountDownLatch(0);
+
+  private final Handler recorder = new Handler() {
+    @Override
+    public void publish(LogRecord record) {
+      try {
+        if (Thread.currentThread().getName().startsWith(WORKER_PREFIX)) {
+          gate.await();
+        }
+        // give the other worker a chance to overtake
+        Thread.sleep(record.getSequenceNumber() % 3);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      threads.add(Thread.currentThread().getName());
+      logged.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  private final RemoteLogPublisher publisher = new RemoteLogPublisher();
+
+  @Before
+  public void recordClientLogs() {
+    clientLogger.addHandler(recorder);
+    clientLogger.setUseParentHandlers(false);
+  }
+
+  @After
+  public void stopRecording() {
+    gate.countDown();
+    publisher.shutdown();
+    clientLogger.removeHandler(recorder);
+    clientLogger.setUseParentHandlers(true);
+  }
+
+  @Test
+  public void logsTheBatchesOfASessionInOrder() {
+    publisher.setWorkerThreads(4);
+    for (int batch = 0; batch < 200; batch++) {
+      assertNull(publisher.publish(batch("session" + batch % 3, batch), null, "session" + batch % 3));
+    }
+    publisher.shutdown();
+
+    assertEquals(200 * 2, logged.size());
+    Map<String, Integer> lastBatches = new HashMap<>();
+    for (LogRecord record : logged) {
+      String session = (String) record.getParameters()[0];
+      int batch = (Integer) record.getParameters()[1];
+      Integer last = lastBatches.put(session, batch);
+      assertTrue(session + ": " + batch + " after " + last, last == null || last <= batch);
+    }
+  }
+
+  @Test
+  public void rejectsBatchesIfTheQueueIsFull() throws InterruptedException {
+    gate = new CountDownLatch(1);
+    publisher.setWorkerThreads(1);
+    publisher.setQueueCapacity(2);
+    publisher.publish(batch("session", 0), null, "session");
+    // the worker took the first batch and waits at the gate
+    waitFor(() -> blockedWorkers() == 1);
+    publisher.publish(batch("session", 1), null, "session");
+    publisher.publish(batch("session", 2), null, "session");
+
+    try {
+      publisher.publish(batch("other", 0), null, "other");
+      fail("the queue is full");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+    gate.countDown();
+    publisher.shutdown();
+    assertEquals(3 * 2, logged.size());
+  }
+
+  @Test
+  public void callerLogsIfTheQueueIsFull() throws InterruptedException {
+    gate = new CountDownLatch(1);
+    publisher.setWorkerThreads(1);
+    publisher.setQueueCapacity(1);
+    publisher.setOverloadPolicy(RemoteLogPublisher.OverloadPolicy.CALLER_RUNS);
+    publisher.publish(batch("session", 0), null, "session");
+    waitFor(() -> blockedWorkers() == 1);
+    publisher.publish(batch("session", 1), null, "session");
+
+    publisher.publish(batch("other", 0), null, "other");
+    assertEquals(2, logged.size());
+    assertEquals(Thread.currentThread().getName(), threads.get(1));
+
+    gate.countDown();
+    publisher.shutdown();
+    assertEquals(3 * 2, logged.size());
+  }
+
+  @Test
+  public void callerWaitsForItsSessionIfTheQueueIsFull() throws InterruptedException {
+    gate = new CountDownLatch(1);
+    publisher.setWorkerThreads(1);
+    publisher.setQueueCapacity(1);
+    publisher.setOverloadPolicy(RemoteLogPublisher.OverloadPolicy.CALLER_RUNS);
+    publisher.publish(batch("session", 0), null, "session");
+    waitFor(() -> blockedWorkers() == 1);
+    publisher.publish(batch("session", 1), null, "session");
+
+    Thread caller = new Thread(() -> publisher.publish(batch("session", 2), null, "session"));
+    caller.start();
+    // the batch is neither logged before the queued ones nor queued beyond the capacity
+    waitFor(() -> caller.getState() == Thread.State.WAITING);
+    assertEquals(0, logged.size());
+
+    gate.countDown();
+    caller.join(TimeUnit.SECONDS.toMillis(10));
+    publisher.shutdown();
+    assertEquals(3 * 2, logged.size());
+    for (int i = 0; i < logged.size(); i++) {
+      assertEquals(i / 2, logged.get(i).getParameters()[1]);
+    }
+  }
+
+  @Test
+  public void appliesTheWorkerThreadsToTheRunningWorkers() throws InterruptedException {
+    gate = new CountDownLatch(1);
+    publisher.setWorkerThreads(1);
+    for (int session = 0; session < 3; session++) {
+      publisher.publish(batch("session" + session, 0), null, "session" + session);
+    }
+    waitFor(() -> blockedWorkers() == 1);
+
+    publisher.setWorkerThreads(3);
+    waitFor(() -> blockedWorkers() == 3);
+
+    // without workers a new session is logged by the caller
+    publisher.setWorkerThreads(0);
+    publisher.publish(batch("other", 0), null, "other");
+    assertEquals(2, logged.size());
+    assertEquals(Thread.currentThread().getName(), threads.get(0));
+
+    gate.countDown();
+    publisher.shutdown();
+    assertEquals(4 * 2, logged.size());
+  }
+
+  @Test
+  public void appliesTheQueueCapacityToTheNextBatch() throws InterruptedException {
+    gate = new CountDownLatch(1);
+    publisher.setWorkerThreads(1);
+    publisher.setQueueCapacity(1);
+    publisher.publish(batch("session", 0), null, "session");
+    waitFor(() -> blockedWorkers() == 1);
+    publisher.publish(batch("session", 1), null, "session");
+    try {
+      publisher.publish(batch("session", 2), null, "session");
+      fail("the queue is full");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+
+    publisher.setQueueCapacity(2);
+    publisher.publish(batch("session", 2), null, "session");
+    gate.countDown();
+    publisher.shutdown();
+    assertEquals(3 * 2, logged.size());
+  }
+
+  @Test
+  public void publishesBatchesWhileTheyAreRead() {
+    publisher.setWorkerThreads(0);
+    RemoteLogPublisher.Publication publication = publisher.open(null, "session");
+    for (int i = 0; i < 256; i++) {
+      publication.add(record("session", i));
+    }
+    assertEquals(256, logged.size());
+
+    publication.add(record("session", 256));
+    assertEquals(256, logged.size());
+    assertNull(publication.finish());
+    assertEquals(257, logged.size());
+  }
+
+  @Test
+  public void rejectsOnlyTheFirstChunkOfABatch() throws InterruptedException {
+    gate = new CountDownLatch(1);
+    publisher.setWorkerThreads(1);
+    publisher.setQueueCapacity(2);
+    publisher.publish(batch("session", 0), null, "session");
+    waitFor(() -> blockedWorkers() == 1);
+
+    RemoteLogPublisher.Publication publication = publisher.open(null, "session");
+    for (int i = 0; i < 2 * 256; i++) {
+      publication.add(record("session", i));
+    }
+    try {
+      RemoteLogPublisher.Publication rejected = publisher.open(null, "other");
+      for (int i = 0; i < 256; i++) {
+        rejected.add(record("other", i));
+      }
+      fail("the queue is full");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+
+    // the queue is full, but the third chunk of the accepted batch waits for room instead of being rejected
+    Thread reader = new Thread(() -> {
+      for (int i = 2 * 256; i < 3 * 256; i++) {
+        publication.add(record("session", i));
+      }
+      publication.finish();
+    });
+    reader.start();
+    waitFor(() -> reader.getState() == Thread.State.WAITING);
+
+    gate.countDown();
+    reader.join(TimeUnit.SECONDS.toMillis(10));
+    publisher.shutdown();
+    assertEquals(2 + 3 * 256, logged.size());
+    for (int i = 0; i < 3 * 256; i++) {
+      assertEquals(i, logged.get(2 + i).getParameters()[1]);
+    }
+  }
+
+  /**
+   * @return the number of workers that wait at the gate
+   */
+  private static int blockedWorkers() {
+    int blocked = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith(WORKER_PREFIX) && thread.getState() == Thread.State.WAITING
+              && isAtTheGate(thread.getStackTrace())) {
+        blocked++;
+      }
+    }
+    return blocked;
+  }
+
+  private static boolean isAtTheGate(StackTraceElement[] frames) {
+    for (StackTraceElement frame : frames) {
+      if (frame.getClassName().equals(CountDownLatch.class.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      assertTrue("timed out", System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  private List<LogRecord> batch(String session, int batch) {
+    List<LogRecord> records = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      records.add(record(session, batch));
+    }
+    return records;
+  }
+
+  private LogRecord record(String session, int batch) {
+    LogRecord record = new LogRecord(Level.INFO, "batch {1} of {0}");
+    record.setLoggerName(clientLogger.getName());
+    record.setParameters(new Object[] { session, batch });
+    return record;
+  }
+}
@@ -0,0 +1,220 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * fakes of the servlet API for the tests of the servlets, they implement only what the servlets call.
+ */
+final class ServletFakes {
+
+  private ServletFakes() {
+  }
+
+  /**
+   * @return a session that keeps its attributes
+   */
+  static HttpSession session() {
+    Map<String, Object> attributes = new HashMap<>();
+    return (HttpSession) Proxy.newProxyInstance(ServletFakes.class.getClassLoader(),
+        new Class<?>[] { HttpSession.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getAttribute":
+              return attributes.get((String) args[0]);
+            case "setAttribute":
+              attributes.put((String) args[0], args[1]);
+              return null;
+            case "removeAttribute":
+              attributes.remove((String) args[0]);
+              return null;
+            case "getId":
+              return "session-" + System.identityHashCode(proxy);
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  /**
+   * @return a servlet context that drops its log
+   */
+  static ServletContext context() {
+    return (ServletContext) Proxy.newProxyInstance(ServletFakes.class.getClassLoader(),
+        new Class<?>[] { ServletContext.class }, (proxy, method, args) -> {
+          if (method.getName().equals("log")) {
+            return null;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  /**
+   * @return a POST request with the body and the headers
+   */
+  static HttpServletRequest post(byte[] body, Map<String, String> headers, HttpSession session) {
+    String contentType = headers.get("Content-Type");
+    int charset = contentType != null ? contentType.indexOf("charset=") : -1;
+    String[] characterEncoding = { charset != -1 ? contentType.substring(charset + "charset=".length()) : null };
+    return (HttpServletRequest) Proxy.newProxyInstance(ServletFakes.class.getClassLoader(),
+        new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getMethod":
+              return "POST";
+            case "getProtocol":
+              return "HTTP/1.1";
+            case "getHeader":
+              return headers.get((String) args[0]);
+            case "getContentType":
+              return headers.get("Content-Type");
+            case "getParameter":
+              return null;
+            case "getCharacterEncoding":
+              return characterEncoding[0];
+            case "setCharacterEncoding":
+              characterEncoding[0] = (String) args[0];
+              return null;
+            case "getContentLength":
+              return body.length;
+            case "getInputStream":
+              return inputStream(body);
+            case "getReader":
+              return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), characterEncoding[0]));
+            case "getSession":
+              return session;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  private static ServletInputStream inputStream(byte[] body) {
+    ByteArrayInputStream in = new ByteArrayInputStream(body);
+    return new ServletInputStream() {
+      @Override
+      public int read() {
+        return in.read();
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int length) {
+        return in.read(buffer, offset, length);
+      }
+
+      @Override
+      public boolean isFinished() {
+        return in.available() == 0;
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setReadListener(ReadListener readListener) {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private static ServletOutputStream outputStream(StringWriter body) {
+    return new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] buffer, int offset, int length) {
+        body.write(new String(buffer, offset, length, StandardCharsets.UTF_8));
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * a response that records the status and the body.
+   */
+  static final class Response {
+
+    int status = HttpServletResponse.SC_OK;
+    final StringWriter body = new StringWriter();
+
+    final HttpServletResponse proxy = (HttpServletResponse) Proxy.newProxyInstance(
+        ServletFakes.class.getClassLoader(), new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "sendError":
+              status = (Integer) args[0];
+              if (args.length > 1) {
+                body.write((String) args[1]);
+              }
+              return null;
+            case "setStatus":
+              status = (Integer) args[0];
+              return null;
+            case "setContentType":
+            case "setCharacterEncoding":
+            case "setContentLength":
+            case "setHeader":
+              return null;
+            case "getWriter":
+              return new PrintWriter(body, true);
+            case "getOutputStream":
+              return outputStream(body);
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+}
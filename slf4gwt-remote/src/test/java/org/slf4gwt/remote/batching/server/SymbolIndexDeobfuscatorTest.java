@@ -0,0 +1,251 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.remote.batching.server;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.core.ext.linker.CompilationResult;
+import com.google.gwt.core.ext.linker.EmittedArtifact;
+import com.google.gwt.core.ext.linker.SelectionProperty;
+import com.google.gwt.core.ext.linker.SoftPermutation;
+import com.google.gwt.core.ext.linker.SymbolData;
+import com.google.gwt.core.server.StackTraceDeobfuscator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4gwt.remote.batching.linker.SymbolIndexLinker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class SymbolIndexDeobfuscatorTest {
+
+  /** the permutation of a small compiled module, its symbol map is a test resource */
+  private static final String STRONG_NAME = "20FCCA36F36D99AB668B89E5366D5ACC";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<String[]> symbols = new ArrayList<>();
+  private File symbolMaps;
+  private File symbolIndexes;
+
+  @Before
+  public void linkSymbolIndex() throws IOException, UnableToCompleteException {
+    symbolMaps = folder.newFolder("symbolMaps");
+    symbolIndexes = folder.newFolder("symbolIndexes");
+
+    StringBuilder symbolMap = new StringBuilder();
+    try (InputStream in = getClass().getResourceAsStream(STRONG_NAME + ".symbolMap.gz");
+         BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(in),
+                 StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        symbolMap.append(line).append('\n');
+        if (!line.startsWith("#")) {
+          symbols.add(line.split(",", -1));
+        }
+      }
+    }
+    Files.write(new File(symbolMaps, STRONG_NAME + ".symbolMap").toPath(),
+            symbolMap.toString().getBytes(StandardCharsets.UTF_8));
+
+    ArtifactSet linked = new SymbolIndexLinker().link(TreeLogger.NULL, null,
+            new ArtifactSet(Collections.singletonList(new Permutation())), true);
+    for (EmittedArtifact artifact : linked.find(EmittedArtifact.class)) {
+      try (InputStream contents = artifact.getContents(TreeLogger.NULL)) {
+        Files.copy(contents, new File(symbolIndexes, artifact.getPartialPath()).toPath());
+      }
+    }
+  }
+
+  @Test
+  public void resolvesFramesLikeTheSymbolMaps() {
+    List<StackTraceElement> frames = new ArrayList<>();
+    for (String[] symbol : symbols) {
+      frames.add(new StackTraceElement("Unknown", symbol[0], "app.js", -1));
+      frames.add(new StackTraceElement("Unknown", symbol[0], "Main.java", 42));
+    }
+    frames.add(new StackTraceElement("Unknown", "notASymbol", null, -1));
+    StackTraceElement[] obfuscated = frames.toArray(new StackTraceElement[0]);
+    assertEquals(3181, obfuscated.length);
+
+    StackTraceElement[] expected = StackTraceDeobfuscator.fromFileSystem(symbolMaps.getPath())
+            .resymbolize(obfuscated, STRONG_NAME);
+    StackTraceElement[] resolved = new SymbolIndexDeobfuscator(symbolIndexes.toPath())
+            .resymbolize(obfuscated, STRONG_NAME);
+
+    assertArrayEquals(expected, resolved);
+    assertNotEquals(obfuscated[0], resolved[0]);
+  }
+
+  @Test
+  public void keepsTheFramesOfUnknownPermutations() {
+    StackTraceElement[] frames = { new StackTraceElement("Unknown", symbols.get(0)[0], "app.js", -1) };
+    SymbolIndexDeobfuscator deobfuscator = new SymbolIndexDeobfuscator(symbolIndexes.toPath());
+
+    assertSame(frames[0], deobfuscator.resymbolize(frames, "0123456789ABCDEF0123456789ABCDEF")[0]);
+    assertSame(frames[0], deobfuscator.resymbolize(frames, "../" + STRONG_NAME)[0]);
+    assertSame(frames[0], deobfuscator.resymbolize(frames, null)[0]);
+  }
+
+  @Test
+  public void mapsTheIndexAgainAfterTheEviction() {
+    StackTraceElement[] frames = { new StackTraceElement("Unknown", symbols.get(0)[0], "app.js", -1) };
+    SymbolIndexDeobfuscator deobfuscator = new SymbolIndexDeobfuscator(symbolIndexes.toPath());
+    StackTraceElement resolved = deobfuscator.resymbolize(frames, STRONG_NAME)[0];
+
+    deobfuscator.evictPermutation(STRONG_NAME);
+    assertEquals(resolved, deobfuscator.resymbolize(frames, STRONG_NAME)[0]);
+  }
+
+  /**
+   * the compilation result of the permutation, the linker only reads its strong name and symbols.
+   */
+  private final class Permutation extends CompilationResult {
+
+    Permutation() {
+      super(SymbolIndexLinker.class);
+    }
+
+    @Override
+    public String[] getJavaScript() {
+      return new String[0];
+    }
+
+    @Override
+    public int getPermutationId() {
+      return 0;
+    }
+
+    @Override
+    public SortedSet<SortedMap<SelectionProperty, String>> getPropertyMap() {
+      return null;
+    }
+
+    @Override
+    public SoftPermutation[] getSoftPermutations() {
+      return new SoftPermutation[0];
+    }
+
+    @Override
+    public String getStrongName() {
+      return STRONG_NAME;
+    }
+
+    @Override
+    public SymbolData[] getSymbolMap() {
+      SymbolData[] symbolData = new SymbolData[symbols.size()];
+      for (int i = 0; i < symbolData.length; i++) {
+        symbolData[i] = new Symbol(symbols.get(i));
+      }
+      return symbolData;
+    }
+  }
+
+  /**
+   * a line of the symbol map: jsName, jsniIdent, className, memberName, sourceUri, sourceLine, fragmentNumber.
+   */
+  private static final class Symbol implements SymbolData {
+
+    private final String[] fields;
+
+    Symbol(String[] fields) {
+      this.fields = fields;
+    }
+
+    @Override
+    public String getClassName() {
+      return fields[2];
+    }
+
+    @Override
+    public int getFragmentNumber() {
+      return Integer.parseInt(fields[6]);
+    }
+
+    @Override
+    public String getJsniIdent() {
+      return fields[1].isEmpty() ? null : fields[1];
+    }
+
+    @Override
+    public String getMemberName() {
+      return fields[3];
+    }
+
+    @Override
+    public String getRuntimeTypeId() {
+      return null;
+    }
+
+    @Override
+    public int getSourceLine() {
+      return Integer.parseInt(fields[5]);
+    }
+
+    @Override
+    public String getSourceUri() {
+      return fields[4];
+    }
+
+    @Override
+    public String getSymbolName() {
+      return fields[0];
+    }
+
+    @Override
+    public boolean isClass() {
+      return fields[3].isEmpty();
+    }
+
+    @Override
+    public boolean isField() {
+      return !isClass() && !isMethod();
+    }
+
+    @Override
+    public boolean isMethod() {
+      return fields[1].contains("(");
+    }
+  }
+}
@@ -24,6 +24,7 @@
  */
 package org.slf4j;
 
+import org.slf4gwt.logging.impl.ClassLoggerFactory;
 import org.slf4gwt.logging.impl.Impl;
 
 /**
@@ -66,6 +67,11 @@ public class LoggerFactory {
    * @return logger
    */
   public static Logger getLogger(Class clazz) {
+    // slf4gwt: look up by class identity if the bound factory supports it
+    if (Impl.LOGGER_FACTORY instanceof ClassLoggerFactory) {
+      return ((ClassLoggerFactory) Impl.LOGGER_FACTORY).getLogger(clazz);
+    }
+    // slf4gwt: end modification
     return getLogger(clazz.getName());
   }
 }
\ No newline at end of file
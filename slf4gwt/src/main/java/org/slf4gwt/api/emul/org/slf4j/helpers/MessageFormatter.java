@@ -27,7 +27,9 @@ package org.slf4j.helpers;
 import com.google.gwt.core.client.GWT;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 // contributors: lizongbo: proposed special treatment of array parameter values
@@ -103,6 +105,17 @@ final public class MessageFormatter {
   static final String DELIM_STR = "{}";
   private static final char ESCAPE_CHAR = '\\';
 
+  // slf4gwt: the parsed patterns of the most recently used messages
+  private static final int PATTERN_CACHE_SIZE = 512;
+  private static final Object[] NO_ARGS = new Object[0];
+  private static final Map<String, ParsedPattern> PATTERN_CACHE = new LinkedHashMap<String, ParsedPattern>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, ParsedPattern> eldest) {
+      return size() > PATTERN_CACHE_SIZE;
+    }
+  };
+  // slf4gwt: end modification
+
   /**
    * Performs single argument substitution for the 'messagePattern' passed as
    * parameter.
@@ -123,7 +136,12 @@ final public class MessageFormatter {
    * @return The formatted message
    */
   final public static FormattingTuple format(String messagePattern, Object arg) {
-    return arrayFormat(messagePattern, new Object[] { arg });
+    // slf4gwt: modified, no argument array is allocated
+    if (arg instanceof Throwable) {
+      return new FormattingTuple(messagePattern, NO_ARGS, (Throwable) arg);
+    }
+    return new InlineArgsTuple(render(messagePattern, 1, null, arg, null), 1, arg, null, null);
+    // slf4gwt: end modification
   }
 
   /**
@@ -150,7 +168,12 @@ final public class MessageFormatter {
    * @return The formatted message
    */
   final public static FormattingTuple format(final String messagePattern, Object arg1, Object arg2) {
-    return arrayFormat(messagePattern, new Object[] { arg1, arg2 });
+    // slf4gwt: modified, no argument array is allocated
+    if (arg2 instanceof Throwable) {
+      return new InlineArgsTuple(render(messagePattern, 1, null, arg1, null), 1, arg1, null, (Throwable) arg2);
+    }
+    return new InlineArgsTuple(render(messagePattern, 2, null, arg1, arg2), 2, arg1, arg2, null);
+    // slf4gwt: end modification
   }
 
 
@@ -173,52 +196,145 @@ final public class MessageFormatter {
       return new FormattingTuple(messagePattern);
     }
 
-    int i = 0;
-    int j;
+    // slf4gwt: modified, the pattern is parsed once and cached
+    return new FormattingTuple(render(messagePattern, argArray.length, argArray, null, null), argArray, throwable);
+    // slf4gwt: end modification
+  }
+
+  // slf4gwt: formats either the argument array or, if it is null, up to two inline arguments
+  private static String render(String messagePattern, int argCount, Object[] argArray, Object arg1, Object arg2) {
+    if (messagePattern == null) {
+      return null;
+    }
+
+    ParsedPattern parsed = parse(messagePattern);
+    int anchors = parsed.anchorEnds.length;
+
+    if (argCount == 0 || anchors == 0 && parsed.segments[0] == messagePattern) {
+      // this is a simple string
+      return messagePattern;
+    }
+
     // use string builder for better multicore performance
     StringBuilder sbuf = new StringBuilder(messagePattern.length() + 50);
 
-    int L;
-    for (L = 0; L < argArray.length; L++) {
+    int used = Math.min(argCount, anchors);
+    for (int L = 0; L < used; L++) {
+      sbuf.append(parsed.segments[L]);
+      Object arg = argArray != null ? argArray[L] : L == 0 ? arg1 : arg2;
+      // the map to detect cycles is created when an Object[] is found
+      deeplyAppendParameter(sbuf, arg, null);
+    }
 
-      j = messagePattern.indexOf(DELIM_STR, i);
+    if (argCount > anchors) {
+      // all anchors are replaced, add the tail with resolved escapes
+      sbuf.append(parsed.segments[anchors]);
+    } else {
+      // the arguments ran out, add the rest of the pattern as it is
+      sbuf.append(messagePattern, parsed.anchorEnds[used - 1], messagePattern.length());
+    }
+    return sbuf.toString();
+  }
 
-      if (j == -1) {
-        // no more variables
-        if (i == 0) { // this is a simple string
-          return new FormattingTuple(messagePattern, argArray, throwable);
-        } else { // add the tail string which contains no variables and return
-          // the result.
-          sbuf.append(messagePattern, i, messagePattern.length());
-          return new FormattingTuple(sbuf.toString(), argArray, throwable);
-        }
-      } else {
+  /**
+   * The result of the one and two argument formats, the argument array is only created on demand.
+   */
+  private static final class InlineArgsTuple extends FormattingTuple {
+    private final int argCount;
+    private final Object arg1;
+    private final Object arg2;
+    private Object[] argArray;
+
+    InlineArgsTuple(String message, int argCount, Object arg1, Object arg2, Throwable throwable) {
+      super(message, null, throwable);
+      this.argCount = argCount;
+      this.arg1 = arg1;
+      this.arg2 = arg2;
+    }
+
+    @Override
+    public Object[] getArgArray() {
+      if (argArray == null) {
+        argArray = argCount == 1 ? new Object[] { arg1 } : new Object[] { arg1, arg2 };
+      }
+      return argArray;
+    }
+  }
+  // slf4gwt: end modification
+
+  // slf4gwt: cache of parsed patterns
+  private static ParsedPattern parse(String messagePattern) {
+    // the class is also used by the server threads, where even get reorders the map; in the browser it's a no-op
+    ParsedPattern parsed;
+    synchronized (PATTERN_CACHE) {
+      parsed = PATTERN_CACHE.get(messagePattern);
+    }
+    if (parsed == null) {
+      parsed = new ParsedPattern(messagePattern);
+      synchronized (PATTERN_CACHE) {
+        PATTERN_CACHE.put(messagePattern, parsed);
+      }
+    }
+    return parsed;
+  }
+
+  /**
+   * A message pattern split at its formatting anchors.
+   *
+   * <p>
+   * The segments contain the text before each anchor and the text after the last anchor, escaped delimiters are
+   * already resolved. The anchor ends are the offsets in the pattern right after each anchor, the raw pattern is
+   * appended from there if there are fewer arguments than anchors.
+   */
+  static final class ParsedPattern {
+    final String[] segments;
+    final int[] anchorEnds;
+
+    ParsedPattern(String messagePattern) {
+      ArrayList<String> segmentList = new ArrayList<String>();
+      ArrayList<Integer> anchorEndList = new ArrayList<Integer>();
+      StringBuilder segment = new StringBuilder();
+
+      int i = 0;
+      int j;
+      while ((j = messagePattern.indexOf(DELIM_STR, i)) != -1) {
         if (isEscapedDelimeter(messagePattern, j)) {
           if (!isDoubleEscaped(messagePattern, j)) {
-            L--; // DELIM_START was escaped, thus should not be incremented
-            sbuf.append(messagePattern, i, j - 1);
-            sbuf.append(DELIM_START);
+            // DELIM_START was escaped, this is no anchor
+            segment.append(messagePattern, i, j - 1);
+            segment.append(DELIM_START);
             i = j + 1;
-          } else {
-            // The escape character preceding the delimiter start is
-            // itself escaped: "abc x:\\{}"
-            // we have to consume one backward slash
-            sbuf.append(messagePattern, i, j - 1);
-            deeplyAppendParameter(sbuf, argArray[L], new HashMap<Object[], Object>());
-            i = j + 2;
+            continue;
           }
+          // The escape character preceding the delimiter start is
+          // itself escaped: "abc x:\\{}"
+          // we have to consume one backward slash
+          segment.append(messagePattern, i, j - 1);
         } else {
           // normal case
-          sbuf.append(messagePattern, i, j);
-          deeplyAppendParameter(sbuf, argArray[L], new HashMap<Object[], Object>());
-          i = j + 2;
+          segment.append(messagePattern, i, j);
         }
+        segmentList.add(segment.toString());
+        segment.setLength(0);
+        i = j + 2;
+        anchorEndList.add(i);
+      }
+
+      if (i == 0) {
+        segmentList.add(messagePattern);
+      } else {
+        segment.append(messagePattern, i, messagePattern.length());
+        segmentList.add(segment.toString());
+      }
+
+      segments = segmentList.toArray(new String[segmentList.size()]);
+      anchorEnds = new int[anchorEndList.size()];
+      for (int k = 0; k < anchorEnds.length; k++) {
+        anchorEnds[k] = anchorEndList.get(k);
       }
     }
-    // append the characters following the last {} pair.
-    sbuf.append(messagePattern, i, messagePattern.length());
-    return new FormattingTuple(sbuf.toString(), argArray, throwable);
   }
+  // slf4gwt: end modification
 
   final static boolean isEscapedDelimeter(String messagePattern, int delimeterStartIndex) {
 
@@ -288,6 +404,11 @@ final public class MessageFormatter {
   }
 
   private static void objectArrayAppend(StringBuilder sbuf, Object[] a, Map<Object[], Object> seenMap) {
+    // slf4gwt: the map is only needed if there are arrays
+    if (seenMap == null) {
+      seenMap = new HashMap<Object[], Object>();
+    }
+    // slf4gwt: end modification
     sbuf.append('[');
     if (!seenMap.containsKey(a)) {
       seenMap.put(a, null);
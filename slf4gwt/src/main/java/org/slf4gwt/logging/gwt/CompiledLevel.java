@@ -0,0 +1,121 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.logging.gwt;
+
+import java.util.logging.Level;
+
+/**
+ * the levels slf4gwt is compiled with.
+ *
+ * The class is generated by {@code org.slf4gwt.logging.rebind.CompiledLevelGenerator} from the property
+ * {@code slf4gwt.log.level} and the per logger levels in {@code slf4gwt.log.levels}. Each permutation instantiates
+ * exactly one of these classes, so the GWT compiler inlines the methods as constants and removes the log calls below
+ * the compiled level together with their arguments.
+ *
+ * The compiled level is global: it is the lowest level of the permutation, so a single verbose entry in
+ * {@code slf4gwt.log.levels} keeps the calls of that level for all loggers. {@link #getMinimumLevel(String)} keeps the
+ * other loggers at their own level at runtime.
+ */
+public class CompiledLevel {
+
+  public boolean isTraceEnabled() {
+    return true;
+  }
+
+  public boolean isDebugEnabled() {
+    return true;
+  }
+
+  public boolean isInfoEnabled() {
+    return true;
+  }
+
+  public boolean isWarnEnabled() {
+    return true;
+  }
+
+  /**
+   * the level configured for a logger in {@code slf4gwt.log.levels}.
+   *
+   * @param loggerName the name of the logger
+   * @return the level of the longest matching logger prefix or null if no prefix matches
+   */
+  public Level getLevel(String loggerName) {
+    return null;
+  }
+
+  /**
+   * the lowest level a logger may log at.
+   *
+   * The compiled code is shared by all loggers, so a permutation keeps the calls of the lowest level in
+   * {@code slf4gwt.log.level} and {@code slf4gwt.log.levels}. This level restricts every logger at runtime to the
+   * level it would have been compiled with on its own: its level in the table or else {@code slf4gwt.log.level}.
+   *
+   * @param loggerName the name of the logger
+   * @return the lowest level or null if the logger isn't restricted beyond the compiled level
+   */
+  public Level getMinimumLevel(String loggerName) {
+    return null;
+  }
+
+  /**
+   * checks if a logger name is the given prefix or a logger below it.
+   *
+   * @param loggerName the name of the logger
+   * @param prefix the logger prefix, e.g. from {@code slf4gwt.log.levels}
+   * @return true if the prefix matches
+   */
+  public static boolean matches(String loggerName, String prefix) {
+    return loggerName.startsWith(prefix)
+        && (loggerName.length() == prefix.length() || loggerName.charAt(prefix.length()) == '.');
+  }
+
+  public static class CompiledLevelDebug extends CompiledLevel {
+    @Override
+    public boolean isTraceEnabled() {
+      return false;
+    }
+  }
+
+  public static class CompiledLevelInfo extends CompiledLevelDebug {
+    @Override
+    public boolean isDebugEnabled() {
+      return false;
+    }
+  }
+
+  public static class CompiledLevelWarn extends CompiledLevelInfo {
+    @Override
+    public boolean isInfoEnabled() {
+      return false;
+    }
+  }
+
+  public static class CompiledLevelError extends CompiledLevelWarn {
+    @Override
+    public boolean isWarnEnabled() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.logging.gwt;
+
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * log record that formats its message on the first call of {@link #getMessage()}.
+ *
+ * The record carries the message pattern and the arguments, so handlers that reject the record never pay for the
+ * formatting. Handlers that keep records after {@code publish} returns should copy the message, as the arguments may
+ * change later.
+ */
+public class DeferredLogRecord extends LogRecord {
+
+  private static final Object[] NO_ARGS = new Object[0];
+
+  private transient String pattern;
+  /** the number of inline arguments or -1 if the arguments are in {@link #argArray} */
+  private transient int argCount;
+  private transient Object arg1;
+  private transient Object arg2;
+  private transient Object[] argArray;
+  private transient boolean formatted;
+
+  /**
+   * Creates a record with a formatted message.
+   *
+   * @param level the level of the record
+   * @param msg the message
+   */
+  public DeferredLogRecord(Level level, String msg) {
+    super(level, msg);
+    this.formatted = true;
+  }
+
+  DeferredLogRecord(Level level, String loggerName, String pattern, Object arg) {
+    this(level, loggerName, pattern, 1, arg, null, null);
+    setThrown(arg instanceof Throwable ? (Throwable) arg : null);
+  }
+
+  DeferredLogRecord(Level level, String loggerName, String pattern, Object arg1, Object arg2) {
+    this(level, loggerName, pattern, 2, arg1, arg2, null);
+    setThrown(arg2 instanceof Throwable ? (Throwable) arg2 : null);
+  }
+
+  DeferredLogRecord(Level level, String loggerName, String pattern, Object[] argArray) {
+    this(level, loggerName, pattern, -1, null, null, argArray);
+    setThrown(MessageFormatter.getThrowableCandidate(argArray));
+  }
+
+  private DeferredLogRecord(Level level, String loggerName, String pattern, int argCount, Object arg1, Object arg2,
+                            Object[] argArray) {
+    super(level, pattern);
+    setLoggerName(loggerName);
+    this.pattern = pattern;
+    this.argCount = argCount;
+    this.arg1 = arg1;
+    this.arg2 = arg2;
+    this.argArray = argArray;
+  }
+
+  /**
+   * the message pattern, or the formatted message if the record was created with it.
+   *
+   * @return the pattern
+   */
+  public String getPattern() {
+    return pattern != null ? pattern : super.getMessage();
+  }
+
+  /**
+   * the arguments that are substituted into the pattern.
+   *
+   * Like {@link org.slf4j.helpers.FormattingTuple#getArgArray()}, a trailing throwable is not part of the arguments.
+   *
+   * @return the arguments, empty if the record was created with a formatted message
+   */
+  public Object[] getArgArray() {
+    if (argCount == -1) {
+      Throwable throwable = MessageFormatter.getThrowableCandidate(argArray);
+      return throwable != null ? MessageFormatter.trimmedCopy(argArray) : argArray != null ? argArray : NO_ARGS;
+    } else if (argCount == 1) {
+      return getThrown() != null ? NO_ARGS : new Object[] { arg1 };
+    } else if (argCount == 2) {
+      return getThrown() != null ? new Object[] { arg1 } : new Object[] { arg1, arg2 };
+    }
+    return NO_ARGS;
+  }
+
+  @Override
+  public String getMessage() {
+    if (!formatted) {
+      setMessage(format());
+    }
+    return super.getMessage();
+  }
+
+  @Override
+  public void setMessage(String newMessage) {
+    formatted = true;
+    super.setMessage(newMessage);
+  }
+
+  private String format() {
+    if (argCount == -1) {
+      return MessageFormatter.arrayFormat(pattern, argArray).getMessage();
+    } else if (argCount == 1) {
+      return MessageFormatter.format(pattern, arg1).getMessage();
+    } else {
+      return MessageFormatter.format(pattern, arg1, arg2).getMessage();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.logging.gwt;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.client.rpc.SerializationStreamReader;
+import com.google.gwt.user.client.rpc.SerializationStreamWriter;
+import com.google.gwt.user.client.rpc.core.java.util.logging.LogRecord_CustomFieldSerializer;
+
+import java.util.logging.Level;
+
+/**
+ * Custom serializer for DeferredLogRecord.
+ *
+ * The record is written like a plain LogRecord with its formatted message, so remote handlers like GWT's
+ * SimpleRemoteLogHandler can send it. The server reads a record with the formatted message.
+ */
+public final class DeferredLogRecord_CustomFieldSerializer {
+
+  private DeferredLogRecord_CustomFieldSerializer() {
+  }
+
+  public static void deserialize(SerializationStreamReader reader, DeferredLogRecord instance)
+          throws SerializationException {
+    LogRecord_CustomFieldSerializer.deserialize(reader, instance);
+  }
+
+  public static DeferredLogRecord instantiate(SerializationStreamReader reader) throws SerializationException {
+    String levelString = reader.readString();
+    String msg = reader.readString();
+    return new DeferredLogRecord(Level.parse(levelString), msg);
+  }
+
+  public static void serialize(SerializationStreamWriter writer, DeferredLogRecord instance)
+          throws SerializationException {
+    LogRecord_CustomFieldSerializer.serialize(writer, instance);
+  }
+}
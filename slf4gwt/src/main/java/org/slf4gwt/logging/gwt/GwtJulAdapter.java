@@ -23,120 +23,223 @@
  */
 package org.slf4gwt.logging.gwt;
 
-import org.slf4j.helpers.FormattingTuple;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import org.slf4j.helpers.MarkerIgnoringBase;
-import org.slf4j.helpers.MessageFormatter;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * slf4j logger that writes to a java.util.logging logger.
+ *
+ * The effective level of the JUL logger is cached as a plain int threshold, so a level check doesn't walk the parent
+ * chain of the JUL logger. The cache is invalidated by a global level generation: {@link #setLevel(Level)} and
+ * {@link #levelsChanged()} bump the generation, and every adapter recomputes its threshold on the next check.
+ *
+ * The GWT emulation of java.util.logging doesn't report level changes, so a level set directly on a JUL logger, e.g.
+ * by GWT's {@code LogConfiguration} or by application code, can't invalidate the cache. To keep these levels working
+ * the cache only lives until the end of the current browser task: once a threshold was computed, a deferred command
+ * bumps the generation again. A direct change therefore takes effect with the next task, call
+ * {@link #levelsChanged()} after it for an immediate effect. Outside the browser the threshold isn't cached at all.
+ *
+ * Levels below the compile time level {@code slf4gwt.log.level} are checked against {@link CompiledLevel} first, so
+ * the GWT compiler removes these calls including their arguments. Loggers are never enabled below their
+ * {@link CompiledLevel#getMinimumLevel(String) minimum level}, even if the compiled level of the permutation is lower.
+ *
+ * Messages with arguments are logged as {@link DeferredLogRecord}, they are only formatted if a handler reads them.
+ */
 public class GwtJulAdapter extends MarkerIgnoringBase {
 
+  private static final Level[] LEVELS = { Level.FINEST, Level.FINE, Level.INFO, Level.WARNING, Level.SEVERE };
+
+  static final CompiledLevel COMPILED_LEVEL = GWT.create(CompiledLevel.class);
+
+  private static int levelGeneration;
+  private static boolean invalidationScheduled;
+
+  private static final ScheduledCommand INVALIDATE = new ScheduledCommand() {
+    @Override
+    public void execute() {
+      invalidationScheduled = false;
+      levelsChanged();
+    }
+  };
+
   private final Logger logger;
+  private final int minimumLevel;
+
+  private int threshold;
+  private int thresholdGeneration = -1;
 
   public GwtJulAdapter(String name) {
     this.name = name;
     logger = Logger.getLogger(name);
+
+    Level minimum = COMPILED_LEVEL.getMinimumLevel(name);
+    minimumLevel = minimum != null ? minimum.intValue() : Integer.MIN_VALUE;
+  }
+
+  /**
+   * Invalidates the cached levels of all adapters.
+   *
+   * Call this after levels were changed directly on java.util.logging loggers, otherwise the change only takes
+   * effect with the next browser task.
+   */
+  public static void levelsChanged() {
+    levelGeneration++;
+  }
+
+  /**
+   * Sets the level of the underlying java.util.logging logger and invalidates the cached levels of all adapters, as
+   * the loggers below this one may inherit the new level.
+   *
+   * @param level the new level or null to inherit the level of the parent logger
+   */
+  public void setLevel(Level level) {
+    logger.setLevel(level);
+    levelsChanged();
   }
 
   public boolean isTraceEnabled() {
-    return logger.isLoggable(Level.FINEST);
+    return COMPILED_LEVEL.isTraceEnabled() && isLoggable(Level.FINEST);
   }
 
   public void trace(String msg) {
-    logMessageOrThrowable(Level.FINEST, msg, null);
+    if (COMPILED_LEVEL.isTraceEnabled()) {
+      logMessageOrThrowable(Level.FINEST, msg, null);
+    }
   }
 
   public void trace(String format, Object arg) {
-    logObjects(Level.FINEST, format, arg);
+    if (COMPILED_LEVEL.isTraceEnabled()) {
+      logObject(Level.FINEST, format, arg);
+    }
   }
 
   public void trace(String format, Object arg1, Object arg2) {
-    logObjects(Level.FINEST, format, arg1, arg2);
+    if (COMPILED_LEVEL.isTraceEnabled()) {
+      logObjects(Level.FINEST, format, arg1, arg2);
+    }
   }
 
   public void trace(String format, Object... arguments) {
-    logObjects(Level.FINEST, format, arguments);
+    if (COMPILED_LEVEL.isTraceEnabled()) {
+      logObjects(Level.FINEST, format, arguments);
+    }
   }
 
   public void trace(String msg, Throwable t) {
-    logMessageOrThrowable(Level.FINEST, msg, t);
+    if (COMPILED_LEVEL.isTraceEnabled()) {
+      logMessageOrThrowable(Level.FINEST, msg, t);
+    }
   }
 
   public boolean isDebugEnabled() {
-    return logger.isLoggable(Level.FINE);
+    return COMPILED_LEVEL.isDebugEnabled() && isLoggable(Level.FINE);
   }
 
   public void debug(String msg) {
-    logMessageOrThrowable(Level.FINE, msg, null);
+    if (COMPILED_LEVEL.isDebugEnabled()) {
+      logMessageOrThrowable(Level.FINE, msg, null);
+    }
   }
 
   public void debug(String format, Object arg) {
-    logObjects(Level.FINE, format, arg);
+    if (COMPILED_LEVEL.isDebugEnabled()) {
+      logObject(Level.FINE, format, arg);
+    }
   }
 
   public void debug(String format, Object arg1, Object arg2) {
-    logObjects(Level.FINE, format, arg1, arg2);
+    if (COMPILED_LEVEL.isDebugEnabled()) {
+      logObjects(Level.FINE, format, arg1, arg2);
+    }
   }
 
   public void debug(String format, Object... arguments) {
-    logObjects(Level.FINE, format, arguments);
+    if (COMPILED_LEVEL.isDebugEnabled()) {
+      logObjects(Level.FINE, format, arguments);
+    }
   }
 
   public void debug(String msg, Throwable t) {
-    logMessageOrThrowable(Level.FINE, msg, t);
+    if (COMPILED_LEVEL.isDebugEnabled()) {
+      logMessageOrThrowable(Level.FINE, msg, t);
+    }
   }
 
   public boolean isInfoEnabled() {
-    return logger.isLoggable(Level.INFO);
+    return COMPILED_LEVEL.isInfoEnabled() && isLoggable(Level.INFO);
   }
 
   public void info(String msg) {
-    logMessageOrThrowable(Level.INFO, msg, null);
+    if (COMPILED_LEVEL.isInfoEnabled()) {
+      logMessageOrThrowable(Level.INFO, msg, null);
+    }
   }
 
   public void info(String format, Object arg) {
-    logObjects(Level.INFO, format, arg);
+    if (COMPILED_LEVEL.isInfoEnabled()) {
+      logObject(Level.INFO, format, arg);
+    }
   }
 
   public void info(String format, Object arg1, Object arg2) {
-    logObjects(Level.INFO, format, arg1, arg2);
+    if (COMPILED_LEVEL.isInfoEnabled()) {
+      logObjects(Level.INFO, format, arg1, arg2);
+    }
   }
 
   public void info(String format, Object... arguments) {
-    logObjects(Level.INFO, format, arguments);
+    if (COMPILED_LEVEL.isInfoEnabled()) {
+      logObjects(Level.INFO, format, arguments);
+    }
   }
 
   public void info(String msg, Throwable t) {
-    logMessageOrThrowable(Level.INFO, msg, t);
+    if (COMPILED_LEVEL.isInfoEnabled()) {
+      logMessageOrThrowable(Level.INFO, msg, t);
+    }
   }
 
   public boolean isWarnEnabled() {
-    return logger.isLoggable(Level.WARNING);
+    return COMPILED_LEVEL.isWarnEnabled() && isLoggable(Level.WARNING);
   }
 
   public void warn(String msg) {
-    logMessageOrThrowable(Level.WARNING, msg, null);
+    if (COMPILED_LEVEL.isWarnEnabled()) {
+      logMessageOrThrowable(Level.WARNING, msg, null);
+    }
   }
 
   public void warn(String format, Object arg) {
-    logObjects(Level.WARNING, format, arg);
+    if (COMPILED_LEVEL.isWarnEnabled()) {
+      logObject(Level.WARNING, format, arg);
+    }
   }
 
   public void warn(String format, Object... arguments) {
-    logObjects(Level.WARNING, format, arguments);
+    if (COMPILED_LEVEL.isWarnEnabled()) {
+      logObjects(Level.WARNING, format, arguments);
+    }
   }
 
   public void warn(String format, Object arg1, Object arg2) {
-    logObjects(Level.WARNING, format, arg1, arg2);
+    if (COMPILED_LEVEL.isWarnEnabled()) {
+      logObjects(Level.WARNING, format, arg1, arg2);
+    }
   }
 
   public void warn(String msg, Throwable t) {
-    logMessageOrThrowable(Level.WARNING, msg, t);
+    if (COMPILED_LEVEL.isWarnEnabled()) {
+      logMessageOrThrowable(Level.WARNING, msg, t);
+    }
   }
 
   public boolean isErrorEnabled() {
-    return logger.isLoggable(Level.SEVERE);
+    return isLoggable(Level.SEVERE);
   }
 
   public void error(String msg) {
@@ -144,7 +247,7 @@ public class GwtJulAdapter extends MarkerIgnoringBase {
   }
 
   public void error(String format, Object arg) {
-    logObjects(Level.SEVERE, format, arg);
+    logObject(Level.SEVERE, format, arg);
   }
 
   public void error(String format, Object arg1, Object arg2) {
@@ -159,16 +262,57 @@ public class GwtJulAdapter extends MarkerIgnoringBase {
     logMessageOrThrowable(Level.SEVERE, msg, t);
   }
 
+  private boolean isLoggable(Level level) {
+    if (!GWT.isClient()) {
+      return level.intValue() >= minimumLevel && logger.isLoggable(level);
+    }
+
+    if (thresholdGeneration != levelGeneration) {
+      threshold = effectiveThreshold();
+      thresholdGeneration = levelGeneration;
+      scheduleInvalidation();
+    }
+    return level.intValue() >= threshold;
+  }
+
+  private static void scheduleInvalidation() {
+    if (!invalidationScheduled) {
+      invalidationScheduled = true;
+      Scheduler.get().scheduleDeferred(INVALIDATE);
+    }
+  }
+
+  private int effectiveThreshold() {
+    // ask JUL for the levels slf4j uses, so compile time settings like gwt.logging.enabled are respected
+    for (Level level : LEVELS) {
+      if (level.intValue() >= minimumLevel && logger.isLoggable(level)) {
+        return level.intValue();
+      }
+    }
+    return Level.OFF.intValue();
+  }
+
   private void logMessageOrThrowable(Level level, String msg, Throwable t) {
-    if (logger.isLoggable(level)) {
+    if (isLoggable(level)) {
       logger.log(level, msg, t);
     }
   }
 
+  private void logObject(Level level, String format, Object arg) {
+    if (isLoggable(level)) {
+      logger.log(new DeferredLogRecord(level, name, format, arg));
+    }
+  }
+
+  private void logObjects(Level level, String format, Object arg1, Object arg2) {
+    if (isLoggable(level)) {
+      logger.log(new DeferredLogRecord(level, name, format, arg1, arg2));
+    }
+  }
+
   private void logObjects(Level level, String format, Object... argArray) {
-    if (logger.isLoggable(level)) {
-      FormattingTuple ft = MessageFormatter.arrayFormat(format, argArray);
-      logger.log(level, ft.getMessage(), ft.getThrowable());
+    if (isLoggable(level)) {
+      logger.log(new DeferredLogRecord(level, name, format, argArray));
     }
   }
 }
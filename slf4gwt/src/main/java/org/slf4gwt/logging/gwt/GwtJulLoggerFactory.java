@@ -23,15 +23,30 @@
  */
 package org.slf4gwt.logging.gwt;
 
-import org.slf4j.ILoggerFactory;
+import org.slf4gwt.logging.impl.ClassLoggerFactory;
 import org.slf4j.Logger;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Objects;
+import java.util.logging.Level;
 
-public class GwtJulLoggerFactory implements ILoggerFactory {
+/**
+ * logger factory that binds slf4j to the GWT java.util.logging emulation.
+ *
+ * Each logger name is backed by exactly one {@link GwtJulAdapter}. The adapters are kept in a trie of the dot
+ * separated name segments, so loggers of the same package share their prefix nodes and the canonical name string is
+ * stored only once. A lookup walks the trie by comparing the segments in place, so repeated lookups don't allocate
+ * anything. {@link #getLogger(Class)} is served by an identity map of classes.
+ *
+ * The levels of the compile time table {@code slf4gwt.log.levels} are resolved along the trie as well: every node
+ * inherits the level of its parent, and the java.util.logging logger of a node is only configured where the table
+ * assigns it a different level. The loggers below it inherit that level through java.util.logging.
+ */
+public class GwtJulLoggerFactory implements ClassLoggerFactory {
 
-  private final HashMap<String, Logger> loggers = new HashMap<String, Logger>();
+  private final LoggerNode root = new LoggerNode("", 0, null);
+  private final IdentityHashMap<Class<?>, GwtJulAdapter> loggersByClass = new IdentityHashMap<Class<?>, GwtJulAdapter>();
 
   @Override
   public Logger getLogger(String name) {
@@ -42,6 +57,97 @@ public class GwtJulLoggerFactory implements ILoggerFactory {
       name = "";
     }
 
-    return loggers.getOrDefault(name, new GwtJulAdapter(name));
+    LoggerNode node = root;
+    if (!name.isEmpty()) {
+      int start = 0;
+      int end;
+      do {
+        end = name.indexOf('.', start);
+        if (end == -1) {
+          end = name.length();
+        }
+        node = node.child(name, start, end);
+        start = end + 1;
+      } while (end < name.length());
+    }
+
+    if (node.adapter == null) {
+      node.adapter = new GwtJulAdapter(node.name);
+    }
+    return node.adapter;
+  }
+
+  @Override
+  public Logger getLogger(Class<?> clazz) {
+    GwtJulAdapter adapter = loggersByClass.get(clazz);
+    if (adapter == null) {
+      adapter = (GwtJulAdapter) getLogger(clazz.getName());
+      loggersByClass.put(clazz, adapter);
+    }
+    return adapter;
+  }
+
+  /**
+   * a node of the logger name trie.
+   *
+   * The node of "com.acme.Foo" is the child "Foo" of the node "com.acme". Nodes that were only created as a prefix of
+   * another logger name have no adapter.
+   */
+  private static final class LoggerNode {
+    private final String name;
+    private final int segmentHash;
+    private final Level level;
+
+    private LoggerNode[] children;
+    private int childCount;
+    private GwtJulAdapter adapter;
+
+    /** the java.util.logging logger this node configured, kept so the JRE doesn't collect it with its level */
+    private java.util.logging.Logger configuredLogger;
+
+    private LoggerNode(String name, int segmentHash, Level level) {
+      this.name = name;
+      this.segmentHash = segmentHash;
+      this.level = level;
+    }
+
+    private LoggerNode child(String fullName, int start, int end) {
+      int hash = hash(fullName, start, end);
+      for (int i = 0; i < childCount; i++) {
+        LoggerNode child = children[i];
+        if (child.segmentHash == hash && child.name.length() == end
+            && child.name.regionMatches(start, fullName, start, end - start)) {
+          return child;
+        }
+      }
+      return addChild(end == fullName.length() ? fullName : fullName.substring(0, end), hash);
+    }
+
+    private LoggerNode addChild(String childName, int hash) {
+      Level childLevel = GwtJulAdapter.COMPILED_LEVEL.getLevel(childName);
+      LoggerNode child = new LoggerNode(childName, hash, childLevel);
+      if (childLevel != level) {
+        child.configuredLogger = java.util.logging.Logger.getLogger(childName);
+        // only loggers below this new node inherit the level and none of them has an adapter yet, so the cached
+        // thresholds of the existing adapters stay valid
+        child.configuredLogger.setLevel(childLevel);
+      }
+
+      if (children == null) {
+        children = new LoggerNode[4];
+      } else if (childCount == children.length) {
+        children = Arrays.copyOf(children, childCount * 2);
+      }
+      children[childCount++] = child;
+      return child;
+    }
+
+    private static int hash(String name, int start, int end) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + name.charAt(i);
+      }
+      return hash;
+    }
   }
 }
@@ -0,0 +1,184 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.logging.rebind;
+
+import com.google.gwt.core.ext.BadPropertyValueException;
+import com.google.gwt.core.ext.Generator;
+import com.google.gwt.core.ext.GeneratorContext;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.user.rebind.ClassSourceFileComposerFactory;
+import com.google.gwt.user.rebind.SourceWriter;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Generator for {@code org.slf4gwt.logging.gwt.CompiledLevel}.
+ *
+ * The global level {@code slf4gwt.log.level} and the per logger levels of the configuration property
+ * {@code slf4gwt.log.levels}, e.g. {@code com.acme.grid=DEBUG,com.acme.net=WARN}, are compiled into a static table.
+ * The compiled level of the permutation is the lowest of these levels, so the verbose loggers still work, and every
+ * level below it is removed by the compiler. The log calls are shared by all loggers, so this floor is global: one
+ * {@code DEBUG} entry keeps the debug calls of every logger in the JavaScript. The generated
+ * {@code getMinimumLevel(String)} restricts the loggers outside the verbose entries to their own level at runtime, so
+ * they behave as if they were compiled with it.
+ */
+public class CompiledLevelGenerator extends Generator {
+
+  static final String LEVEL_PROPERTY = "slf4gwt.log.level";
+  static final String LEVELS_PROPERTY = "slf4gwt.log.levels";
+
+  /** the slf4gwt levels, ordered from the lowest to the highest */
+  private static final List<String> LEVELS = Arrays.asList("TRACE", "DEBUG", "INFO", "WARN", "ERROR");
+
+  /** the JUL levels matching {@link #LEVELS} */
+  private static final List<String> JUL_LEVELS = Arrays.asList("FINEST", "FINE", "INFO", "WARNING", "SEVERE");
+
+  /** the implementations of CompiledLevel matching {@link #LEVELS} */
+  private static final List<String> COMPILED_LEVELS = Arrays.asList(
+          "org.slf4gwt.logging.gwt.CompiledLevel",
+          "org.slf4gwt.logging.gwt.CompiledLevel.CompiledLevelDebug",
+          "org.slf4gwt.logging.gwt.CompiledLevel.CompiledLevelInfo",
+          "org.slf4gwt.logging.gwt.CompiledLevel.CompiledLevelWarn",
+          "org.slf4gwt.logging.gwt.CompiledLevel.CompiledLevelError");
+
+  @Override
+  public String generate(TreeLogger logger, GeneratorContext context, String typeName)
+          throws UnableToCompleteException {
+    int level;
+    List<String> prefixes = new ArrayList<String>();
+    List<Integer> levels = new ArrayList<Integer>();
+
+    try {
+      level = parseLevel(logger, context.getPropertyOracle().getSelectionProperty(logger, LEVEL_PROPERTY)
+              .getCurrentValue());
+
+      for (String value : context.getPropertyOracle().getConfigurationProperty(LEVELS_PROPERTY).getValues()) {
+        parseLevels(logger, value, prefixes, levels);
+      }
+    } catch (BadPropertyValueException e) {
+      logger.log(TreeLogger.ERROR, "Unable to read the slf4gwt level properties", e);
+      throw new UnableToCompleteException();
+    }
+
+    int globalLevel = level;
+    for (Integer loggerLevel : levels) {
+      level = Math.min(level, loggerLevel);
+    }
+
+    String superclassName = COMPILED_LEVELS.get(level);
+    if (prefixes.isEmpty()) {
+      return superclassName;
+    }
+
+    // the longest prefix has to be checked first
+    List<Integer> order = new ArrayList<Integer>();
+    for (int i = 0; i < prefixes.size(); i++) {
+      order.add(i);
+    }
+    order.sort(Comparator.comparing((Integer i) -> prefixes.get(i).length()).reversed());
+
+    String packageName = "org.slf4gwt.logging.gwt";
+    StringBuilder table = new StringBuilder();
+    for (int i : order) {
+      table.append(prefixes.get(i)).append('=').append(LEVELS.get(levels.get(i))).append(',');
+    }
+    String simpleName = "CompiledLevel_" + LEVELS.get(globalLevel) + "_" + LEVELS.get(level) + "_"
+            + Integer.toHexString(table.toString().hashCode());
+
+    PrintWriter printWriter = context.tryCreate(logger, packageName, simpleName);
+    if (printWriter != null) {
+      ClassSourceFileComposerFactory composer = new ClassSourceFileComposerFactory(packageName,
+              simpleName);
+      composer.setSuperclass(superclassName);
+      composer.addImport("java.util.logging.Level");
+
+      SourceWriter writer = composer.createSourceWriter(context, printWriter);
+      writer.println("@Override");
+      writer.println("public Level getLevel(String loggerName) {");
+      writer.indent();
+      for (int i : order) {
+        writer.println("if (matches(loggerName, \"%s\")) {", escape(prefixes.get(i)));
+        writer.indentln("return Level.%s;", JUL_LEVELS.get(levels.get(i)));
+        writer.println("}");
+      }
+      writer.println("return null;");
+      writer.outdent();
+      writer.println("}");
+      writer.println();
+      writer.println("@Override");
+      writer.println("public Level getMinimumLevel(String loggerName) {");
+      writer.indent();
+      writer.println("Level level = getLevel(loggerName);");
+      writer.println("return level != null ? level : Level.%s;", JUL_LEVELS.get(globalLevel));
+      writer.outdent();
+      writer.println("}");
+      writer.commit(logger);
+    }
+
+    return packageName + "." + simpleName;
+  }
+
+  private static void parseLevels(TreeLogger logger, String value, List<String> prefixes, List<Integer> levels)
+          throws UnableToCompleteException {
+    for (String entry : value.split(",")) {
+      entry = entry.trim();
+      if (entry.isEmpty()) {
+        continue;
+      }
+
+      int separator = entry.indexOf('=');
+      String prefix = separator == -1 ? "" : entry.substring(0, separator).trim();
+      if (prefix.isEmpty()) {
+        logger.log(TreeLogger.ERROR, "Invalid entry '" + entry + "' in " + LEVELS_PROPERTY
+                + ", expected <logger>=<" + String.join("|", LEVELS) + ">");
+        throw new UnableToCompleteException();
+      }
+
+      int index = prefixes.indexOf(prefix);
+      if (index != -1) {
+        logger.log(TreeLogger.WARN, "Logger '" + prefix + "' is configured more than once in " + LEVELS_PROPERTY
+                + ", using the last entry");
+        prefixes.remove(index);
+        levels.remove(index);
+      }
+
+      prefixes.add(prefix);
+      levels.add(parseLevel(logger, entry.substring(separator + 1).trim()));
+    }
+  }
+
+  private static int parseLevel(TreeLogger logger, String level) throws UnableToCompleteException {
+    int index = LEVELS.indexOf(level);
+    if (index == -1) {
+      logger.log(TreeLogger.ERROR, "Invalid level '" + level + "', expected one of " + LEVELS);
+      throw new UnableToCompleteException();
+    }
+    return index;
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.api;
+
+import org.junit.Test;
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * compares the cached MessageFormatter of slf4gwt with the MessageFormatter of slf4j-api on random patterns.
+ */
+public class MessageFormatterTest {
+
+  private static final String[] TOKENS = { "{}", "{}", "{}", "\\{}", "\\\\{}", "{", "}", "\\", "{{}}", "{ }", "a",
+      "log message ", "x=", " ", "äß" };
+
+  private static final Object[] ARGS = { null, "text", 42, 3.5d, Boolean.TRUE, 'c', new int[] { 1, 2 },
+      new long[0], new double[] { 1.5 }, new boolean[] { true }, new char[] { 'a' }, new byte[] { 1 },
+      new short[] { 2 }, new float[] { 0.5f }, new String[] { "x", null }, new Object[] { "a", new int[] { 3 } },
+      new IllegalStateException("arg") };
+
+  @Test
+  public void formatsLikeSlf4j() {
+    Random random = new Random(20200131L);
+    for (int i = 0; i < 200_000; i++) {
+      String pattern = randomPattern(random);
+      Object[] args = randomArgs(random);
+
+      // repeat the pattern, so cached patterns are compared as well
+      for (int repeat = 0; repeat < 2; repeat++) {
+        assertSameResult(pattern, args, MessageFormatter.arrayFormat(pattern, args),
+            Slf4jReference.arrayFormat(pattern, args));
+
+        Throwable throwable = new IllegalArgumentException("explicit");
+        assertSameResult(pattern, args, MessageFormatter.arrayFormat(pattern, args, throwable),
+            Slf4jReference.arrayFormat(pattern, args, throwable));
+      }
+
+      if (args.length == 1) {
+        assertSameResult(pattern, args, MessageFormatter.format(pattern, args[0]),
+            Slf4jReference.arrayFormat(pattern, args));
+      } else if (args.length == 2) {
+        assertSameResult(pattern, args, MessageFormatter.format(pattern, args[0], args[1]),
+            Slf4jReference.arrayFormat(pattern, args));
+      }
+    }
+  }
+
+  @Test
+  public void formatsOnSeveralThreads() throws Exception {
+    ExecutorService threads = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        int seed = thread;
+        results.add(threads.submit(() -> {
+          Random random = new Random(seed);
+          for (int i = 0; i < 50_000; i++) {
+            // more patterns than the cache holds, so they are evicted while the other threads read them
+            int id = random.nextInt(1000);
+            assertEquals("pattern " + id + " a b",
+                MessageFormatter.format("pattern " + id + " {} {}", "a", "b").getMessage());
+          }
+        }));
+      }
+      for (Future<?> result : results) {
+        result.get(1, TimeUnit.MINUTES);
+      }
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test
+  public void formatsNullPatterns() {
+    Object[] args = { "a" };
+    assertSameResult(null, args, MessageFormatter.arrayFormat(null, args), Slf4jReference.arrayFormat(null, args));
+    assertSameResult("{}", null, MessageFormatter.arrayFormat("{}", null), Slf4jReference.arrayFormat("{}", null));
+  }
+
+  @Test
+  public void formatsSelfReferencingArrays() {
+    Object[] array = new Object[2];
+    array[0] = "a";
+    array[1] = array;
+    Object[] args = { array };
+    assertSameResult("{}", args, MessageFormatter.arrayFormat("{}", args), Slf4jReference.arrayFormat("{}", args));
+  }
+
+  private static void assertSameResult(String pattern, Object[] args, FormattingTuple actual, Slf4jReference expected) {
+    String message = "pattern '" + pattern + "' with " + Arrays.deepToString(args);
+    assertEquals(message, expected.getMessage(), actual.getMessage());
+    assertSame(message, expected.getThrowable(), actual.getThrowable());
+    assertArrayEquals(message, expected.getArgArray(), actual.getArgArray());
+  }
+
+  private static String randomPattern(Random random) {
+    StringBuilder pattern = new StringBuilder();
+    int tokens = random.nextInt(9);
+    for (int i = 0; i < tokens; i++) {
+      pattern.append(TOKENS[random.nextInt(TOKENS.length)]);
+    }
+    return pattern.toString();
+  }
+
+  private static Object[] randomArgs(Random random) {
+    Object[] args = new Object[random.nextInt(6)];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = ARGS[random.nextInt(ARGS.length)];
+    }
+    return args;
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.api;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * the original slf4j MessageFormatter, loaded from the slf4j-api jar.
+ *
+ * The emulated org.slf4j classes of slf4gwt shadow the slf4j-api jar on the test class path, so the jar is loaded
+ * into its own class loader.
+ */
+public final class Slf4jReference {
+
+  private static final MethodHandle ARRAY_FORMAT;
+  private static final MethodHandle ARRAY_FORMAT_THROWABLE;
+  private static final MethodHandle GET_MESSAGE;
+  private static final MethodHandle GET_THROWABLE;
+  private static final MethodHandle GET_ARG_ARRAY;
+
+  static {
+    try {
+      // MDC isn't emulated, so it is always loaded from the jar
+      URL jar = org.slf4j.MDC.class.getProtectionDomain().getCodeSource().getLocation();
+      ClassLoader loader = new URLClassLoader(new URL[] { jar }, null);
+      Class<?> formatter = loader.loadClass("org.slf4j.helpers.MessageFormatter");
+      Class<?> tuple = loader.loadClass("org.slf4j.helpers.FormattingTuple");
+
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      ARRAY_FORMAT = lookup.findStatic(formatter, "arrayFormat",
+          MethodType.methodType(tuple, String.class, Object[].class));
+      ARRAY_FORMAT_THROWABLE = lookup.findStatic(formatter, "arrayFormat",
+          MethodType.methodType(tuple, String.class, Object[].class, Throwable.class));
+      GET_MESSAGE = lookup.findVirtual(tuple, "getMessage", MethodType.methodType(String.class));
+      GET_THROWABLE = lookup.findVirtual(tuple, "getThrowable", MethodType.methodType(Throwable.class));
+      GET_ARG_ARRAY = lookup.findVirtual(tuple, "getArgArray", MethodType.methodType(Object[].class));
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final Object tuple;
+
+  private Slf4jReference(Object tuple) {
+    this.tuple = tuple;
+  }
+
+  public static Slf4jReference arrayFormat(String messagePattern, Object[] argArray) {
+    try {
+      return new Slf4jReference(ARRAY_FORMAT.invoke(messagePattern, argArray));
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static Slf4jReference arrayFormat(String messagePattern, Object[] argArray, Throwable throwable) {
+    try {
+      return new Slf4jReference(ARRAY_FORMAT_THROWABLE.invoke(messagePattern, argArray, throwable));
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public String getMessage() {
+    return (String) invoke(GET_MESSAGE);
+  }
+
+  public Throwable getThrowable() {
+    return (Throwable) invoke(GET_THROWABLE);
+  }
+
+  public Object[] getArgArray() {
+    return (Object[]) invoke(GET_ARG_ARRAY);
+  }
+
+  private Object invoke(MethodHandle getter) {
+    try {
+      return getter.invoke(tuple);
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
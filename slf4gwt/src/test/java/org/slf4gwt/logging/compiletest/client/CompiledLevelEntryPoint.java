@@ -0,0 +1,47 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.logging.compiletest.client;
+
+import com.google.gwt.core.client.EntryPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * entry point with a log call for every level, the literals are looked up in the compiled JavaScript.
+ */
+public class CompiledLevelEntryPoint implements EntryPoint {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("org.slf4gwt.logging.compiletest.Default");
+  private static final Logger QUIET = LoggerFactory.getLogger("org.slf4gwt.logging.compiletest.quiet.Net");
+
+  @Override
+  public void onModuleLoad() {
+    LOGGER.trace("slf4gwt-trace-literal {}", LOGGER.getName());
+    LOGGER.debug("slf4gwt-debug-literal {}", LOGGER.getName());
+    LOGGER.info("slf4gwt-info-literal {}", LOGGER.getName());
+    LOGGER.warn("slf4gwt-warn-literal {}", LOGGER.getName());
+    LOGGER.error("slf4gwt-error-literal {}", LOGGER.getName());
+    QUIET.warn("slf4gwt-quiet-literal {}", QUIET.getName());
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.logging.gwt;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * compiles the module {@code org.slf4gwt.logging.compiletest.CompiledLevel} with {@code slf4gwt.log.level=INFO} and
+ * a WARN entry in {@code slf4gwt.log.levels}, and checks which log calls survived in the JavaScript of the permutation.
+ */
+public class CompiledLevelCompileTest {
+
+  private static String javaScript;
+
+  @BeforeClass
+  public static void compile() throws IOException, InterruptedException {
+    Path war = Files.createTempDirectory("slf4gwt-compile-test");
+    String classPath = new File("src/test/java").getAbsolutePath() + File.pathSeparator
+        + System.getProperty("java.class.path");
+
+    List<String> command = new ArrayList<String>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.add("-cp");
+    command.add(classPath);
+    command.add("com.google.gwt.dev.Compiler");
+    command.add("-war");
+    command.add(war.toString());
+    command.add("-style");
+    command.add("PRETTY");
+    command.add("-logLevel");
+    command.add("WARN");
+    command.add("org.slf4gwt.logging.compiletest.CompiledLevel");
+
+    Process compiler = new ProcessBuilder(command).inheritIO().start();
+    assertEquals("GWT compiler exit code", 0, compiler.waitFor());
+
+    try (Stream<Path> files = Files.walk(war.resolve("compiledlevel"))) {
+      List<Path> permutations = files.filter(file -> file.toString().endsWith(".cache.js"))
+          .collect(Collectors.toList());
+      assertEquals("permutations", 1, permutations.size());
+      javaScript = new String(Files.readAllBytes(permutations.get(0)), StandardCharsets.UTF_8);
+    }
+
+    try (Stream<Path> files = Files.walk(war)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Test
+  public void removesTheLevelsBelowTheCompiledLevel() {
+    assertFalse(javaScript.contains("slf4gwt-trace-literal"));
+    assertFalse(javaScript.contains("slf4gwt-debug-literal"));
+  }
+
+  @Test
+  public void keepsTheCompiledLevelAndAbove() {
+    assertTrue(javaScript.contains("slf4gwt-info-literal"));
+    assertTrue(javaScript.contains("slf4gwt-warn-literal"));
+    assertTrue(javaScript.contains("slf4gwt-error-literal"));
+  }
+
+  @Test
+  public void compilesTheLevelTable() {
+    assertTrue(javaScript.contains("org.slf4gwt.logging.compiletest.quiet"));
+    assertTrue(javaScript.contains("slf4gwt-quiet-literal"));
+  }
+}
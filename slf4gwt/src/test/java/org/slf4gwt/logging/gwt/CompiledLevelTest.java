@@ -0,0 +1,59 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.logging.gwt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledLevelTest {
+
+  @Test
+  public void matchesThePrefixItself() {
+    assertTrue(CompiledLevel.matches("com.acme.grid", "com.acme.grid"));
+  }
+
+  @Test
+  public void matchesLoggersBelowThePrefix() {
+    assertTrue(CompiledLevel.matches("com.acme.grid.Cell", "com.acme.grid"));
+    assertTrue(CompiledLevel.matches("com.acme.grid.render.Cell", "com.acme.grid"));
+  }
+
+  @Test
+  public void onlyMatchesAtSegmentBoundaries() {
+    assertFalse(CompiledLevel.matches("com.acme.gridOther", "com.acme.grid"));
+    assertFalse(CompiledLevel.matches("com.acme.gri", "com.acme.grid"));
+    assertFalse(CompiledLevel.matches("com.acme", "com.acme.grid"));
+  }
+
+  @Test
+  public void levelsAreCumulative() {
+    CompiledLevel info = new CompiledLevel.CompiledLevelInfo();
+    assertFalse(info.isTraceEnabled());
+    assertFalse(info.isDebugEnabled());
+    assertTrue(info.isInfoEnabled());
+    assertTrue(info.isWarnEnabled());
+  }
+}
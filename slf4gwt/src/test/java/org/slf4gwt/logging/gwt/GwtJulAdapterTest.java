@@ -0,0 +1,80 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.logging.gwt;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GwtJulAdapterTest {
+
+  @BeforeClass
+  public static void installBridge() {
+    JvmGwtBridge.install();
+  }
+
+  @Test
+  public void followsLevelsSetOnTheAdapter() {
+    GwtJulAdapter parent = new GwtJulAdapter("org.slf4gwt.test.adapter");
+    GwtJulAdapter child = new GwtJulAdapter("org.slf4gwt.test.adapter.Child");
+
+    parent.setLevel(Level.FINE);
+    assertTrue(child.isDebugEnabled());
+
+    parent.setLevel(Level.WARNING);
+    assertFalse(child.isInfoEnabled());
+    assertTrue(child.isWarnEnabled());
+  }
+
+  @Test
+  public void followsLevelsSetDirectlyOnJulLoggers() {
+    GwtJulAdapter adapter = new GwtJulAdapter("org.slf4gwt.test.direct.Child");
+    Logger parent = Logger.getLogger("org.slf4gwt.test.direct");
+
+    parent.setLevel(Level.SEVERE);
+    assertFalse(adapter.isWarnEnabled());
+
+    parent.setLevel(Level.FINEST);
+    assertTrue(adapter.isTraceEnabled());
+  }
+
+  @Test
+  public void staysAtTheMinimumLevelOfTheTable() {
+    GwtJulAdapter quiet = new GwtJulAdapter("org.slf4gwt.test.verbose.quiet.Child");
+    GwtJulAdapter verbose = new GwtJulAdapter("org.slf4gwt.test.verbose.Child");
+
+    quiet.setLevel(Level.FINEST);
+    verbose.setLevel(Level.FINEST);
+
+    assertFalse(quiet.isInfoEnabled());
+    assertTrue(quiet.isWarnEnabled());
+    assertFalse(verbose.isTraceEnabled());
+    assertTrue(verbose.isDebugEnabled());
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.logging.gwt;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GwtJulLoggerFactoryTest {
+
+  @BeforeClass
+  public static void installBridge() {
+    JvmGwtBridge.install();
+  }
+
+  @Test
+  public void returnsOneAdapterPerName() {
+    GwtJulLoggerFactory factory = new GwtJulLoggerFactory();
+
+    Logger foo = factory.getLogger("com.acme.Foo");
+    assertSame(foo, factory.getLogger(new String("com.acme.Foo")));
+    assertSame(foo, factory.getLogger(new StringBuilder("com.acme.").append("Foo").toString()));
+    assertEquals("com.acme.Foo", foo.getName());
+
+    Logger acme = factory.getLogger("com.acme");
+    assertNotSame(foo, acme);
+    assertSame(acme, factory.getLogger("com.acme"));
+    assertNotSame(foo, factory.getLogger("com.acme.Foo.Bar"));
+    assertNotSame(foo, factory.getLogger("com.acme.Fo"));
+  }
+
+  @Test
+  public void mapsTheRootLogger() {
+    GwtJulLoggerFactory factory = new GwtJulLoggerFactory();
+
+    Logger root = factory.getLogger(Logger.ROOT_LOGGER_NAME);
+    assertSame(root, factory.getLogger(""));
+    assertEquals("", root.getName());
+  }
+
+  @Test
+  public void looksUpClassesByIdentity() {
+    GwtJulLoggerFactory factory = new GwtJulLoggerFactory();
+
+    Logger logger = factory.getLogger(GwtJulLoggerFactoryTest.class);
+    assertSame(logger, factory.getLogger(GwtJulLoggerFactoryTest.class));
+    assertSame(logger, factory.getLogger(GwtJulLoggerFactoryTest.class.getName()));
+  }
+
+  @Test
+  public void repeatedLookupsDontAllocate() {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    GwtJulLoggerFactory factory = new GwtJulLoggerFactory();
+    String name = "com.acme.grid.render.CellRenderer";
+    Logger expected = factory.getLogger(name);
+    factory.getLogger(GwtJulLoggerFactoryTest.class);
+    for (int i = 0; i < 100_000; i++) {
+      lookup(factory, name);
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    Logger last = null;
+    for (int i = 0; i < 100_000; i++) {
+      last = lookup(factory, name);
+    }
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+    assertSame(expected, last);
+    assertTrue("repeated lookups allocated " + allocated + " bytes", allocated < 1024);
+  }
+
+  private static Logger lookup(GwtJulLoggerFactory factory, String name) {
+    factory.getLogger(GwtJulLoggerFactoryTest.class);
+    return factory.getLogger(name);
+  }
+
+  @Test
+  public void appliesTheCompiledLevelTableAlongTheTrie() {
+    GwtJulLoggerFactory factory = new GwtJulLoggerFactory();
+
+    Logger verbose = factory.getLogger("org.slf4gwt.test.verbose.Grid");
+    Logger quiet = factory.getLogger("org.slf4gwt.test.verbose.quiet.Net");
+    Logger other = factory.getLogger("org.slf4gwt.test.verboseOther.Grid");
+
+    // the table levels are set on the prefix loggers only, the loggers below inherit them
+    assertEquals(Level.FINE, java.util.logging.Logger.getLogger("org.slf4gwt.test.verbose").getLevel());
+    assertEquals(Level.WARNING, java.util.logging.Logger.getLogger("org.slf4gwt.test.verbose.quiet").getLevel());
+    assertNull(java.util.logging.Logger.getLogger("org.slf4gwt.test.verbose.Grid").getLevel());
+
+    assertTrue(verbose.isDebugEnabled());
+    assertFalse(quiet.isInfoEnabled());
+    assertTrue(quiet.isWarnEnabled());
+    assertFalse(other.isDebugEnabled());
+  }
+}
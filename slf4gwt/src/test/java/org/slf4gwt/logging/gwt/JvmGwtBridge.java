@@ -0,0 +1,97 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2020 slf4gwt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.slf4gwt.logging.gwt;
+
+import com.google.gwt.core.shared.GWT;
+import com.google.gwt.core.shared.GWTBridge;
+
+import java.util.logging.Level;
+
+/**
+ * GWT bridge that lets the client classes of slf4gwt run in a plain JVM test.
+ *
+ * {@code GWT.create(CompiledLevel.class)} returns a {@link TestCompiledLevel}, every other class is instantiated
+ * with its default constructor.
+ */
+public class JvmGwtBridge extends GWTBridge {
+
+  private static boolean installed;
+
+  public static synchronized void install() {
+    if (!installed) {
+      GWT.setBridge(new JvmGwtBridge());
+      installed = true;
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T create(Class<?> classLiteral) {
+    if (classLiteral == CompiledLevel.class) {
+      return (T) new TestCompiledLevel();
+    }
+    try {
+      return (T) classLiteral.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Unable to create " + classLiteral.getName(), e);
+    }
+  }
+
+  @Override
+  public String getVersion() {
+    return "jvm";
+  }
+
+  @Override
+  public boolean isClient() {
+    return false;
+  }
+
+  @Override
+  public void log(String message, Throwable e) {
+  }
+
+  /**
+   * the level table a generated CompiledLevel of {@code slf4gwt.log.level=TRACE} and {@code slf4gwt.log.levels=
+   * "org.slf4gwt.test.verbose=DEBUG,org.slf4gwt.test.verbose.quiet=WARN"} would contain.
+   */
+  public static class TestCompiledLevel extends CompiledLevel {
+    @Override
+    public Level getLevel(String loggerName) {
+      if (matches(loggerName, "org.slf4gwt.test.verbose.quiet")) {
+        return Level.WARNING;
+      }
+      if (matches(loggerName, "org.slf4gwt.test.verbose")) {
+        return Level.FINE;
+      }
+      return null;
+    }
+
+    @Override
+    public Level getMinimumLevel(String loggerName) {
+      Level level = getLevel(loggerName);
+      return level != null ? level : Level.FINEST;
+    }
+  }
+}